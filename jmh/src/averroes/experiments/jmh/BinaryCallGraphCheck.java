@@ -0,0 +1,114 @@
+package averroes.experiments.jmh;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import probe.TextReader;
+import probe.TextWriter;
+import averroes.experiments.util.CompactCallGraph;
+import averroes.experiments.util.MethodTable;
+import averroes.experiments.util.io.BinaryCallGraph;
+import averroes.experiments.util.io.BinaryCallGraphWriter;
+
+/**
+ * Checks that a call graph round-trips through the gzipped text format and
+ * the binary format (see {@link BinaryCallGraphWriter}), in both directions,
+ * with the same edges and entry points. The successors and edges of every
+ * method are also queried on the memory-mapped file.
+ *
+ * Usage: BinaryCallGraphCheck [callgraph.txt.gzip | -edges E]
+ *
+ * Without a call graph file, a synthetic graph with E edges (default 200,000)
+ * is generated (see {@link Generators#callGraph(int, long)}).
+ *
+ */
+public class BinaryCallGraphCheck {
+
+	public static void main(String[] args) throws Exception {
+		String file = null;
+		int edges = 200000;
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-edges")) {
+				edges = Integer.parseInt(args[++i]);
+			} else {
+				file = args[i];
+			}
+		}
+
+		CompactCallGraph cg = file == null ? Generators.callGraph(edges, 42) : CompactCallGraph
+				.fromProbe(new TextReader().readCallGraph(file));
+		System.out.println("graph: " + cg.edgeCount() + " edges, " + cg.entryPoints().length + " entry points");
+
+		File text = File.createTempFile("cg-check", ".txt.gzip");
+		File binary = File.createTempFile("cg-check", ".cg.bin");
+		File textFromBinary = File.createTempFile("cg-check", ".txt.gzip");
+		File binaryFromText = File.createTempFile("cg-check", ".cg.bin");
+		text.deleteOnExit();
+		binary.deleteOnExit();
+		textFromBinary.deleteOnExit();
+		binaryFromText.deleteOnExit();
+
+		// text, and back
+		new TextWriter().write(cg.toProbeCallGraph(), new GZIPOutputStream(new FileOutputStream(text)));
+		check("text", cg, CompactCallGraph.fromProbe(new TextReader().readCallGraph(text.getPath())));
+
+		// binary, and back
+		BinaryCallGraphWriter.write(cg, binary);
+		BinaryCallGraph mapped = BinaryCallGraph.open(binary);
+		check("binary", cg, mapped.toCompactCallGraph());
+		checkQueries(cg, mapped);
+
+		// binary to text, and text to binary, as CallGraphFormatConverter does
+		new TextWriter().write(mapped.toProbeCallGraph(), new GZIPOutputStream(new FileOutputStream(
+				textFromBinary)));
+		check("binary -> text", cg, CompactCallGraph.fromProbe(new TextReader().readCallGraph(textFromBinary
+				.getPath())));
+		BinaryCallGraphWriter.write(CompactCallGraph.fromProbe(new TextReader().readCallGraph(text.getPath())),
+				binaryFromText);
+		check("text -> binary", cg, BinaryCallGraph.open(binaryFromText).toCompactCallGraph());
+
+		System.out.println("text: " + text.length() / 1024 + " KB, binary: " + binary.length() / 1024 + " KB");
+	}
+
+	private static void check(String format, CompactCallGraph expected, CompactCallGraph actual) {
+		if (!Arrays.equals(expected.entryPoints(), actual.entryPoints())) {
+			throw new IllegalStateException(format + ": the entry points differ");
+		} else if (!Arrays.equals(expected.edgeKeys(), actual.edgeKeys())) {
+			throw new IllegalStateException(format + ": the edges differ (" + actual.edgeCount() + " vs "
+					+ expected.edgeCount() + ")");
+		}
+		System.out.println(format + ": same edges and entry points");
+	}
+
+	/**
+	 * Compare the successors of every method in the mapped file with the
+	 * graph, and look up each of its edges.
+	 */
+	private static void checkQueries(CompactCallGraph expected, BinaryCallGraph mapped) {
+		MethodTable table = MethodTable.v();
+		int[] ids = new int[mapped.methodCount()];
+		for (int m = 0; m < ids.length; m++) {
+			ids[m] = table.id(mapped.method(m));
+		}
+
+		for (int m = 0; m < ids.length; m++) {
+			int[] successors = mapped.successors(m);
+			int[] actual = new int[successors.length];
+			for (int i = 0; i < successors.length; i++) {
+				actual[i] = ids[successors[i]];
+				if (!mapped.hasEdge(m, successors[i])) {
+					throw new IllegalStateException("binary: hasEdge misses an edge of " + mapped.method(m));
+				}
+			}
+			Arrays.sort(actual);
+			if (mapped.successorCount(m) != successors.length
+					|| !Arrays.equals(expected.successors(ids[m]), actual)) {
+				throw new IllegalStateException("binary: the successors of " + mapped.method(m) + " differ");
+			}
+		}
+		System.out.println("binary: same successors for all " + ids.length + " methods");
+	}
+}
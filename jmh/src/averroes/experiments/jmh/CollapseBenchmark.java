@@ -0,0 +1,58 @@
+package averroes.experiments.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import averroes.experiments.util.CompactCallGraph;
+import averroes.experiments.util.ProbeUtils;
+import averroes.experiments.util.Profiler;
+
+/**
+ * Collapsing a whole call graph. About half of the methods are in the
+ * application (see {@link Generators}), so both the kept and the collapsed
+ * edges are exercised. Larger graphs can be measured with, e.g., -p
+ * edges=10000000 (and a larger heap for the forks, -jvmArgs -Xmx8g).
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CollapseBenchmark {
+
+	@Param({ "10000", "1000000" })
+	public int edges;
+
+	private CompactCallGraph cg;
+
+	@Setup
+	public void setup() {
+		Generators.options();
+		cg = Generators.callGraph(edges, 42);
+	}
+
+	// Every collapse records a profiler phase
+	@Setup(Level.Iteration)
+	public void resetProfiler() {
+		Profiler.v().reset();
+	}
+
+	@Benchmark
+	public CompactCallGraph collapse() {
+		return ProbeUtils.collapse(cg);
+	}
+}
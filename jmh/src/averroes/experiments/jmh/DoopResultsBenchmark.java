@@ -0,0 +1,96 @@
+package averroes.experiments.jmh;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import averroes.experiments.util.CompactCallGraph;
+import averroes.experiments.util.ProbeUtils;
+import averroes.experiments.util.Profiler;
+import averroes.experiments.util.ResultImporter;
+import averroes.experiments.util.ResultScanner;
+
+/**
+ * Reading the results of Doop: splitting single lines into tuples, scanning a
+ * whole results file, and converting a whole Doop call graph. The results are
+ * written to a temporary directory once per trial, so the file benchmarks
+ * measure a warm page cache.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DoopResultsBenchmark {
+
+	private static final int BATCH = 1 << 12;
+
+	@Param({ "10000", "1000000" })
+	public int edges;
+
+	@Param({ "50000" })
+	public int methods;
+
+	private String[] lines;
+	private File doopHome;
+
+	@Setup
+	public void setup() throws IOException {
+		Generators.options();
+		lines = Generators.doopEdges(BATCH, methods, 42);
+		doopHome = Files.createTempDirectory("doop-results").toFile();
+		Generators.doopResults(doopHome, edges, methods, 42);
+	}
+
+	@TearDown
+	public void tearDown() {
+		FileUtils.deleteQuietly(doopHome);
+	}
+
+	// Every Doop conversion records a profiler phase
+	@Setup(Level.Iteration)
+	public void resetProfiler() {
+		Profiler.v().reset();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@OperationsPerInvocation(BATCH)
+	public void lineToTuple(Blackhole bh) {
+		for (String line : lines) {
+			bh.consume(ResultImporter.lineToTuple(line));
+		}
+	}
+
+	@Benchmark
+	public void scan(Blackhole bh) throws IOException {
+		ResultScanner.scan(new File(doopHome, "InsensCallGraphEdge.results").getPath(),
+				(columns, count) -> bh.consume(columns[count - 1]));
+	}
+
+	@Benchmark
+	public CompactCallGraph convertDoopCallGraph() throws IOException {
+		return ProbeUtils.convertDoopCallGraph(doopHome.getPath(), false);
+	}
+}
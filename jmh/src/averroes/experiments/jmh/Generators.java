@@ -0,0 +1,287 @@
+package averroes.experiments.jmh;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.zip.GZIPOutputStream;
+
+import probe.ObjectManager;
+import probe.ProbeClass;
+import averroes.experiments.options.ExperimentsOptions;
+import averroes.experiments.util.CompactCallGraph;
+import averroes.experiments.util.MethodTable;
+import averroes.experiments.util.ProbeUtils;
+
+/**
+ * Synthetic inputs for the benchmarks: method signatures, WALA traces, Doop
+ * results and call graphs, all of them seeded so that every fork measures the
+ * same data. The methods are spread over the classes org.example.pkgN.ClassM,
+ * and the packages below {@link #APPLICATION_PACKAGES} are the application.
+ *
+ */
+public class Generators {
+
+	public static final int PACKAGES = 97;
+	public static final int CLASSES = 1013;
+	public static final int APPLICATION_PACKAGES = 48;
+
+	private static final String[] TYPES = { "int", "boolean", "long", "java.lang.String", "java.lang.Object",
+			"java.util.List", "byte[]", "java.lang.String[]" };
+
+	/**
+	 * Set up the experiment options that the code under test reads (e.g., the
+	 * application regex used when collapsing).
+	 */
+	public static void options() {
+		List<String> regex = new ArrayList<String>();
+		for (int i = 0; i < APPLICATION_PACKAGES; i++) {
+			regex.add("org.example.pkg" + i + ".*");
+		}
+		ExperimentsOptions.processArguments(new String[] { "-h", "doop", "-t", "jmh", "-b", "base", "-p", "program",
+				"-j", "1.7", "-r", String.join(File.pathSeparator, regex), "-m", "org.example.pkg0.Class0", "-d",
+				"dynamic.txt", "-o", "out" });
+	}
+
+	/**
+	 * The Soot signature of the ith method (e.g., "<org.example.pkg1.Class1:
+	 * void method1(int,java.lang.String)>").
+	 *
+	 * @param i
+	 * @return
+	 */
+	public static String sootSignature(int i) {
+		StringBuilder args = new StringBuilder();
+		for (int a = 0; a < i % 4; a++) {
+			args.append(a == 0 ? "" : ",").append(TYPES[(i + a) % TYPES.length]);
+		}
+		return "<" + className(i) + ": " + TYPES[i % TYPES.length] + " method" + i + "(" + args + ")>";
+	}
+
+	/**
+	 * The probe signature of the ith method (e.g., "org.example.pkg1.Class1:
+	 * method1(ILjava/lang/String;)V").
+	 *
+	 * @param i
+	 * @return
+	 */
+	public static String probeSignature(int i) {
+		return className(i) + ": method" + i + "(ILjava/lang/String;)V";
+	}
+
+	private static String className(int i) {
+		return "org.example.pkg" + (i % PACKAGES) + ".Class" + (i % CLASSES);
+	}
+
+	/**
+	 * A sequence of signatures drawn from the given number of distinct
+	 * methods, as the signatures of a call graph repeat.
+	 *
+	 * @param count
+	 * @param methods
+	 * @param seed
+	 * @param soot
+	 *            Soot signatures if true, probe signatures otherwise
+	 * @return
+	 */
+	public static String[] signatures(int count, int methods, long seed, boolean soot) {
+		Random random = new Random(seed);
+		String[] result = new String[count];
+		for (int i = 0; i < count; i++) {
+			int m = random.nextInt(methods);
+			result[i] = soot ? sootSignature(m) : probeSignature(m);
+		}
+		return result;
+	}
+
+	/**
+	 * A gzipped WALA trace with the given number of lines, in memory.
+	 *
+	 * @param lines
+	 * @param methods
+	 * @param seed
+	 * @return
+	 * @throws IOException
+	 */
+	public static byte[] trace(int lines, int methods, long seed) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		trace(new GZIPOutputStream(bytes, 1 << 16), lines, methods, seed);
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Write a synthetic WALA trace to the given stream, and close it. It has
+	 * all the kinds of lines the WALA dynamic call graph generator writes.
+	 *
+	 * @param stream
+	 * @param lines
+	 * @param methods
+	 *            the number of distinct methods
+	 * @param seed
+	 * @throws IOException
+	 */
+	public static void trace(OutputStream stream, int lines, int methods, long seed) throws IOException {
+		Random random = new Random(seed);
+		Writer out = new BufferedWriter(new OutputStreamWriter(stream));
+
+		out.write("root\tdacapo/Main\tmain([Ljava/lang/String;)V\n");
+		for (int i = 0; i < lines; i++) {
+			int kind = random.nextInt(100);
+			String src = traceMethod(random.nextInt(methods));
+			if (kind < 5) {
+				out.write("callbacks\t" + src + "\n");
+			} else if (kind < 15) {
+				out.write("call to " + src + "\n");
+				out.write("return from " + src + "\n");
+				i++;
+			} else if (kind < 17) {
+				out.write("clinit\t" + src + "\n");
+			} else {
+				out.write(src + "\t" + traceMethod(random.nextInt(methods)) + "\n");
+			}
+		}
+
+		out.close();
+	}
+
+	private static String traceMethod(int i) {
+		return "org/example/pkg" + (i % PACKAGES) + "/Class" + (i % CLASSES) + "\tmethod" + i
+				+ "(Ljava/lang/String;I)V";
+	}
+
+	/**
+	 * A line of InsensCallGraphEdge.results (caller, invocation, callee).
+	 *
+	 * @param src
+	 * @param dst
+	 * @param invocation
+	 * @return
+	 */
+	public static String doopEdge(int src, int dst, int invocation) {
+		String caller = sootSignature(src);
+		return "[0]" + caller + ", [1]" + caller + "/" + className(dst) + ".method" + dst + "/" + invocation
+				+ ", [2]" + sootSignature(dst);
+	}
+
+	/**
+	 * The lines of a Doop call graph with the given number of edges.
+	 *
+	 * @param edges
+	 * @param methods
+	 * @param seed
+	 * @return
+	 */
+	public static String[] doopEdges(int edges, int methods, long seed) {
+		Random random = new Random(seed);
+		String[] result = new String[edges];
+		for (int i = 0; i < edges; i++) {
+			result[i] = doopEdge(random.nextInt(methods), random.nextInt(methods), random.nextInt(8));
+		}
+		return result;
+	}
+
+	/**
+	 * Write the results of Doop that
+	 * {@link averroes.experiments.util.ProbeUtils#convertDoopCallGraph(String, boolean)}
+	 * reads to the given directory: the given number of call graph edges, a
+	 * tenth as many reflective edges, and one entry point.
+	 *
+	 * @param directory
+	 * @param edges
+	 * @param methods
+	 * @param seed
+	 * @throws IOException
+	 */
+	public static void doopResults(File directory, int edges, int methods, long seed) throws IOException {
+		Random random = new Random(seed);
+		directory.mkdirs();
+		results(new File(directory, "InsensCallGraphEdge.results"),
+				"InsensCallGraphEdge(?caller, ?invocation, ?callee)", edges, i -> doopEdge(random.nextInt(methods), random.nextInt(methods), random.nextInt(8)));
+		results(new File(directory, "ReflectiveCallGraphEdge.results"),
+				"ReflectiveCallGraphEdge(?invocation, ?callee)", edges / 10, i -> "[0]" + sootSignature(0)
+						+ "/java.lang.reflect.Method.invoke/" + i + ", [1]" + sootSignature(random.nextInt(methods)));
+		results(new File(directory, "MainMethodDeclaration.results"), "MainMethodDeclaration(?method)", 1,
+				i -> "[0]" + sootSignature(0));
+	}
+
+	/**
+	 * Write a results file, the way Doop does: a header, then one fact per
+	 * line.
+	 */
+	private static void results(File file, String predicate, int size, IntFunction<String> fact)
+			throws IOException {
+		String name = predicate.substring(0, predicate.indexOf('('));
+		try (PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16), false,
+				"UTF-8")) {
+			out.println("predicate: " + predicate);
+			out.println("size: " + size);
+			out.println("/--- start of " + name + " facts ---\\");
+			for (int i = 0; i < size; i++) {
+				out.println(fact.apply(i));
+			}
+			out.println("\\--- end of " + name + " facts ---/");
+		}
+	}
+
+	/**
+	 * A call graph with the given number of edges, over edges / 8 methods (at
+	 * least 1000).
+	 *
+	 * @param edges
+	 * @param seed
+	 * @return
+	 */
+	public static CompactCallGraph callGraph(int edges, long seed) {
+		return callGraph(java.lang.Math.max(1000, edges / 8), edges, seed);
+	}
+
+	/**
+	 * A random call graph, shaped like a collapsed one. Most methods have a
+	 * few callees, a few have many (e.g., dispatch-heavy methods), and about a
+	 * tenth of the edges go to or from the library blob.
+	 *
+	 * @param methods
+	 * @param edges
+	 * @param seed
+	 * @return
+	 */
+	public static CompactCallGraph callGraph(int methods, int edges, long seed) {
+		Random random = new Random(seed);
+		MethodTable table = MethodTable.v();
+		int[] ids = new int[methods];
+		for (int i = 0; i < methods; i++) {
+			ProbeClass cls = ObjectManager.v().getClass(className(i));
+			ids[i] = table.id(ObjectManager.v().getMethod(cls, "method" + i, "(Ljava/lang/String;I)V"));
+		}
+		int blob = table.id(ProbeUtils.LIBRARY_BLOB);
+
+		CompactCallGraph.Builder builder = new CompactCallGraph.Builder();
+		for (int i = 0; i < 10; i++) {
+			builder.addEntryPoint(ids[random.nextInt(methods)]);
+		}
+		for (int i = 0; i < edges; i++) {
+			int kind = random.nextInt(100);
+			// Skew the sources so that some methods have many callees
+			int src = ids[(int) (methods * java.lang.Math.pow(random.nextDouble(), 2))];
+			int dst = ids[random.nextInt(methods)];
+			if (kind < 5) {
+				builder.addEdge(src, blob);
+			} else if (kind < 10) {
+				builder.addEdge(blob, dst);
+			} else {
+				builder.addEdge(src, dst);
+			}
+		}
+		return builder.build();
+	}
+}
@@ -0,0 +1,96 @@
+package averroes.experiments.jmh;
+
+import java.io.File;
+import java.util.Arrays;
+
+import probe.CallGraph;
+import probe.TextReader;
+import averroes.experiments.util.CompactCallGraph;
+import averroes.experiments.util.Files;
+import averroes.experiments.util.Reachability;
+import averroes.experiments.util.io.BinaryCallGraph;
+
+/**
+ * Measures {@link Reachability} (sequential and parallel) against the
+ * reachable methods probe computes by walking its object graph.
+ *
+ * Usage: ReachabilityBenchmark [callgraph | -methods N -edges E] [-runs R]
+ * [-no-probe]
+ *
+ * Without a call graph file (.txt.gzip or .cg.bin), a synthetic graph with N
+ * methods (default 300,000) and E edges (default 2,000,000) is generated (see
+ * {@link Generators#callGraph(int, int, long)}).
+ *
+ */
+public class ReachabilityBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		String file = null;
+		int methods = 300000;
+		int edges = 2000000;
+		int runs = 5;
+		boolean probe = true;
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-methods")) {
+				methods = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-edges")) {
+				edges = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-runs")) {
+				runs = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-no-probe")) {
+				probe = false;
+			} else {
+				file = args[i];
+			}
+		}
+
+		CompactCallGraph cg;
+		if (file == null) {
+			cg = Generators.callGraph(methods, edges, 42);
+		} else if (file.endsWith(Files.BINARY_CALL_GRAPH_EXTENSION)) {
+			cg = BinaryCallGraph.open(new File(file)).toCompactCallGraph();
+		} else {
+			cg = CompactCallGraph.fromProbe(new TextReader().readCallGraph(file));
+		}
+		System.out.println("graph: " + cg.methodBound() + " methods, " + cg.edgeCount() + " edges, "
+				+ cg.entryPoints().length + " entry points");
+
+		CallGraph probecg = probe ? cg.toProbeCallGraph() : null;
+		int[] expected = Reachability.reachable(cg);
+
+		for (int i = 0; i < runs; i++) {
+			long probeNanos = 0;
+			if (probe) {
+				long start = System.nanoTime();
+				int count = probecg.findReachables().size();
+				probeNanos = System.nanoTime() - start;
+				check("probe", count, expected.length);
+			}
+
+			long start = System.nanoTime();
+			int[] sequential = Reachability.reachable(cg);
+			long sequentialNanos = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			int[] parallel = Reachability.reachableParallel(cg);
+			long parallelNanos = System.nanoTime() - start;
+
+			check("sequential", sequential.length, expected.length);
+			if (!Arrays.equals(sequential, parallel)) {
+				throw new IllegalStateException("the sequential and parallel variants disagree");
+			}
+
+			System.out.println(String.format("run %d: %d reachable, probe %s, bitset %.1f ms, parallel %.1f ms", i,
+					expected.length, probe ? String.format("%.1f ms", probeNanos / 1e6) : "-",
+					sequentialNanos / 1e6, parallelNanos / 1e6));
+		}
+	}
+
+	private static void check(String variant, int count, int expected) {
+		if (count != expected) {
+			throw new IllegalStateException("the " + variant + " variant finds " + count + " reachable methods, not "
+					+ expected);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package averroes.experiments.jmh;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import averroes.experiments.util.SetUtils;
+
+/**
+ * Checks the sorted int[] and long[] operations of {@link SetUtils} (and
+ * their *Count variants) against the same operations on HashSets, on random
+ * pairs of sets of all sizes, including empty and identical ones.
+ *
+ * Usage: SetUtilsCheck [-pairs P]
+ *
+ * P is the number of random pairs (default 2,000).
+ *
+ */
+public class SetUtilsCheck {
+
+	public static void main(String[] args) {
+		int pairs = 2000;
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-pairs")) {
+				pairs = Integer.parseInt(args[++i]);
+			}
+		}
+
+		Random random = new Random(42);
+		for (int p = 0; p < pairs; p++) {
+			// A small universe so that the sets overlap
+			int universe = 1 + random.nextInt(1000);
+			Set<Long> a = set(random, universe);
+			Set<Long> b = p % 10 == 0 ? new HashSet<Long>(a) : set(random, universe);
+
+			checkInts(ints(a), ints(b), a, b);
+			// Spread the values over the whole long range, as edge keys are
+			checkLongs(longs(a), longs(b), a, b);
+		}
+		System.out.println(pairs + " pairs: same results as HashSet");
+	}
+
+	private static void checkInts(int[] a, int[] b, Set<Long> setA, Set<Long> setB) {
+		check("int minus", sorted(SetUtils.minus(setA, setB)), SetUtils.minus(a, b));
+		check("int intersect", sorted(SetUtils.intersect(setA, setB)), SetUtils.intersect(a, b));
+		check("int union", sorted(SetUtils.union(setA, setB)), SetUtils.union(a, b));
+		check("int diff", sorted(SetUtils.diff(setA, setB)), SetUtils.diff(a, b));
+		int[][] split = SetUtils.split(a, b);
+		check("int split", sorted(SetUtils.minus(setA, setB)), split[0]);
+		check("int split", sorted(SetUtils.minus(setB, setA)), split[1]);
+
+		count("int minusCount", SetUtils.minus(setA, setB).size(), SetUtils.minusCount(a, b));
+		count("int intersectCount", SetUtils.intersect(setA, setB).size(), SetUtils.intersectCount(a, b));
+		count("int unionCount", SetUtils.union(setA, setB).size(), SetUtils.unionCount(a, b));
+		count("int diffCount", SetUtils.diff(setA, setB).size(), SetUtils.diffCount(a, b));
+	}
+
+	private static void checkLongs(long[] a, long[] b, Set<Long> setA, Set<Long> setB) {
+		Set<Long> spreadA = spread(setA);
+		Set<Long> spreadB = spread(setB);
+		check("long minus", sorted(SetUtils.minus(spreadA, spreadB)), SetUtils.minus(a, b));
+		check("long intersect", sorted(SetUtils.intersect(spreadA, spreadB)), SetUtils.intersect(a, b));
+		check("long union", sorted(SetUtils.union(spreadA, spreadB)), SetUtils.union(a, b));
+		check("long diff", sorted(SetUtils.diff(spreadA, spreadB)), SetUtils.diff(a, b));
+		long[][] split = SetUtils.split(a, b);
+		check("long split", sorted(SetUtils.minus(spreadA, spreadB)), split[0]);
+		check("long split", sorted(SetUtils.minus(spreadB, spreadA)), split[1]);
+
+		count("long minusCount", SetUtils.minus(spreadA, spreadB).size(), SetUtils.minusCount(a, b));
+		count("long intersectCount", SetUtils.intersect(spreadA, spreadB).size(), SetUtils.intersectCount(a, b));
+		count("long unionCount", SetUtils.union(spreadA, spreadB).size(), SetUtils.unionCount(a, b));
+		count("long diffCount", SetUtils.diff(spreadA, spreadB).size(), SetUtils.diffCount(a, b));
+	}
+
+	private static Set<Long> set(Random random, int universe) {
+		Set<Long> set = new HashSet<Long>();
+		int size = random.nextInt(universe + 1);
+		for (int i = 0; i < size; i++) {
+			set.add((long) random.nextInt(universe));
+		}
+		return set;
+	}
+
+	/**
+	 * Map a value to a long that uses both halves (and the sign), keeping the
+	 * order.
+	 */
+	private static long spread(long value) {
+		return ((value - 500) << 32) | value;
+	}
+
+	private static Set<Long> spread(Set<Long> set) {
+		Set<Long> result = new HashSet<Long>();
+		for (long value : set) {
+			result.add(spread(value));
+		}
+		return result;
+	}
+
+	private static int[] ints(Set<Long> set) {
+		return set.stream().mapToInt(Long::intValue).sorted().toArray();
+	}
+
+	private static long[] longs(Set<Long> set) {
+		return set.stream().mapToLong(Long::longValue).map(SetUtilsCheck::spread).sorted().toArray();
+	}
+
+	private static long[] sorted(Set<Long> set) {
+		return set.stream().mapToLong(Long::longValue).sorted().toArray();
+	}
+
+	private static void check(String operation, long[] expected, long[] actual) {
+		if (!Arrays.equals(expected, actual)) {
+			throw new IllegalStateException(operation + ": " + Arrays.toString(actual) + " instead of "
+					+ Arrays.toString(expected));
+		}
+	}
+
+	private static void check(String operation, long[] expected, int[] actual) {
+		check(operation, expected, Arrays.stream(actual).asLongStream().toArray());
+	}
+
+	private static void count(String operation, int expected, int actual) {
+		if (expected != actual) {
+			throw new IllegalStateException(operation + ": " + actual + " instead of " + expected);
+		}
+	}
+}
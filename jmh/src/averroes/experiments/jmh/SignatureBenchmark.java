@@ -0,0 +1,89 @@
+package averroes.experiments.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import probe.ProbeMethod;
+import averroes.experiments.options.ExperimentsOptions;
+import averroes.experiments.util.ProbeUtils;
+
+/**
+ * The per-signature paths: resolving Soot signatures (Doop results) and probe
+ * signatures to probe methods, and deciding whether a method belongs to the
+ * application. Each invocation goes over a batch of signatures drawn from the
+ * given number of distinct methods, and the scores are per signature.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignatureBenchmark {
+
+	private static final int BATCH = 1 << 16;
+
+	@Param({ "1000", "100000" })
+	public int methods;
+
+	private String[] sootSignatures;
+	private String[] probeSignatures;
+	private ProbeMethod[] probeMethods;
+
+	@Setup
+	public void setup() {
+		Generators.options();
+		sootSignatures = Generators.signatures(BATCH, methods, 42, true);
+		probeSignatures = Generators.signatures(BATCH, methods, 42, false);
+		probeMethods = new ProbeMethod[BATCH];
+		for (int i = 0; i < BATCH; i++) {
+			probeMethods[i] = ProbeUtils.createProbeMethodBySignature(sootSignatures[i]);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void createProbeMethodBySignature(Blackhole bh) {
+		for (String signature : sootSignatures) {
+			bh.consume(ProbeUtils.createProbeMethodBySignature(signature));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void probeMethod(Blackhole bh) {
+		for (String signature : probeSignatures) {
+			bh.consume(ProbeUtils.probeMethod(signature));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void isApplicationMethod(Blackhole bh) {
+		for (ProbeMethod method : probeMethods) {
+			bh.consume(ProbeUtils.isApplicationMethod(method));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void isApplicationClass(Blackhole bh) {
+		for (ProbeMethod method : probeMethods) {
+			bh.consume(ExperimentsOptions.isApplicationClass(method.cls().toString()));
+		}
+	}
+}
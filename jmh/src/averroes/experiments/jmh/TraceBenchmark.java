@@ -0,0 +1,68 @@
+package averroes.experiments.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import averroes.experiments.util.CompactCallGraph;
+import averroes.experiments.util.ProbeUtils;
+import averroes.experiments.util.Profiler;
+import averroes.experiments.util.WalaTraceParser;
+
+/**
+ * Converting a gzipped WALA trace, kept in memory so that the disk is not
+ * measured. With collapse, the edges are collapsed as they are read (as in
+ * the pipelined dynamic call graph).
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TraceBenchmark {
+
+	@Param({ "10000", "1000000" })
+	public int lines;
+
+	@Param({ "5000" })
+	public int methods;
+
+	@Param({ "false", "true" })
+	public boolean collapse;
+
+	private byte[] trace;
+
+	@Setup
+	public void setup() throws IOException {
+		Generators.options();
+		trace = Generators.trace(lines, methods, 42);
+	}
+
+	// Every conversion records a profiler phase
+	@Setup(Level.Iteration)
+	public void resetProfiler() {
+		Profiler.v().reset();
+	}
+
+	@Benchmark
+	public CompactCallGraph convertWalaDynamicCallGraph() throws IOException {
+		return ProbeUtils.convertWalaDynamicCallGraph(new WalaTraceParser(new GZIPInputStream(
+				new ByteArrayInputStream(trace), 1 << 16)), collapse);
+	}
+}
@@ -0,0 +1,57 @@
+package averroes.experiments.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import averroes.experiments.util.CompactCallGraph;
+import averroes.experiments.util.ProbeUtils;
+import averroes.experiments.util.WalaTraceParser;
+
+/**
+ * Checks that collapsing the edges of a WALA trace while it is read (as the
+ * pipelined dynamic call graph does) gives the same edges and entry points as
+ * converting the whole trace first and collapsing the call graph afterwards.
+ *
+ * Usage: TraceCollapseCheck [-lines L] [-methods M]
+ *
+ * The synthetic trace has L lines (default 200,000) over M distinct methods
+ * (default 5,000), see {@link Generators#trace}.
+ *
+ */
+public class TraceCollapseCheck {
+
+	public static void main(String[] args) throws IOException {
+		int lines = 200000;
+		int methods = 5000;
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-lines")) {
+				lines = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-methods")) {
+				methods = Integer.parseInt(args[++i]);
+			}
+		}
+
+		Generators.options();
+		byte[] trace = Generators.trace(lines, methods, 42);
+
+		CompactCallGraph streamed = ProbeUtils.convertWalaDynamicCallGraph(parser(trace), true);
+		CompactCallGraph collapsed = ProbeUtils.collapse(ProbeUtils.convertWalaDynamicCallGraph(parser(trace),
+				false));
+
+		if (!Arrays.equals(collapsed.entryPoints(), streamed.entryPoints())) {
+			throw new IllegalStateException("the entry points differ");
+		} else if (!Arrays.equals(collapsed.edgeKeys(), streamed.edgeKeys())) {
+			throw new IllegalStateException("the edges differ (" + streamed.edgeCount() + " vs "
+					+ collapsed.edgeCount() + ")");
+		}
+		System.out.println(lines + " lines: same " + streamed.edgeCount() + " collapsed edges and "
+				+ streamed.entryPoints().length + " entry points");
+	}
+
+	private static WalaTraceParser parser(byte[] trace) throws IOException {
+		return new WalaTraceParser(new GZIPInputStream(new ByteArrayInputStream(trace), 1 << 16));
+	}
+}
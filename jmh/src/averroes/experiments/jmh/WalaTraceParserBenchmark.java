@@ -0,0 +1,71 @@
+package averroes.experiments.jmh;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import averroes.experiments.util.CompactCallGraph;
+import averroes.experiments.util.ProbeUtils;
+
+/**
+ * Measures the throughput of {@link ProbeUtils#convertWalaDynamicCallGraph}
+ * on a trace file, including the disk (unlike {@link TraceBenchmark}).
+ * 
+ * Usage: WalaTraceParserBenchmark [trace.txt.gz | -lines N] [-runs R]
+ * 
+ * Without a trace file, a synthetic trace with N lines (default 2,000,000) is
+ * generated in the temp directory (see {@link Generators#trace}).
+ * 
+ */
+public class WalaTraceParserBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		String trace = null;
+		int lines = 2000000;
+		int runs = 5;
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-lines")) {
+				lines = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-runs")) {
+				runs = Integer.parseInt(args[++i]);
+			} else {
+				trace = args[i];
+			}
+		}
+
+		if (trace == null) {
+			File tmp = File.createTempFile("cg-trace", ".txt.gz");
+			tmp.deleteOnExit();
+			Generators.trace(new GZIPOutputStream(new FileOutputStream(tmp), 1 << 16), lines, 5000, 42);
+			trace = tmp.getPath();
+		}
+
+		long bytes = uncompressedSize(trace);
+		System.out.println("trace: " + trace + " (" + bytes / 1024 / 1024 + " MB uncompressed)");
+
+		for (int i = 0; i < runs; i++) {
+			long start = System.nanoTime();
+			CompactCallGraph cg = ProbeUtils.convertWalaDynamicCallGraph(trace);
+			long nanos = System.nanoTime() - start;
+
+			System.out.println(String.format("run %d: %d edges in %.2f s (%.1f MB/s)", i, cg.edgeCount(),
+					nanos / 1e9, bytes / 1048576.0 / (nanos / 1e9)));
+		}
+	}
+
+	private static long uncompressedSize(String trace) throws IOException {
+		GZIPInputStream in = new GZIPInputStream(new FileInputStream(trace), 1 << 16);
+		byte[] buf = new byte[1 << 16];
+		long size = 0;
+		int n;
+		while ((n = in.read(buf)) > 0) {
+			size += n;
+		}
+		in.close();
+		return size;
+	}
+}
@@ -0,0 +1,146 @@
+package averroes.experiments;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.FileUtils;
+
+import probe.TextWriter;
+import averroes.experiments.batch.ApkBatchJob;
+import averroes.experiments.batch.BatchJob;
+import averroes.experiments.batch.BatchJobResult;
+import averroes.experiments.batch.BatchRunner;
+import averroes.experiments.batch.JobHistory;
+import averroes.experiments.options.ApkOptions;
+import averroes.experiments.options.ApplicationClassMatcher;
+import averroes.experiments.options.ExperimentsOptions;
+import averroes.experiments.soot.SparkApkCallGraphTransformer;
+import averroes.experiments.util.ApkManifest;
+import averroes.experiments.util.CompactCallGraph;
+import averroes.experiments.util.Files;
+import averroes.experiments.util.ProbeUtils;
+import averroes.experiments.util.Profiler;
+import averroes.experiments.util.io.BinaryCallGraphWriter;
+
+/**
+ * A driver class that generates the Spark call graph of an Android APK, or of
+ * every APK in a directory. In the latter, each APK runs in a forked JVM (see
+ * {@link BatchRunner}) with its own heap cap and timeout.
+ * 
+ */
+public class ApkCallGraphGenerator {
+
+	public static void main(String[] args) {
+		try {
+			// Process the arguments
+			ApkOptions.processArguments(args);
+
+			if (ApkOptions.isCorpus()) {
+				runCorpus();
+			} else {
+				run(ApkOptions.getApk());
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Generate the call graph of one APK.
+	 * 
+	 * @param apk
+	 * @throws Exception
+	 */
+	private static void run(File apk) throws Exception {
+		Profiler.v().reset();
+		String base = ApkOptions.getBaseDirectory();
+		String toolName = toolName();
+		String output = ApkOptions.getOutputDirectory() != null ? ApkOptions.getOutputDirectory() : Files
+				.apkCallGraphsDirectory(base, Files.apkName(apk)).getPath();
+
+		// Create the output directory
+		FileUtils.forceMkdir(new File(output));
+
+		// The application classes are the ones in the package of the app,
+		// unless they are given
+		ApkManifest manifest = ApkManifest.read(apk);
+		ExperimentsOptions.setApplicationClassMatcher(new ApplicationClassMatcher(ApkOptions
+				.getApplicationRegex(manifest)));
+
+		CompactCallGraph probecg = new SparkApkCallGraphTransformer(base, apk, manifest, ApkOptions.getAndroidJar(),
+				ApkOptions.isAverroes(), ApkOptions.getSparkProfile()).getCallGraph();
+		System.out.println("Total time to finish: " + Profiler.v().elapsedTime());
+
+		// collapse and write the call graph
+		CompactCallGraph cg = ProbeUtils.collapse(probecg);
+		try (Profiler.Phase phase = Profiler.v().start("write")) {
+			if (ApkOptions.isTextFormat()) {
+				new TextWriter().write(cg.toProbeCallGraph(), new GZIPOutputStream(new FileOutputStream(
+						Files.callGraphGzipFile(output, toolName))));
+			}
+			if (ApkOptions.isBinaryFormat()) {
+				BinaryCallGraphWriter.write(cg, Files.callGraphBinaryFile(output, toolName));
+			}
+		}
+		Profiler.v().writeJson(Files.profileFile(output, toolName, "json"));
+		Profiler.v().writeCsv(Files.profileFile(output, toolName, "csv"));
+
+		// Print some statistics
+		System.out.println("=================================================");
+		System.out.println("# edges = " + cg.edgeCount());
+		System.out.println("=================================================");
+	}
+
+	/**
+	 * Generate the call graphs of all the APKs in the corpus directory.
+	 * 
+	 * @throws Exception
+	 */
+	private static void runCorpus() throws Exception {
+		String base = ApkOptions.getBaseDirectory();
+
+		List<BatchJob> jobs = new ArrayList<BatchJob>();
+		for (File apk : ApkOptions.getCorpus()) {
+			jobs.add(new ApkBatchJob(apk, ApkOptions.getAndroidJar(), ApkOptions.isAverroes(), ApkOptions
+					.getFormat(), ApkOptions.getSparkProfile()));
+		}
+
+		// Run the jobs, longest first based on the earlier corpus runs
+		JobHistory history = JobHistory.load(Files.jobHistoryFile(base, "apk"));
+		long start = System.currentTimeMillis();
+		List<BatchJobResult> results = new BatchRunner(base, null, null, ApkOptions.getMaxHeap(),
+				ApkOptions.getTimeout(), ApkOptions.getWorkers(), ApkOptions.getMemory(), history).run(jobs);
+		System.out.println("Total time to finish: " + (System.currentTimeMillis() - start) / 1000.0);
+
+		// Print and save the summary table
+		System.out.println("=================================================");
+		BatchRunner.printSummary(results, System.out);
+		System.out.println("=================================================");
+
+		File summary = Paths.get(base, "callgraphs", "apk", toolName() + "-summary.txt").toFile();
+		FileUtils.forceMkdir(summary.getParentFile());
+		PrintStream out = new PrintStream(new FileOutputStream(summary));
+		BatchRunner.printSummary(results, out);
+		out.close();
+
+		if (results.stream().anyMatch(r -> !r.isSuccess())) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * The full tool name (e.g., spark-averroes), which prefixes the files
+	 * written for each APK.
+	 * 
+	 * @return
+	 */
+	private static String toolName() {
+		return "spark" + (ApkOptions.isAverroes() ? "-averroes" : "");
+	}
+}
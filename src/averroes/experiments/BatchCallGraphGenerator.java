@@ -0,0 +1,78 @@
+package averroes.experiments;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+
+import averroes.experiments.batch.BatchJob;
+import averroes.experiments.batch.BatchJobResult;
+import averroes.experiments.batch.BatchRunner;
+import averroes.experiments.batch.JobHistory;
+import averroes.experiments.options.BatchOptions;
+import averroes.experiments.util.Files;
+
+/**
+ * A driver class that generates the call graphs for a matrix of (tool,
+ * averroes flag, program) jobs. Each job runs {@link CallGraphGenerator} in a
+ * forked JVM, and the jobs run on a bounded pool of workers, scheduled by
+ * their cost in earlier batches (see {@link JobHistory}).
+ * 
+ */
+public class BatchCallGraphGenerator {
+
+	public static void main(String[] args) {
+		try {
+			// Process the arguments
+			BatchOptions.processArguments(args);
+			String base = BatchOptions.getBaseDirectory();
+
+			// Build the job matrix
+			List<BatchJob> jobs = new ArrayList<BatchJob>();
+			for (String program : BatchOptions.getPrograms()) {
+				for (String tool : BatchOptions.getTools()) {
+					if (BatchOptions.isVanilla() || tool.equalsIgnoreCase("dynamic")) {
+						jobs.add(new BatchJob(tool, false, program));
+					}
+					// There is no Averroes variant of the dynamic call graph
+					if (BatchOptions.isAverroes() && !tool.equalsIgnoreCase("dynamic")) {
+						jobs.add(new BatchJob(tool, true, program));
+					}
+				}
+			}
+
+			if (jobs.stream().anyMatch(BatchJob::isDoop) && BatchOptions.getDoopHome() == null) {
+				throw new IllegalStateException("Please provide the doop home (-h) to run doop.");
+			}
+
+			// Run the jobs, longest first based on the earlier batches
+			JobHistory history = JobHistory.load(Files.jobHistoryFile(base, "batch"));
+			long start = System.currentTimeMillis();
+			List<BatchJobResult> results = new BatchRunner(base, BatchOptions.getJreVersion(),
+					BatchOptions.getDoopHome(), BatchOptions.getMaxHeap(), BatchOptions.getTimeout(),
+					BatchOptions.getWorkers(), BatchOptions.getMemory(), history).run(jobs);
+			System.out.println("Total time to finish: " + (System.currentTimeMillis() - start) / 1000.0);
+
+			// Print and save the summary table
+			System.out.println("=================================================");
+			BatchRunner.printSummary(results, System.out);
+			System.out.println("=================================================");
+
+			File summary = new File(new File(base, "callgraphs"), "batch-summary.txt");
+			FileUtils.forceMkdir(summary.getParentFile());
+			PrintStream out = new PrintStream(new FileOutputStream(summary));
+			BatchRunner.printSummary(results, out);
+			out.close();
+
+			if (results.stream().anyMatch(r -> !r.isSuccess())) {
+				System.exit(1);
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,261 @@
+package averroes.experiments;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import probe.ObjectManager;
+import soot.G;
+import averroes.experiments.util.MethodTable;
+import averroes.experiments.util.SignatureInterner;
+import averroes.experiments.util.WalaHierarchyCache;
+import averroes.experiments.util.io.ClassBytesCache;
+
+/**
+ * A driver class that keeps {@link CallGraphGenerator} resident in one JVM, so
+ * that consecutive runs skip the JVM start-up and JIT warm-up. It listens on a
+ * loopback port and runs one job per connection, one job at a time.
+ *
+ * A job is one line with the absolute working directory of the client, then
+ * the arguments of {@link CallGraphGenerator}, separated by tabs. Relative
+ * paths given to -b, -d, -o, and -h are resolved against that directory, not
+ * the one of the daemon. The output of the job is sent back on the
+ * connection, followed by a last line "[Daemon] exit status: N" (0 on
+ * success). The line "shutdown" stops the daemon.
+ *
+ * Not all the state of a job can be reset: probe's {@link ObjectManager}
+ * interns every class and method it is asked for and cannot be cleared, so it
+ * grows with every distinct benchmark the daemon analyzes. The daemon exits
+ * with {@link #RECYCLE_STATUS} after a given number of jobs (100 by default),
+ * and scripts/daemon starts a fresh one.
+ *
+ * Usage: CallGraphDaemon [port [max jobs]]
+ *
+ */
+public class CallGraphDaemon {
+
+	public static final int DEFAULT_PORT = 7878;
+
+	public static final String EXIT_STATUS = "[Daemon] exit status: ";
+
+	public static final String SHUTDOWN = "shutdown";
+
+	public static final int DEFAULT_MAX_JOBS = 100;
+
+	// The exit status of a daemon that stopped to be replaced by a fresh one
+	public static final int RECYCLE_STATUS = 3;
+
+	// The options of CallGraphGenerator whose values are paths
+	private static final Set<String> PATH_OPTIONS = new HashSet<String>(Arrays.asList("-b", "--base", "-d",
+			"--dynamic-classes-file", "-o", "--output-directory", "-h", "--doop-home"));
+
+	private int maxJobs;
+	private int jobs = 0;
+
+	// The latencies (cold, then warm) of each tool, in milliseconds
+	private Map<String, Latency> latencies = new HashMap<String, Latency>();
+
+	private static class Latency {
+		private long cold = -1;
+		private long warm = 0;
+		private int warmRuns = 0;
+	}
+
+	/**
+	 * Construct a new daemon that stops after the given number of jobs.
+	 *
+	 * @param maxJobs
+	 */
+	public CallGraphDaemon(int maxJobs) {
+		this.maxJobs = maxJobs;
+	}
+
+	public static void main(String[] args) {
+		try {
+			int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+			int maxJobs = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_JOBS;
+			if (new CallGraphDaemon(maxJobs).serve(port)) {
+				System.exit(RECYCLE_STATUS);
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Accept jobs on the given port until a client asks for a shutdown, or
+	 * until the maximum number of jobs ran. Returns true in the latter case.
+	 *
+	 * @param port
+	 * @return
+	 * @throws IOException
+	 */
+	public boolean serve(int port) throws IOException {
+		PrintStream out = System.out;
+		PrintStream err = System.err;
+
+		// Consecutive jobs can share a WALA class hierarchy
+		WalaHierarchyCache.v().setEnabled(true);
+
+		try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+			out.println("[Daemon] Listening on " + server.getLocalSocketAddress());
+
+			while (true) {
+				try (Socket client = server.accept()) {
+					BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(),
+							StandardCharsets.UTF_8));
+					String line = in.readLine();
+					if (line == null || line.trim().isEmpty()) {
+						continue;
+					}
+					if (line.trim().equals(SHUTDOWN)) {
+						out.println("[Daemon] Shutting down after " + jobs + " jobs.");
+						return false;
+					}
+
+					PrintStream job = new PrintStream(client.getOutputStream(), true, "UTF-8");
+					// A job sets system properties (e.g., java.home for the
+					// dynamic call graph) that the next jobs must not see
+					Properties properties = (Properties) System.getProperties().clone();
+					try {
+						System.setOut(job);
+						System.setErr(job);
+						run(line.split("\t"), job, out);
+					} finally {
+						System.setOut(out);
+						System.setErr(err);
+						System.setProperties(properties);
+					}
+
+					if (jobs >= maxJobs) {
+						out.println("[Daemon] Recycling after " + jobs + " jobs.");
+						return true;
+					}
+				} catch (IOException e) {
+					// The client went away, keep serving the others
+					e.printStackTrace(err);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Run one job and reset the global state behind it, whatever its outcome.
+	 * The job output goes to {@code job}, the latency record to {@code log}.
+	 */
+	private void run(String[] fields, PrintStream job, PrintStream log) {
+		if (!new File(fields[0]).isAbsolute()) {
+			job.println("[Daemon] A job must start with the absolute working directory of the client.");
+			job.println(EXIT_STATUS + 1);
+			return;
+		}
+		String[] args = resolvePaths(Arrays.copyOfRange(fields, 1, fields.length), new File(fields[0]));
+
+		String tool = tool(args);
+		Latency latency = latencies.computeIfAbsent(tool, t -> new Latency());
+		boolean cold = latency.cold < 0;
+		int status = 0;
+		jobs++;
+
+		long start = System.currentTimeMillis();
+		try {
+			CallGraphGenerator.run(args);
+		} catch (Throwable t) {
+			// Including errors (e.g., OutOfMemoryError): the heap is released
+			// by the reset below and the next job starts from a clean state.
+			t.printStackTrace();
+			status = 1;
+		}
+		long millis = System.currentTimeMillis() - start;
+
+		reset();
+
+		if (cold) {
+			latency.cold = millis;
+		} else {
+			latency.warm += millis;
+			latency.warmRuns++;
+		}
+
+		String record = String.format("[Daemon] Job %d (%s, %s) %s in %.2f seconds.", jobs, tool, cold ? "cold"
+				: "warm", status == 0 ? "finished" : "failed", millis / 1000.0);
+		if (latency.warmRuns > 0) {
+			record += String.format(" %s: %.2f seconds cold, %.2f seconds warm on average over %d runs.", tool,
+					latency.cold / 1000.0, latency.warm / 1000.0 / latency.warmRuns, latency.warmRuns);
+		}
+
+		job.println(record);
+		job.println(EXIT_STATUS + status);
+		log.println(record);
+	}
+
+	/**
+	 * Forget all the state a run leaves behind in static fields, except for
+	 * the probe {@link ObjectManager}, which cannot be cleared (hence the
+	 * recycling). The WALA class hierarchy cache is kept on purpose: it is
+	 * keyed by the contents of the analysis scope, which is what makes warm
+	 * runs cheaper. The system properties are restored by serve(), along with
+	 * System.out and System.err.
+	 */
+	private static void reset() {
+		G.reset();
+		MethodTable.v().reset();
+		SignatureInterner.v().reset();
+		// The archives might be rewritten by the next run (e.g., Averroes)
+		ClassBytesCache.v().reset();
+		System.gc();
+	}
+
+	/**
+	 * Resolve the relative paths given to the path options of a job against
+	 * the working directory of the client.
+	 */
+	private static String[] resolvePaths(String[] args, File directory) {
+		String[] result = args.clone();
+		for (int i = 0; i < result.length; i++) {
+			int equals = result[i].indexOf('=');
+			if (PATH_OPTIONS.contains(result[i]) && i + 1 < result.length) {
+				result[i + 1] = resolve(result[i + 1], directory);
+				i++;
+			} else if (result[i].startsWith("--") && equals > 0
+					&& PATH_OPTIONS.contains(result[i].substring(0, equals))) {
+				result[i] = result[i].substring(0, equals + 1) + resolve(result[i].substring(equals + 1), directory);
+			}
+		}
+		return result;
+	}
+
+	private static String resolve(String path, File directory) {
+		return new File(path).isAbsolute() ? path : new File(directory, path).getPath();
+	}
+
+	/**
+	 * The name of the tool a job runs (including the Averroes flag), used to
+	 * tell cold runs from warm ones.
+	 */
+	private static String tool(String[] args) {
+		String tool = "unknown";
+		boolean averroes = false;
+		for (int i = 0; i < args.length; i++) {
+			if ((args[i].equals("-t") || args[i].equals("--tool")) && i + 1 < args.length) {
+				tool = args[i + 1].toLowerCase();
+			} else if (args[i].equals("-a") || args[i].equals("--averroes")) {
+				averroes = true;
+			}
+		}
+		return averroes ? tool + "-averroes" : tool;
+	}
+}
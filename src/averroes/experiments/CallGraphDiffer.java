@@ -0,0 +1,135 @@
+package averroes.experiments;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import probe.TextReader;
+import averroes.experiments.util.CompactCallGraph;
+import averroes.experiments.util.CompactCallGraphDiff;
+import averroes.experiments.util.Files;
+import averroes.experiments.util.io.BinaryCallGraph;
+
+/**
+ * A driver class that compares pairs of call graphs (gzipped text or binary)
+ * with {@link CompactCallGraphDiff}, in place of probe.CallGraphDiff. Each
+ * pair is a reference graph (e.g., the dynamic call graph) and another graph.
+ * The pairs are compared concurrently, and a graph that appears in several
+ * pairs is only loaded once.
+ *
+ * With a single pair and no output directory, the full report of the pair is
+ * printed. Otherwise, a table of counts is printed (one row per pair), and the
+ * full reports are written to the output directory, if any.
+ *
+ * Usage: CallGraphDiffer [-j threads] [-o directory] reference other
+ * [reference other ...]
+ *
+ */
+public class CallGraphDiffer {
+
+	// Loading goes through the (unsynchronized) probe ObjectManager
+	private static final Object loadLock = new Object();
+
+	private static ConcurrentHashMap<String, CompletableFuture<CompactCallGraph>> graphs = new ConcurrentHashMap<String, CompletableFuture<CompactCallGraph>>();
+
+	public static void main(String[] args) {
+		try {
+			int threads = Runtime.getRuntime().availableProcessors();
+			File outputDirectory = null;
+			List<String> files = new ArrayList<String>();
+
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-j")) {
+					threads = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-o")) {
+					outputDirectory = new File(args[++i]);
+				} else {
+					files.add(args[i]);
+				}
+			}
+
+			if (files.isEmpty() || files.size() % 2 != 0) {
+				System.err.println("Usage: CallGraphDiffer [-j threads] [-o directory] reference other [reference other ...]");
+				System.exit(1);
+			}
+
+			// Compare the pairs
+			ExecutorService pool = Executors.newFixedThreadPool(threads);
+			List<Future<CompactCallGraphDiff>> diffs = new ArrayList<Future<CompactCallGraphDiff>>();
+			for (int i = 0; i < files.size(); i += 2) {
+				String reference = files.get(i);
+				String other = files.get(i + 1);
+				diffs.add(pool.submit(() -> CompactCallGraphDiff.compute(load(reference), load(other))));
+			}
+			pool.shutdown();
+
+			if (diffs.size() == 1 && outputDirectory == null) {
+				diffs.get(0).get().write(System.out);
+				return;
+			}
+
+			System.out.println("reference\tother\t" + CompactCallGraphDiff.summaryHeader());
+			for (int i = 0; i < diffs.size(); i++) {
+				String reference = files.get(2 * i);
+				String other = files.get(2 * i + 1);
+				CompactCallGraphDiff diff = diffs.get(i).get();
+				System.out.println(reference + "\t" + other + "\t" + diff.summary());
+
+				if (outputDirectory != null) {
+					outputDirectory.mkdirs();
+					File report = new File(outputDirectory, String.format("%03d-%s.diff", i, name(other)));
+					try (PrintStream out = new PrintStream(new FileOutputStream(report))) {
+						out.println("reference: " + reference);
+						out.println("other: " + other);
+						diff.write(out);
+					}
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Load a call graph, or wait for another pair that is already loading it.
+	 */
+	private static CompactCallGraph load(String file) throws Exception {
+		CompletableFuture<CompactCallGraph> mine = new CompletableFuture<CompactCallGraph>();
+		CompletableFuture<CompactCallGraph> graph = graphs.putIfAbsent(file, mine);
+		if (graph != null) {
+			return graph.get();
+		}
+
+		try {
+			synchronized (loadLock) {
+				if (file.endsWith(Files.BINARY_CALL_GRAPH_EXTENSION)) {
+					mine.complete(BinaryCallGraph.open(new File(file)).toCompactCallGraph());
+				} else {
+					mine.complete(CompactCallGraph.fromProbe(new TextReader().readCallGraph(file)));
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			mine.completeExceptionally(e);
+		}
+		return mine.get();
+	}
+
+	/**
+	 * A file name for the report of a graph (e.g., antlr-spark for
+	 * .../antlr/spark.txt.gzip).
+	 */
+	private static String name(String file) {
+		File f = new File(file);
+		String name = f.getName().replace(".txt.gzip", "").replace(Files.BINARY_CALL_GRAPH_EXTENSION, "");
+		return f.getParentFile() == null ? name : f.getParentFile().getName() + "-" + name;
+	}
+}
@@ -1,22 +1,37 @@
 package averroes.experiments;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.JarFile;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.FileUtils;
 
-import probe.CallGraph;
 import averroes.experiments.options.Benchmarks;
 import averroes.experiments.options.ExperimentsOptions;
 import averroes.experiments.soot.SparkCallGraphTransformer;
 import averroes.experiments.util.CommandExecuter;
+import averroes.experiments.util.CompactCallGraph;
 import averroes.experiments.util.Files;
+import averroes.experiments.util.Hashes;
+import averroes.experiments.util.InstrumentedJarCache;
 import averroes.experiments.util.ProbeUtils;
-import averroes.experiments.util.TimeUtils;
+import averroes.experiments.util.ProcessSupervisor;
+import averroes.experiments.util.Profiler;
+import averroes.experiments.util.RunMetrics;
+import averroes.experiments.util.WalaHierarchyCache;
+import averroes.experiments.util.WalaProgressMonitor;
+import averroes.experiments.util.WalaTraceParser;
+import averroes.experiments.util.io.NamedPipe;
 
 import com.ibm.wala.classLoader.IMethod;
 import com.ibm.wala.classLoader.JarFileModule;
@@ -26,6 +41,7 @@ import com.ibm.wala.ipa.callgraph.AnalysisOptions;
 import com.ibm.wala.ipa.callgraph.AnalysisOptions.ReflectionOptions;
 import com.ibm.wala.ipa.callgraph.AnalysisScope;
 import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraphBuilder;
 import com.ibm.wala.ipa.callgraph.CallGraphBuilderCancelException;
 import com.ibm.wala.ipa.callgraph.ContextSelector;
 import com.ibm.wala.ipa.callgraph.Entrypoint;
@@ -34,6 +50,7 @@ import com.ibm.wala.ipa.callgraph.impl.DefaultEntrypoint;
 import com.ibm.wala.ipa.callgraph.impl.Util;
 import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
 import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
+import com.ibm.wala.ipa.callgraph.propagation.PropagationCallGraphBuilder;
 import com.ibm.wala.ipa.callgraph.propagation.SSAContextInterpreter;
 import com.ibm.wala.ipa.callgraph.propagation.SSAPropagationCallGraphBuilder;
 import com.ibm.wala.ipa.callgraph.propagation.cfa.ZeroXCFABuilder;
@@ -41,6 +58,7 @@ import com.ibm.wala.ipa.callgraph.propagation.cfa.ZeroXInstanceKeys;
 import com.ibm.wala.ipa.cha.ClassHierarchy;
 import com.ibm.wala.ipa.cha.ClassHierarchyException;
 import com.ibm.wala.ipa.cha.IClassHierarchy;
+import com.ibm.wala.properties.WalaProperties;
 import com.ibm.wala.shrike.cg.OfflineDynamicCallGraph;
 import com.ibm.wala.shrikeBT.analysis.Analyzer.FailureException;
 import com.ibm.wala.shrikeCT.InvalidClassFileException;
@@ -63,18 +81,27 @@ import com.ibm.wala.util.strings.Atom;
  */
 public class CallGraphFactory {
 
+	// The precision levels of WALA, from the most to the least precise
+	private static final String ZERO_ONE_CFA = "0-1-CFA";
+	private static final String ZERO_CFA = "0-CFA";
+	private static final String RTA = "RTA";
+
+	// The flags passed to OfflineDynamicCallGraph, part of the key of the
+	// instrumented jar cache
+	private static final List<String> INSTRUMENTATION_FLAGS = Arrays
+			.asList("--patch-calls");
+
 	/**
 	 * Generate the call graph for Spark.
 	 * 
 	 * @return
 	 * @throws IOException
 	 */
-	public static CallGraph generateSparkCallGraph(String base,
+	public static CompactCallGraph generateSparkCallGraph(String base,
 			String benchmark, boolean isAverroes) throws IOException {
-		CallGraph spark = new SparkCallGraphTransformer(base, benchmark,
-				isAverroes).getProbeCallGraph();
-		System.out
-				.println("size of original spark is: " + spark.edges().size());
+		CompactCallGraph spark = new SparkCallGraphTransformer(base,
+				benchmark, isAverroes).getCallGraph();
+		System.out.println("size of original spark is: " + spark.edgeCount());
 		return spark;
 	}
 
@@ -87,11 +114,13 @@ public class CallGraphFactory {
 	 * @throws IOException
 	 * @throws InterruptedException
 	 */
-	public static CallGraph generateDoopCallGraph(String doopHome, String base,
+	public static CompactCallGraph generateDoopCallGraph(String doopHome, String base,
 			String benchmark, boolean isAverroes) throws IOException,
 			InterruptedException {
 		// 1. Run doop's analysis
-		CommandExecuter.runDoop(doopHome, base, benchmark, isAverroes);
+		try (Profiler.Phase phase = Profiler.v().start("doop")) {
+			CommandExecuter.runDoop(doopHome, base, benchmark, isAverroes);
+		}
 
 		// 2. Convert the Doop call graph
 		return ProbeUtils.convertDoopCallGraph(doopHome, isAverroes);
@@ -109,7 +138,7 @@ public class CallGraphFactory {
 	 * @throws IllegalArgumentException
 	 * @throws InvalidClassFileException
 	 */
-	public static CallGraph generateWalaCallGraph(String base,
+	public static CompactCallGraph generateWalaCallGraph(String base,
 			String benchmark, boolean isAve) throws IOException,
 			InterruptedException, ClassHierarchyException,
 			IllegalArgumentException, CallGraphBuilderCancelException,
@@ -122,11 +151,35 @@ public class CallGraphFactory {
 		String exclusionFile = CallGraphFactory.class.getClassLoader()
 				.getResource(CallGraphTestUtil.REGRESSION_EXCLUSIONS).getPath();
 
-		AnalysisScope scope = isAve ? makeAverroesAnalysisScope(base, benchmark)
-				: AnalysisScopeReader.makeJavaBinaryAnalysisScope(classpath,
-						new File(exclusionFile));
+		// In the daemon, reuse the class hierarchy of an earlier job if its
+		// inputs did not change. Any other JVM runs a single job, so the scope
+		// is not worth hashing.
+		Profiler.Phase phase = Profiler.v().start("wala-hierarchy");
+		String key = WalaHierarchyCache.v().isEnabled() ? hierarchyKey(base,
+				benchmark, exclusionFile, isAve) : null;
+		WalaHierarchyCache.Hierarchy hierarchy = key == null ? null
+				: WalaHierarchyCache.v().get(key);
+
+		if (hierarchy == null) {
+			AnalysisScope scope = isAve ? makeAverroesAnalysisScope(base, benchmark)
+					: AnalysisScopeReader.makeJavaBinaryAnalysisScope(classpath,
+							new File(exclusionFile));
+			hierarchy = new WalaHierarchyCache.Hierarchy(scope,
+					ClassHierarchy.make(scope));
+			if (key != null) {
+				WalaHierarchyCache.v().put(key, hierarchy);
+			}
+			phase.stop();
+			System.out.println("[Wala] Class hierarchy built in "
+					+ phase.seconds() + " seconds (cold).");
+		} else {
+			phase.stop();
+			System.out.println("[Wala] Class hierarchy restored in "
+					+ phase.seconds() + " seconds (warm).");
+		}
 
-		ClassHierarchy cha = ClassHierarchy.make(scope);
+		AnalysisScope scope = hierarchy.scope();
+		ClassHierarchy cha = hierarchy.cha();
 
 		Iterable<Entrypoint> entrypoints = makeMainEntrypoints(
 				scope.getApplicationLoader(),
@@ -140,16 +193,37 @@ public class CallGraphFactory {
 				: ReflectionOptions.MULTI_FLOW_TO_CASTS_APPLICATION_GET_METHOD);
 		options.setHandleZeroLengthArray(isAve ? false : true);
 
-		SSAPropagationCallGraphBuilder builder = isAve ? makeZeroOneCFABuilder(
-				options, new AnalysisCache(), cha, scope, null, null) : Util
-				.makeZeroOneCFABuilder(options, new AnalysisCache(), cha,
-						scope, null, null);
-
-		TimeUtils.splitStart();
-		BasicCallGraph<?> cg = (BasicCallGraph<?>) builder.makeCallGraph(
-				options, null);
-		System.out.println("[Wala] Solution found in "
-				+ TimeUtils.elapsedSplitTime() + " seconds.");
+		// In monitored mode, fall back to cheaper configurations when a
+		// budget runs out. RTA, the last level, has no budget.
+		String[] levels = ExperimentsOptions.isWalaMonitored() ? new String[] {
+				ZERO_ONE_CFA, ZERO_CFA, RTA } : new String[] { ZERO_ONE_CFA };
+		BasicCallGraph<?> cg = null;
+
+		for (int i = 0; i < levels.length && cg == null; i++) {
+			boolean isLast = i == levels.length - 1;
+			CallGraphBuilder builder = makeWalaBuilder(levels[i], options,
+					cha, scope, isAve);
+			WalaProgressMonitor monitor = new WalaProgressMonitor(levels[i],
+					() -> nodeCount(builder),
+					isLast ? 0 : ExperimentsOptions.getWalaTimeBudget(),
+					isLast ? 0 : ExperimentsOptions.getWalaHeapBudget());
+
+			phase = Profiler.v().start("wala-" + levels[i]);
+			try {
+				cg = (BasicCallGraph<?>) builder.makeCallGraph(options,
+						ExperimentsOptions.isWalaMonitored() ? monitor : null);
+				phase.stop();
+				System.out.println("[Wala] Solution found in "
+						+ phase.seconds() + " seconds.");
+				System.out.println("[Wala] Precision level: " + levels[i]);
+			} catch (CallGraphBuilderCancelException e) {
+				phase.stop();
+				System.out.println("[Wala] " + levels[i] + " cancelled after "
+						+ phase.seconds() + " seconds ("
+						+ monitor.getCancelMessage() + "), falling back to "
+						+ levels[i + 1]);
+			}
+		}
 
 		// dumpCG(scope.getApplicationLoader(), builder.getPointerAnalysis(),
 		// cg);
@@ -158,6 +232,38 @@ public class CallGraphFactory {
 		return ProbeUtils.convertWalaCallGraph(cg);
 	}
 
+	/**
+	 * The key of the class hierarchy of a benchmark in
+	 * {@link WalaHierarchyCache}: the content hashes of the JARs in its scope.
+	 * The primordial loader of the vanilla scope reads the JARs of the JRE
+	 * (as configured for WALA), and uses the exclusions file.
+	 * 
+	 * @param base
+	 * @param benchmark
+	 * @param exclusionFile
+	 * @param isAve
+	 * @return
+	 * @throws IOException
+	 */
+	private static String hierarchyKey(String base, String benchmark,
+			String exclusionFile, boolean isAve) throws IOException {
+		if (isAve) {
+			return "averroes;"
+					+ Hashes.key(Files.averroesLibraryClassJarFile(base, benchmark),
+							Files.placeholderLibraryJarFile(base, benchmark),
+							Files.organizedApplicationJarFile(base, benchmark));
+		}
+
+		List<File> files = new ArrayList<File>();
+		files.add(Files.organizedApplicationJarFile(base, benchmark));
+		files.add(Files.organizedLibraryJarFile(base, benchmark));
+		files.add(new File(exclusionFile));
+		for (String jar : WalaProperties.getJ2SEJarFiles()) {
+			files.add(new File(jar));
+		}
+		return "vanilla;" + Hashes.key(files.toArray(new File[files.size()]));
+	}
+
 	/**
 	 * Generate the dynamic call graph for the given benchmark
 	 * 
@@ -171,70 +277,106 @@ public class CallGraphFactory {
 	 * @throws InterruptedException
 	 * @throws WalaException
 	 */
-	public static CallGraph generateDynamicCallGraph(String base,
+	public static CompactCallGraph generateDynamicCallGraph(String base,
 			String benchmark) throws ClassNotFoundException, IOException,
 			InvalidClassFileException, FailureException, WalaException,
 			InterruptedException {
 		// Instrument the input app
-		instrument(base, benchmark);
+		File instrumented;
+		try (Profiler.Phase phase = Profiler.v().start("instrument")) {
+			instrumented = instrument(base, benchmark);
+		}
 
 		// Execute the instrumented app
-		exec(base, benchmark, CallGraphFactory.class.getClassLoader()
-				.getResource(CallGraphTestUtil.REGRESSION_EXCLUSIONS).getPath());
+		ProcessSupervisor process = benchmarkProcess(base, benchmark,
+				instrumented, CallGraphFactory.class.getClassLoader()
+						.getResource(CallGraphTestUtil.REGRESSION_EXCLUSIONS)
+						.getPath());
+		File report = new File(
+				ExperimentsOptions.getDynamicCallGraphReportLocation());
+		NamedPipe pipe = ExperimentsOptions.isDynamicPipelined() ? NamedPipe
+				.make(report) : null;
+
+		CompactCallGraph cg;
+		if (pipe != null) {
+			cg = execPipelined(process, pipe);
+		} else {
+			if (ExperimentsOptions.isDynamicPipelined()) {
+				System.out
+						.println("[Dynamic] Named pipes are not supported, writing the trace to disk.");
+			}
+			RunMetrics.v().add(process.run());
+
+			// Test that the dynamic call graph report has been generated.
+			Assertions.productionAssertion(report.exists(),
+					"expected to create call graph");
+			cg = ProbeUtils.convertWalaDynamicCallGraph(report.getPath());
+		}
 
-		return ProbeUtils.convertWalaDynamicCallGraph(ExperimentsOptions
-				.getDynamicCallGraphReportLocation());
+		// The working files are only kept if something went wrong
+		FileUtils.deleteQuietly(ExperimentsOptions.getWorkDirectory());
+		return cg;
 	}
 
 	/**
 	 * Instrument the given application jar files using the WALA
-	 * OfflineDynamicCallGraph.
+	 * OfflineDynamicCallGraph, unless the instrumented jar is already in the
+	 * cache.
 	 * 
 	 * @param base
 	 * @param benchmark
+	 * @return the instrumented jar
 	 * @throws FailureException
 	 * @throws InvalidClassFileException
 	 * @throws IOException
 	 * @throws ClassNotFoundException
 	 */
-	private static void instrument(String base, String benchmark)
+	private static File instrument(String base, String benchmark)
 			throws ClassNotFoundException, IOException,
 			InvalidClassFileException, FailureException {
-		System.out.println("Instrumenting appJar ...");
-		String rt = "/usr/lib/jvm/java-7-oracle/jre/lib/rt.jar";
-//		String rt = "/Library/Java/JavaVirtualMachines/jdk1.7.0_80.jdk/Contents/Home/jre/lib/rt.jar";
-		
-		OfflineDynamicCallGraph.main(new String[] {
-				Files.applicationJarFile(base, benchmark).getPath(), "-o",
-				ExperimentsOptions.getInstrumentedJarLocation(),
-				"--patch-calls", "--rt-jar", rt  });
-		Assertions.productionAssertion(
-				new File(ExperimentsOptions.getInstrumentedJarLocation())
-						.exists(), "expected to create instrumented.jar");
-		System.out.println("Instrumented jar is available at "
-				+ ExperimentsOptions.getInstrumentedJarLocation());
+		File app = Files.applicationJarFile(base, benchmark);
+		File rt = new File("/usr/lib/jvm/java-7-oracle/jre/lib/rt.jar");
+//		File rt = new File("/Library/Java/JavaVirtualMachines/jdk1.7.0_80.jdk/Contents/Home/jre/lib/rt.jar");
+
+		InstrumentedJarCache cache = new InstrumentedJarCache(
+				Files.instrumentedJarCacheDirectory(base));
+		File instrumented = cache.get(app, rt, INSTRUMENTATION_FLAGS,
+				output -> {
+					System.out.println("Instrumenting appJar ...");
+					List<String> args = new ArrayList<String>(Arrays.asList(
+							app.getPath(), "-o", output.getPath()));
+					args.addAll(INSTRUMENTATION_FLAGS);
+					args.add("--rt-jar");
+					args.add(rt.getPath());
+					OfflineDynamicCallGraph.main(args.toArray(new String[0]));
+				});
+
+		System.out.println("Instrumented jar is available at " + instrumented);
+		return instrumented;
 	}
 
 	/**
-	 * Execute an instrumented benchmark to get the dynamic call graph.
+	 * The process that executes an instrumented benchmark to get the dynamic
+	 * call graph.
 	 * 
 	 * @param base
 	 * @param benchmark
-	 * @throws FailureException
-	 * @throws InvalidClassFileException
+	 * @param instrumented
+	 * @param exclusionsFile
+	 * @return
 	 * @throws IOException
-	 * @throws ClassNotFoundException
+	 * @throws WalaException
 	 */
-	private static void exec(String base, String benchmark,
-			String exclusionsFile) throws IOException, WalaException,
-			InterruptedException {
+	private static ProcessSupervisor benchmarkProcess(String base,
+			String benchmark, File instrumented, String exclusionsFile)
+			throws IOException, WalaException {
 		String java = "/usr/lib/jvm/java-7-oracle/jre/bin/java";
 //		String java = "/Library/Java/JavaVirtualMachines/jdk1.7.0_80.jdk/Contents/Home/jre/bin/java";
 //		String java = "java";
 		ArrayList<String> cmd = new ArrayList<String>(Arrays.asList(
 				java,
 				"-cp",
-				composeClasspath(base, benchmark),
+				composeClasspath(base, benchmark, instrumented),
 				"-DdynamicCGFile="
 						+ ExperimentsOptions
 								.getDynamicCallGraphReportLocation()));
@@ -260,32 +402,99 @@ public class CallGraphFactory {
 			cmd.add(ExperimentsOptions.getProgram());
 		}
 
-		// Convert cmd to an array
+		// The benchmark echoes its output
 		System.out.println();
-		System.out.println("Spawning process " + cmd);
-
-		ProcessBuilder pb = new ProcessBuilder(cmd);
-		pb.redirectErrorStream(true);
-
-		// Start the process and capture the output.
-		Process p = pb.start();
-		BufferedReader stdout = new BufferedReader(new InputStreamReader(
-				p.getInputStream()));
-		String line;
-		while ((line = stdout.readLine()) != null) {
-			System.out.println(line);
+		return new ProcessSupervisor("benchmark", cmd,
+				Files.stepLogFile("benchmark"), true, 0,
+				ExperimentsOptions.getWorkDirectory());
+	}
+
+	/**
+	 * Run the benchmark while converting (and collapsing) the trace it writes
+	 * to the given pipe, so that the conversion overlaps with the execution
+	 * and the trace never hits the disk.
+	 * 
+	 * @param process
+	 * @param pipe
+	 * @return
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private static CompactCallGraph execPipelined(ProcessSupervisor process,
+			NamedPipe pipe) throws IOException, InterruptedException {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<RunMetrics.Step> run = executor.submit(() -> {
+			try {
+				return process.run();
+			} finally {
+				// Never leave the converter waiting for a benchmark that died
+				pipe.release();
+			}
+		});
+		executor.shutdown();
+
+		long start = System.currentTimeMillis();
+		CompactCallGraph cg = null;
+		Throwable failure = null;
+		InputStream in = null;
+		try {
+			in = pipe.open();
+			// The parser closes the pipe once it is done
+			cg = ProbeUtils.convertWalaDynamicCallGraph(new WalaTraceParser(
+					new GZIPInputStream(in, 1 << 16)), true);
+		} catch (IOException | RuntimeException | Error e) {
+			// Nobody drains the pipe anymore, the benchmark would block on it
+			process.destroy();
+			failure = e;
+		} finally {
+			if (in != null) {
+				in.close();
+			}
+		}
+		long millis = System.currentTimeMillis() - start;
+
+		RunMetrics.Step step = benchmarkStep(run);
+		RunMetrics.v().add(step);
+		pipe.delete();
+		if (failure instanceof IOException) {
+			throw new IOException("could not convert the trace of the benchmark ("
+					+ step + ")", failure);
+		} else if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		} else if (failure != null) {
+			throw (Error) failure;
+		} else if (!step.isSuccess()) {
+			// The trace of a crashed (or killed) benchmark is incomplete
+			throw new IOException("the benchmark failed (" + step + ")");
 		}
 
-		// Wait for the process to finish
-		stdout.close();
-		p.waitFor();
+		System.out.println("[Dynamic] Trace converted in " + millis / 1000.0
+				+ " seconds, while the benchmark ran for "
+				+ step.wallMillis() / 1000.0 + " seconds.");
+		return cg;
+	}
 
-		// Test that the dynamic call graph report has been generated.
-		Assertions
-				.productionAssertion(
-						new File(ExperimentsOptions
-								.getDynamicCallGraphReportLocation()).exists(),
-						"expected to create call graph");
+	/**
+	 * Wait for the benchmark of a pipelined run, and rethrow what it threw.
+	 * 
+	 * @param run
+	 * @return
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private static RunMetrics.Step benchmarkStep(Future<RunMetrics.Step> run)
+			throws IOException, InterruptedException {
+		try {
+			return run.get();
+		} catch (ExecutionException e) {
+			// ProcessSupervisor.run() only throws these
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			} else if (e.getCause() instanceof InterruptedException) {
+				throw (InterruptedException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
 	}
 
 	/**
@@ -293,15 +502,13 @@ public class CallGraphFactory {
 	 * 
 	 * @param base
 	 * @param benchmark
+	 * @param instrumented
 	 * @return
 	 * @throws IOException
 	 * @throws WalaException
 	 */
-	private static String composeClasspath(String base, String benchmark)
-			throws IOException, WalaException {
-		String instrumented = new File(
-				ExperimentsOptions.getInstrumentedJarLocation())
-				.getCanonicalPath();
+	private static String composeClasspath(String base, String benchmark,
+			File instrumented) throws IOException, WalaException {
 		String toolJar = CallGraphFactory.class.getProtectionDomain()
 				.getCodeSource().getLocation().getPath();
 
@@ -312,8 +519,59 @@ public class CallGraphFactory {
 			toolJar = new File("tool.jar").getCanonicalPath();
 		}
 
-		return Files.composeClassPath(instrumented,
-				Files.libraryPath(base, benchmark), toolJar);
+		// The benchmark runs in the working directory of this run, the paths
+		// must be absolute
+		return Files.composeClassPath(instrumented.getCanonicalPath(),
+				Files.libraryPath(new File(base).getAbsolutePath(), benchmark),
+				toolJar);
+	}
+
+	/**
+	 * Make the WALA call graph builder for the given precision level.
+	 * 
+	 * @param level
+	 * @param options
+	 * @param cha
+	 * @param scope
+	 * @param isAve
+	 * @return
+	 */
+	private static CallGraphBuilder makeWalaBuilder(String level,
+			AnalysisOptions options, IClassHierarchy cha, AnalysisScope scope,
+			boolean isAve) {
+		if (level.equals(ZERO_ONE_CFA)) {
+			return isAve ? makeZeroOneCFABuilder(options, new AnalysisCache(),
+					cha, scope, null, null) : Util.makeZeroOneCFABuilder(options,
+					new AnalysisCache(), cha, scope, null, null);
+		} else if (level.equals(ZERO_CFA)) {
+			if (isAve) {
+				Util.addDefaultSelectors(options, cha);
+				return ZeroXCFABuilder.make(cha, options, new AnalysisCache(),
+						null, null, ZeroXInstanceKeys.NONE);
+			}
+			return Util.makeZeroCFABuilder(options, new AnalysisCache(), cha,
+					scope);
+		} else if (level.equals(RTA)) {
+			return Util.makeRTABuilder(options, new AnalysisCache(), cha, scope);
+		} else {
+			throw new IllegalArgumentException("unknown WALA precision level "
+					+ level);
+		}
+	}
+
+	/**
+	 * The number of nodes in the call graph a builder has made so far.
+	 * 
+	 * @param builder
+	 * @return
+	 */
+	private static int nodeCount(CallGraphBuilder builder) {
+		if (builder instanceof PropagationCallGraphBuilder) {
+			com.ibm.wala.ipa.callgraph.CallGraph cg = ((PropagationCallGraphBuilder) builder)
+					.getCallGraph();
+			return cg == null ? 0 : cg.getNumberOfNodes();
+		}
+		return 0;
 	}
 
 	private static SSAPropagationCallGraphBuilder makeZeroOneCFABuilder(
@@ -0,0 +1,48 @@
+package averroes.experiments;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import probe.TextReader;
+import probe.TextWriter;
+import averroes.experiments.util.CompactCallGraph;
+import averroes.experiments.util.Files;
+import averroes.experiments.util.io.BinaryCallGraph;
+import averroes.experiments.util.io.BinaryCallGraphWriter;
+
+/**
+ * A driver class that converts a call graph between the gzipped text format
+ * (.txt.gzip) and the binary format (.cg.bin). The direction is given by the
+ * extension of the input file.
+ *
+ * Usage: CallGraphFormatConverter input output
+ *
+ */
+public class CallGraphFormatConverter {
+
+	public static void main(String[] args) {
+		if (args.length != 2) {
+			System.err.println("Usage: CallGraphFormatConverter <input> <output>");
+			System.exit(1);
+		}
+
+		try {
+			File input = new File(args[0]);
+			File output = new File(args[1]);
+
+			if (input.getName().endsWith(Files.BINARY_CALL_GRAPH_EXTENSION)) {
+				new TextWriter().write(BinaryCallGraph.open(input).toProbeCallGraph(),
+						new GZIPOutputStream(new FileOutputStream(output)));
+			} else {
+				CompactCallGraph cg = CompactCallGraph.fromProbe(new TextReader().readCallGraph(input.getPath()));
+				BinaryCallGraphWriter.write(cg, output);
+			}
+
+			System.out.println("Converted " + input + " to " + output);
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+}
@@ -2,16 +2,19 @@ package averroes.experiments;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.io.FileUtils;
 
-import probe.CallGraph;
 import probe.TextWriter;
 import averroes.experiments.options.ExperimentsOptions;
+import averroes.experiments.util.CompactCallGraph;
 import averroes.experiments.util.Files;
 import averroes.experiments.util.ProbeUtils;
-import averroes.experiments.util.TimeUtils;
+import averroes.experiments.util.Profiler;
+import averroes.experiments.util.RunMetrics;
+import averroes.experiments.util.io.BinaryCallGraphWriter;
 
 /**
  * A driver class that generates a call graph for the given tool.
@@ -23,46 +26,85 @@ public class CallGraphGenerator {
 
 	public static void main(String[] args) {
 		try {
-			TimeUtils.reset();
+			run(args);
+		} catch (Exception e) {
+			e.printStackTrace();
+			// Let the caller (e.g., the batch driver) know that the run failed
+			System.exit(1);
+		}
+	}
 
-			// Process the arguments
-			ExperimentsOptions.processArguments(args);
+	/**
+	 * Generate the call graph described by the given arguments (see
+	 * {@link ExperimentsOptions}). Unlike {@link #main(String[])}, this never
+	 * exits the JVM, so it can be called repeatedly (e.g., by
+	 * {@link CallGraphDaemon}).
+	 * 
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void run(String[] args) throws Exception {
+		Profiler.v().reset();
+		RunMetrics.v().reset();
 
-			// Create the output directory
-			FileUtils.forceMkdir(new File(ExperimentsOptions.getOutputDirectory()));
+		// Process the arguments
+		ExperimentsOptions.processArguments(args);
 
-			CallGraph probecg = null;
+		// Create the output directory
+		FileUtils.forceMkdir(new File(ExperimentsOptions.getOutputDirectory()));
 
-			if (ExperimentsOptions.getTool().equalsIgnoreCase("spark")) {
-				probecg = CallGraphFactory.generateSparkCallGraph(ExperimentsOptions.getBaseDirectory(),
-						ExperimentsOptions.getProgram(), ExperimentsOptions.isAverroes());
-			} else if (ExperimentsOptions.getTool().equalsIgnoreCase("doop")) {
-				probecg = CallGraphFactory.generateDoopCallGraph(ExperimentsOptions.getDoopHome(),
-						ExperimentsOptions.getBaseDirectory(), ExperimentsOptions.getProgram(),
-						ExperimentsOptions.isAverroes());
-			} else if (ExperimentsOptions.getTool().equalsIgnoreCase("wala")) {
-				probecg = CallGraphFactory.generateWalaCallGraph(ExperimentsOptions.getBaseDirectory(),
-						ExperimentsOptions.getProgram(), ExperimentsOptions.isAverroes());
-			} else if (ExperimentsOptions.getTool().equalsIgnoreCase("dynamic")) {
-				probecg = CallGraphFactory.generateDynamicCallGraph(ExperimentsOptions.getBaseDirectory(),
-						ExperimentsOptions.getProgram());
-			} else {
-				throw new IllegalStateException(
-						ExperimentsOptions.getTool()
-								+ " is unknow. Please provide one of the following tool names: spark, doop, or wala (case-insensitive)");
-			}
-			System.out.println("Total time to finish: " + TimeUtils.elapsedTime());
+		CompactCallGraph probecg = null;
 
-			// collapse and write the call graph
-			CallGraph cg = ProbeUtils.collapse(probecg);
-			new TextWriter().write(cg, new GZIPOutputStream(new FileOutputStream(Files.callGraphGzipFile())));
+		if (ExperimentsOptions.getTool().equalsIgnoreCase("spark")) {
+			probecg = CallGraphFactory.generateSparkCallGraph(ExperimentsOptions.getBaseDirectory(),
+					ExperimentsOptions.getProgram(), ExperimentsOptions.isAverroes());
+		} else if (ExperimentsOptions.getTool().equalsIgnoreCase("doop")) {
+			probecg = CallGraphFactory.generateDoopCallGraph(ExperimentsOptions.getDoopHome(),
+					ExperimentsOptions.getBaseDirectory(), ExperimentsOptions.getProgram(),
+					ExperimentsOptions.isAverroes());
+		} else if (ExperimentsOptions.getTool().equalsIgnoreCase("wala")) {
+			probecg = CallGraphFactory.generateWalaCallGraph(ExperimentsOptions.getBaseDirectory(),
+					ExperimentsOptions.getProgram(), ExperimentsOptions.isAverroes());
+		} else if (ExperimentsOptions.getTool().equalsIgnoreCase("dynamic")) {
+			probecg = CallGraphFactory.generateDynamicCallGraph(ExperimentsOptions.getBaseDirectory(),
+					ExperimentsOptions.getProgram());
+		} else {
+			throw new IllegalStateException(
+					ExperimentsOptions.getTool()
+							+ " is unknow. Please provide one of the following tool names: spark, doop, or wala (case-insensitive)");
+		}
+		System.out.println("Total time to finish: " + Profiler.v().elapsedTime());
 
-			// Print some statistics
-			System.out.println("=================================================");
-			System.out.println("# edges = " + cg.edges().size());
-			System.out.println("=================================================");
-		} catch (Exception e) {
-			e.printStackTrace();
+		// collapse and write the call graph
+		CompactCallGraph cg = ProbeUtils.collapse(probecg);
+		try (Profiler.Phase phase = Profiler.v().start("write")) {
+			writeCallGraph(cg);
+		}
+		if (!RunMetrics.v().steps().isEmpty()) {
+			RunMetrics.v().write(Files.metricsFile());
+		}
+		Profiler.v().writeJson(Files.profileFile("json"));
+		Profiler.v().writeCsv(Files.profileFile("csv"));
+
+		// Print some statistics
+		System.out.println("=================================================");
+		System.out.println("# edges = " + cg.edgeCount());
+		System.out.println("=================================================");
+	}
+
+	/**
+	 * Write the call graph in the formats given by the -f option.
+	 * 
+	 * @param cg
+	 * @throws IOException
+	 */
+	public static void writeCallGraph(CompactCallGraph cg) throws IOException {
+		if (ExperimentsOptions.isTextFormat()) {
+			new TextWriter().write(cg.toProbeCallGraph(),
+					new GZIPOutputStream(new FileOutputStream(Files.callGraphGzipFile())));
+		}
+		if (ExperimentsOptions.isBinaryFormat()) {
+			BinaryCallGraphWriter.write(cg, Files.callGraphBinaryFile());
 		}
 	}
 }
\ No newline at end of file
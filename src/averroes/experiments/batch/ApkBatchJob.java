@@ -0,0 +1,96 @@
+package averroes.experiments.batch;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import averroes.experiments.util.Files;
+
+/**
+ * A single run of {@link averroes.experiments.ApkCallGraphGenerator} on one
+ * Android APK, in its own JVM. The name of the APK takes the place of the
+ * program name.
+ * 
+ */
+public class ApkBatchJob extends BatchJob {
+
+	private File apk;
+	private File androidJar;
+	private String format;
+	private String sparkProfile;
+
+	/**
+	 * Construct a new APK job.
+	 * 
+	 * @param apk
+	 * @param androidJar
+	 * @param isAverroes
+	 * @param format
+	 *            the format of the output call graph (text, binary, or both)
+	 * @param sparkProfile
+	 *            the name of the Spark profile
+	 */
+	public ApkBatchJob(File apk, File androidJar, boolean isAverroes, String format, String sparkProfile) {
+		super("spark", isAverroes, Files.apkName(apk));
+		this.apk = apk;
+		this.androidJar = androidJar;
+		this.format = format;
+		this.sparkProfile = sparkProfile;
+	}
+
+	@Override
+	public boolean isDoop() {
+		return false;
+	}
+
+	@Override
+	public File outputDirectory(String base) {
+		return Files.apkCallGraphsDirectory(base, program());
+	}
+
+	@Override
+	public File callGraphFile(String base) {
+		return format.equalsIgnoreCase("binary") ? Files.callGraphBinaryFile(outputDirectory(base).getPath(),
+				toolName()) : super.callGraphFile(base);
+	}
+
+	@Override
+	public List<File> inputFiles(String base) {
+		List<File> files = new ArrayList<File>();
+		files.add(apk);
+		if (isAverroes()) {
+			files.add(Files.apkPlaceholderLibraryJarFile(base, program()));
+			files.add(Files.apkAverroesLibraryClassJarFile(base, program()));
+		} else {
+			files.add(androidJar);
+		}
+		return files;
+	}
+
+	/**
+	 * The arguments passed to
+	 * {@link averroes.experiments.ApkCallGraphGenerator#main(String[])}. The
+	 * JRE and the Doop home are not used.
+	 */
+	@Override
+	public List<String> arguments(String base, String jre, String doopHome) {
+		List<String> args = new ArrayList<String>(Arrays.asList("-b", base, "-k", apk.getPath(), "-l",
+				androidJar.getPath(), "-o", outputDirectory(base).getPath(), "-f", format, "--spark-profile",
+				sparkProfile));
+		if (isAverroes()) {
+			args.add("-a");
+		}
+		return args;
+	}
+
+	@Override
+	protected String mainClass() {
+		return "averroes.experiments.ApkCallGraphGenerator";
+	}
+
+	@Override
+	protected String jarName() {
+		return "apk.jar";
+	}
+}
@@ -0,0 +1,222 @@
+package averroes.experiments.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import averroes.experiments.options.Benchmarks;
+import averroes.experiments.util.Files;
+
+/**
+ * One cell of the tool x benchmark matrix: a single run of
+ * {@link averroes.experiments.CallGraphGenerator} in its own JVM.
+ * 
+ */
+public class BatchJob {
+
+	private String tool;
+	private boolean isAverroes;
+	private String program;
+
+	/**
+	 * Construct a new batch job.
+	 * 
+	 * @param tool
+	 * @param isAverroes
+	 * @param program
+	 */
+	public BatchJob(String tool, boolean isAverroes, String program) {
+		this.tool = tool;
+		this.isAverroes = isAverroes;
+		this.program = program;
+	}
+
+	public String tool() {
+		return tool;
+	}
+
+	public boolean isAverroes() {
+		return isAverroes;
+	}
+
+	public String program() {
+		return program;
+	}
+
+	/**
+	 * Get the full tool name (e.g., spark-averroes for Spark running with
+	 * Averroes).
+	 * 
+	 * @return
+	 */
+	public String toolName() {
+		return tool + (isAverroes ? "-averroes" : "");
+	}
+
+	/**
+	 * Does this job run Doop? Doop jobs share the state in the Doop home
+	 * directory (e.g., last-analysis), so they cannot run at the same time.
+	 * 
+	 * @return
+	 */
+	public boolean isDoop() {
+		return tool.equalsIgnoreCase("doop");
+	}
+
+	/**
+	 * The output directory of this job. It follows the layout of
+	 * scripts/run-tool, where every file a job writes is prefixed with its
+	 * tool name.
+	 * 
+	 * @param base
+	 * @return
+	 */
+	public File outputDirectory(String base) {
+		return Files.callGraphsDirectory(base, program);
+	}
+
+	/**
+	 * The log file that captures the stdout and stderr of this job.
+	 * 
+	 * @param base
+	 * @return
+	 */
+	public File logFile(String base) {
+		return new File(outputDirectory(base), toolName() + ".log");
+	}
+
+	/**
+	 * The GC log of this job, from which its peak heap is read.
+	 * 
+	 * @param base
+	 * @return
+	 */
+	public File gcLogFile(String base) {
+		return new File(outputDirectory(base), toolName() + "-gc.log");
+	}
+
+	/**
+	 * The archive of the Doop database of this job (see scripts/run-tool).
+	 * 
+	 * @param base
+	 * @return
+	 */
+	public File doopDatabaseFile(String base) {
+		return new File(outputDirectory(base), toolName() + ".tar.gz");
+	}
+
+	/**
+	 * The JAR files this job analyzes. Their sizes are used to estimate the
+	 * cost of a job that has not run before. The vanilla analyses fall back
+	 * to the original JAR files if the organized ones have not been generated
+	 * yet.
+	 * 
+	 * @param base
+	 * @return
+	 */
+	public List<File> inputFiles(String base) {
+		List<File> files = new ArrayList<File>();
+		if (isAverroes) {
+			files.add(Files.organizedApplicationJarFile(base, program));
+			files.add(Files.placeholderLibraryJarFile(base, program));
+			files.add(Files.averroesLibraryClassJarFile(base, program));
+		} else if (Files.organizedApplicationJarFile(base, program).exists()) {
+			files.add(Files.organizedApplicationJarFile(base, program));
+			files.add(Files.organizedLibraryJarFile(base, program));
+		} else {
+			files.add(Files.applicationJarFile(base, program));
+			for (String path : Files.libraryPath(base, program).split(File.pathSeparator)) {
+				files.add(new File(path));
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * The call graph file this job is expected to produce.
+	 * 
+	 * @param base
+	 * @return
+	 */
+	public File callGraphFile(String base) {
+		return Files.callGraphGzipFile(outputDirectory(base).getPath(), toolName());
+	}
+
+	/**
+	 * The arguments passed to {@link averroes.experiments.CallGraphGenerator#main(String[])}.
+	 * 
+	 * @param base
+	 * @param jre
+	 * @param doopHome
+	 * @return
+	 */
+	public List<String> arguments(String base, String jre, String doopHome) {
+		List<String> args = new ArrayList<String>(Arrays.asList("-h", doopHome == null ? "" : doopHome, "-b", base,
+				"-p", program, "-r", Benchmarks.getApplicationRegex(program), "-m",
+				Benchmarks.getMainClass(program), "-d", Files.dynamicClassesFile(program).getPath(), "-o",
+				outputDirectory(base).getPath(), "-j", jre, "-t", tool));
+		if (isAverroes) {
+			args.add("-a");
+		}
+		return args;
+	}
+
+	/**
+	 * The command that runs this job in a new JVM with the given maximum heap
+	 * size.
+	 * 
+	 * @param base
+	 * @param jre
+	 * @param doopHome
+	 * @param maxHeap
+	 * @return
+	 * @throws IOException
+	 */
+	public List<String> command(String base, String jre, String doopHome, String maxHeap) throws IOException {
+		List<String> cmd = new ArrayList<String>();
+		cmd.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+		cmd.add("-Xmx" + maxHeap);
+		cmd.add("-verbose:gc");
+		cmd.add("-Xloggc:" + gcLogFile(base).getPath());
+
+		String location = BatchJob.class.getProtectionDomain().getCodeSource().getLocation().getPath();
+
+		// check if we're running from within eclipse => path will be ./bin
+		if (location.endsWith("/bin/")) {
+			cmd.add("-cp");
+			cmd.add(System.getProperty("java.class.path"));
+			cmd.add(mainClass());
+		} else {
+			cmd.add("-jar");
+			cmd.add(new File(jarName()).getCanonicalPath());
+		}
+
+		cmd.addAll(arguments(base, jre, doopHome));
+		return cmd;
+	}
+
+	/**
+	 * The driver class this job runs.
+	 * 
+	 * @return
+	 */
+	protected String mainClass() {
+		return "averroes.experiments.CallGraphGenerator";
+	}
+
+	/**
+	 * The runnable JAR of the driver class (see jar/tool.xml).
+	 * 
+	 * @return
+	 */
+	protected String jarName() {
+		return "tool.jar";
+	}
+
+	@Override
+	public String toString() {
+		return program + "/" + toolName();
+	}
+}
@@ -0,0 +1,80 @@
+package averroes.experiments.batch;
+
+import averroes.experiments.util.RunMetrics;
+
+/**
+ * The outcome of running a {@link BatchJob}.
+ * 
+ */
+public class BatchJobResult {
+
+	/**
+	 * The possible outcomes of a job.
+	 */
+	public enum Status {
+		SUCCESS, FAILED, OUT_OF_MEMORY, TIMEOUT, ERROR
+	}
+
+	private BatchJob job;
+	private Status status;
+	private RunMetrics.Step step;
+
+	/**
+	 * Construct a new job result.
+	 * 
+	 * @param job
+	 * @param status
+	 * @param step
+	 *            the measurements of the job process, or null if it did not
+	 *            run
+	 */
+	public BatchJobResult(BatchJob job, Status status, RunMetrics.Step step) {
+		this.job = job;
+		this.status = status;
+		this.step = step;
+	}
+
+	public BatchJob job() {
+		return job;
+	}
+
+	public Status status() {
+		return status;
+	}
+
+	public int exitCode() {
+		return step == null ? -1 : step.exitCode();
+	}
+
+	/**
+	 * The wall-clock time of the job in milliseconds.
+	 * 
+	 * @return
+	 */
+	public long millis() {
+		return step == null ? 0 : step.wallMillis();
+	}
+
+	/**
+	 * The CPU time of the job process tree in milliseconds, or -1 if unknown.
+	 * 
+	 * @return
+	 */
+	public long cpuMillis() {
+		return step == null ? -1 : step.cpuMillis();
+	}
+
+	/**
+	 * The peak resident set size of the job process tree in bytes, or -1 if
+	 * unknown.
+	 * 
+	 * @return
+	 */
+	public long peakRss() {
+		return step == null ? -1 : step.peakRss();
+	}
+
+	public boolean isSuccess() {
+		return status == Status.SUCCESS;
+	}
+}
@@ -0,0 +1,225 @@
+package averroes.experiments.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+
+import averroes.experiments.batch.BatchJobResult.Status;
+import averroes.experiments.util.ProcessSupervisor;
+import averroes.experiments.util.RunMetrics;
+
+/**
+ * Runs a list of {@link BatchJob}s on a bounded pool of workers. Each job runs
+ * in its own JVM with its own heap cap, so a job that runs out of memory only
+ * fails itself.
+ * 
+ * The jobs are handed out by a {@link JobScheduler}: longest first, and only
+ * as many at a time as fit in memory, based on the {@link JobHistory} of
+ * earlier batches. The history is updated as the jobs finish.
+ * 
+ */
+public class BatchRunner {
+
+	private String base;
+	private String jre;
+	private String doopHome;
+	private String maxHeap;
+	private long timeout;
+	private int workers;
+	private long memory;
+	private JobHistory history;
+
+	/**
+	 * Construct a new batch runner.
+	 * 
+	 * @param base
+	 * @param jre
+	 * @param doopHome
+	 * @param maxHeap
+	 *            the maximum heap size of each job (e.g., 8g)
+	 * @param timeout
+	 *            the number of minutes after which a job is killed, 0 means no
+	 *            timeout
+	 * @param workers
+	 *            the maximum number of jobs to run at the same time
+	 * @param memory
+	 *            the memory the jobs may use together, in bytes
+	 * @param history
+	 *            the costs of the jobs in earlier batches
+	 */
+	public BatchRunner(String base, String jre, String doopHome, String maxHeap, long timeout, int workers,
+			long memory, JobHistory history) {
+		this.base = base;
+		this.jre = jre;
+		this.doopHome = doopHome;
+		this.maxHeap = maxHeap;
+		this.timeout = timeout;
+		this.workers = workers;
+		this.memory = memory;
+		this.history = history;
+	}
+
+	/**
+	 * Run all the given jobs and wait for them to finish. The results are
+	 * returned in the same order as the jobs.
+	 * 
+	 * @param jobs
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public List<BatchJobResult> run(List<BatchJob> jobs) throws InterruptedException {
+		// A job cannot use much more than its heap cap
+		long maxMemory = JobScheduler.parseSize(maxHeap) + (512L << 20);
+		JobScheduler scheduler = new JobScheduler(memory);
+		for (BatchJob job : jobs) {
+			scheduler.add(job, history.estimate(job, base), maxMemory);
+		}
+
+		System.out.println("Running " + jobs.size() + " jobs on " + workers + " workers"
+				+ (memory == Long.MAX_VALUE ? "" : " and " + (memory >> 20) + " MB") + " ...");
+
+		Map<BatchJob, BatchJobResult> results = new ConcurrentHashMap<BatchJob, BatchJobResult>();
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		for (int i = 0; i < workers; i++) {
+			pool.submit(() -> {
+				JobScheduler.Task task;
+				while ((task = scheduler.next()) != null) {
+					BatchJobResult result;
+					try {
+						result = run(task);
+					} catch (IOException | RuntimeException e) {
+						e.printStackTrace();
+						result = new BatchJobResult(task.job(), Status.ERROR, null);
+					} finally {
+						scheduler.finished(task);
+					}
+					results.put(task.job(), result);
+					record(result);
+				}
+				return null;
+			});
+		}
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+		// A worker that failed leaves its job without a result
+		List<BatchJobResult> ordered = new ArrayList<BatchJobResult>();
+		for (BatchJob job : jobs) {
+			ordered.add(results.getOrDefault(job, new BatchJobResult(job, Status.ERROR, null)));
+		}
+		return ordered;
+	}
+
+	/**
+	 * Run one job and classify its outcome.
+	 * 
+	 * @param task
+	 * @return
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private BatchJobResult run(JobScheduler.Task task) throws IOException, InterruptedException {
+		BatchJob job = task.job();
+		FileUtils.forceMkdir(job.outputDirectory(base));
+		File log = job.logFile(base);
+		File cg = job.callGraphFile(base);
+		FileUtils.deleteQuietly(cg);
+		FileUtils.deleteQuietly(job.gcLogFile(base));
+
+		System.out.println("  starting " + job + " (estimated " + task.estimate() + ")");
+		RunMetrics.Step step = new ProcessSupervisor(job.toString(), job.command(base, jre, doopHome, maxHeap),
+				log, false, TimeUnit.MINUTES.toMillis(timeout)).run();
+
+		Status status;
+		if (step.timedOut()) {
+			status = Status.TIMEOUT;
+		} else if (FileUtils.readFileToString(log, StandardCharsets.UTF_8).contains("java.lang.OutOfMemoryError")) {
+			status = Status.OUT_OF_MEMORY;
+		} else if (step.exitCode() != 0 || !cg.exists()) {
+			status = Status.FAILED;
+		} else {
+			status = Status.SUCCESS;
+		}
+
+		// The job still holds the Doop slot of the scheduler, so the next
+		// Doop job cannot overwrite the database yet
+		if (status == Status.SUCCESS && job.isDoop()) {
+			saveDoopDatabase(job);
+		}
+
+		System.out.println("  finished " + job + ": " + status);
+		return new BatchJobResult(job, status, step);
+	}
+
+	/**
+	 * Do what scripts/run-tool does after a Doop run: archive the database of
+	 * the last analysis next to the call graph, and print the disk usage of
+	 * the Doop cache.
+	 * 
+	 * @param job
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private void saveDoopDatabase(BatchJob job) throws IOException, InterruptedException {
+		File database = job.doopDatabaseFile(base);
+		System.out.println("  making the database of " + job + " available at " + database + " ...");
+		RunMetrics.Step step = new ProcessSupervisor(job + "-database", Arrays.asList("tar", "-czf",
+				database.getPath(), "-C", doopHome, "last-analysis"), null, false, 0).run();
+		if (!step.isSuccess()) {
+			System.out.println("  could not archive the database of " + job + " (" + step + ")");
+		}
+
+		File cache = Paths.get(doopHome, "cache", "analysis").toFile();
+		if (cache.isDirectory()) {
+			System.out.println("  Disk usage stats: "
+					+ FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(cache)) + " in " + cache);
+		}
+	}
+
+	/**
+	 * Add a finished job to the history, and save the history so that a batch
+	 * that is killed keeps what it learned.
+	 * 
+	 * @param result
+	 */
+	private void record(BatchJobResult result) {
+		history.record(result, base, JobScheduler.parseSize(maxHeap), TimeUnit.MINUTES.toMillis(timeout));
+		try {
+			history.save();
+		} catch (IOException e) {
+			System.out.println("  could not save the job history: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Print a summary table of the given results, one row per job.
+	 * 
+	 * @param results
+	 * @param out
+	 */
+	public static void printSummary(List<BatchJobResult> results, PrintStream out) {
+		String sep = "\t";
+		out.println("program" + sep + "tool" + sep + "status" + sep + "exit" + sep + "seconds" + sep + "cpu seconds"
+				+ sep + "peak rss(MB)");
+		for (BatchJobResult result : results) {
+			out.println(result.job().program() + sep + result.job().toolName() + sep + result.status() + sep
+					+ result.exitCode() + sep + String.format("%.1f", result.millis() / 1000.0) + sep
+					+ (result.cpuMillis() < 0 ? "-" : String.format("%.1f", result.cpuMillis() / 1000.0)) + sep
+					+ (result.peakRss() < 0 ? "-" : Long.toString(result.peakRss() >> 20)));
+		}
+		long failed = results.stream().filter(r -> !r.isSuccess()).count();
+		out.println("# jobs = " + results.size() + ", # failed = " + failed);
+	}
+}
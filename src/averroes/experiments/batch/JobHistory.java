@@ -0,0 +1,348 @@
+package averroes.experiments.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+
+import averroes.experiments.batch.BatchJobResult.Status;
+
+/**
+ * The duration and memory of the last run of every job (e.g.,
+ * antlr/spark-averroes), kept in a tab-separated file between batches. The
+ * {@link JobScheduler} uses them to estimate the cost of the next run.
+ * 
+ * A job that has not run before is estimated from the size of its input JARs
+ * (see {@link BatchJob#inputFiles(String)}): per MB of input, it is expected
+ * to cost as much as the other jobs of the same tool did, or a default rate
+ * for the tool if none of them ran yet.
+ * 
+ */
+public class JobHistory {
+
+	private static final long MB = 1 << 20;
+
+	// The default cost of a job per MB of input: milliseconds, and bytes of
+	// memory on top of a fixed JVM footprint
+	private static final long DEFAULT_FOOTPRINT = 256 * MB;
+	private static final Map<String, long[]> DEFAULT_RATES = new TreeMap<String, long[]>(
+			String.CASE_INSENSITIVE_ORDER);
+
+	static {
+		DEFAULT_RATES.put("spark", new long[] { 3000, 120 * MB });
+		DEFAULT_RATES.put("wala", new long[] { 8000, 200 * MB });
+		DEFAULT_RATES.put("doop", new long[] { 15000, 150 * MB });
+		DEFAULT_RATES.put("dynamic", new long[] { 2000, 40 * MB });
+	}
+
+	// The heap in use before a collection, e.g., "123456K->2345K(500000K)" or
+	// "Pause Young (Normal) 24M->3M(256M)"
+	private static final Pattern GC = Pattern.compile("(\\d+)([KMG])->\\d+[KMG]\\(\\d+[KMG]\\)");
+
+	private File file;
+	private Map<String, Record> records = new TreeMap<String, Record>();
+
+	/**
+	 * The last run of a job.
+	 */
+	public static class Record {
+		private String job;
+		private String tool;
+		private Status status;
+		private long millis;
+		private long peakHeap;
+		private long peakRss;
+		private long inputBytes;
+
+		public Record(String job, String tool, Status status, long millis, long peakHeap, long peakRss,
+				long inputBytes) {
+			this.job = job;
+			this.tool = tool;
+			this.status = status;
+			this.millis = millis;
+			this.peakHeap = peakHeap;
+			this.peakRss = peakRss;
+			this.inputBytes = inputBytes;
+		}
+
+		public Status status() {
+			return status;
+		}
+
+		public long millis() {
+			return millis;
+		}
+
+		/**
+		 * The peak heap in use, in bytes, or -1 if unknown.
+		 * 
+		 * @return
+		 */
+		public long peakHeap() {
+			return peakHeap;
+		}
+
+		/**
+		 * The peak resident set size of the job process tree, in bytes, or -1
+		 * if unknown.
+		 * 
+		 * @return
+		 */
+		public long peakRss() {
+			return peakRss;
+		}
+
+		/**
+		 * The memory the job needs on the machine: its peak RSS, or its peak
+		 * heap plus the footprint of the JVM if the RSS is unknown.
+		 * 
+		 * @return
+		 */
+		public long memory() {
+			return java.lang.Math.max(peakRss, peakHeap < 0 ? -1 : peakHeap + DEFAULT_FOOTPRINT);
+		}
+
+		private String toLine() {
+			String sep = "\t";
+			return job + sep + tool + sep + status + sep + millis + sep + peakHeap + sep + peakRss + sep
+					+ inputBytes;
+		}
+
+		private static Record fromLine(String line) {
+			String[] columns = line.split("\t");
+			return new Record(columns[0], columns[1], Status.valueOf(columns[2]), Long.parseLong(columns[3]),
+					Long.parseLong(columns[4]), Long.parseLong(columns[5]), Long.parseLong(columns[6]));
+		}
+	}
+
+	/**
+	 * The expected cost of a job.
+	 */
+	public static class Estimate {
+		private long millis;
+		private long memory;
+		private String source;
+
+		public Estimate(long millis, long memory, String source) {
+			this.millis = millis;
+			this.memory = memory;
+			this.source = source;
+		}
+
+		public long millis() {
+			return millis;
+		}
+
+		/**
+		 * The memory the job is expected to need, in bytes.
+		 * 
+		 * @return
+		 */
+		public long memory() {
+			return memory;
+		}
+
+		/**
+		 * Where the estimate comes from (history, similar jobs, or jar
+		 * sizes).
+		 * 
+		 * @return
+		 */
+		public String source() {
+			return source;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%.0f seconds, %d MB from %s", millis / 1000.0, memory / MB, source);
+		}
+	}
+
+	/**
+	 * Load the history in the given file, if it exists.
+	 * 
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static JobHistory load(File file) throws IOException {
+		JobHistory history = new JobHistory();
+		history.file = file;
+		if (file.exists()) {
+			List<String> lines = java.nio.file.Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+			// The first line is the header
+			for (String line : lines.subList(java.lang.Math.min(1, lines.size()), lines.size())) {
+				Record record = Record.fromLine(line);
+				history.records.put(record.job, record);
+			}
+		}
+		return history;
+	}
+
+	/**
+	 * The last run of the given job, or null if it never ran.
+	 * 
+	 * @param job
+	 * @return
+	 */
+	public synchronized Record get(BatchJob job) {
+		return records.get(job.toString());
+	}
+
+	/**
+	 * Record a finished job. A job that ran out of memory or timed out is
+	 * recorded with at least the heap or time it was given, so that it is
+	 * scheduled with room to spare (and early) next time.
+	 * 
+	 * @param result
+	 * @param base
+	 * @param maxHeap
+	 *            the maximum heap of the job in bytes
+	 * @param timeout
+	 *            the timeout of the job in milliseconds, 0 if there is none
+	 */
+	public synchronized void record(BatchJobResult result, String base, long maxHeap, long timeout) {
+		if (result.status() == Status.ERROR) {
+			return;
+		}
+
+		BatchJob job = result.job();
+		long millis = result.millis();
+		long peakHeap = peakHeap(job.gcLogFile(base));
+		if (result.status() == Status.OUT_OF_MEMORY) {
+			peakHeap = java.lang.Math.max(peakHeap, maxHeap);
+		} else if (result.status() == Status.TIMEOUT) {
+			millis = java.lang.Math.max(millis, timeout);
+		}
+
+		records.put(job.toString(), new Record(job.toString(), job.toolName(), result.status(), millis, peakHeap,
+				result.peakRss(), inputBytes(job, base)));
+	}
+
+	/**
+	 * Estimate the cost of a job: its last run, or the size of its input
+	 * scaled by the median rate of the other runs of the same tool (or by the
+	 * default rate of the tool).
+	 * 
+	 * @param job
+	 * @param base
+	 * @return
+	 */
+	public synchronized Estimate estimate(BatchJob job, String base) {
+		Record record = records.get(job.toString());
+		if (record != null && record.memory() >= 0) {
+			return new Estimate(record.millis(), record.memory(), "history");
+		}
+
+		Estimate estimate = estimateFromInput(job, base);
+		if (record != null) {
+			// The memory of the last run is unknown (e.g., there is no /proc)
+			return new Estimate(record.millis(), estimate.memory(), "history");
+		}
+		return estimate;
+	}
+
+	private Estimate estimateFromInput(BatchJob job, String base) {
+		long input = inputBytes(job, base);
+		List<Double> millisPerByte = new ArrayList<Double>();
+		List<Double> memoryPerByte = new ArrayList<Double>();
+		for (Record other : records.values()) {
+			if (other.tool.equals(job.toolName()) && other.status == Status.SUCCESS && other.inputBytes > 0
+					&& other.memory() >= 0) {
+				millisPerByte.add((double) other.millis / other.inputBytes);
+				memoryPerByte.add((double) java.lang.Math.max(0, other.memory() - DEFAULT_FOOTPRINT)
+						/ other.inputBytes);
+			}
+		}
+
+		if (!millisPerByte.isEmpty()) {
+			return new Estimate((long) (median(millisPerByte) * input), DEFAULT_FOOTPRINT
+					+ (long) (median(memoryPerByte) * input), "similar jobs");
+		}
+
+		long[] rates = DEFAULT_RATES.getOrDefault(job.tool(), DEFAULT_RATES.get("spark"));
+		return new Estimate(rates[0] * input / MB, DEFAULT_FOOTPRINT + rates[1] * input / MB, "jar sizes");
+	}
+
+	/**
+	 * Write the history back to its file. It is written to a temporary file
+	 * first, so that a batch that is killed does not leave half a history.
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void save() throws IOException {
+		List<String> lines = new ArrayList<String>();
+		lines.add("job\ttool\tstatus\twall(ms)\tpeak heap(B)\tpeak rss(B)\tinput(B)");
+		for (Record record : records.values()) {
+			lines.add(record.toLine());
+		}
+
+		FileUtils.forceMkdir(file.getParentFile());
+		File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+		java.nio.file.Files.write(temp.toPath(), lines, StandardCharsets.UTF_8);
+		java.nio.file.Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * The total size of the input files of a job that exist.
+	 * 
+	 * @param job
+	 * @param base
+	 * @return
+	 */
+	public static long inputBytes(BatchJob job, String base) {
+		return job.inputFiles(base).stream().mapToLong(File::length).sum();
+	}
+
+	/**
+	 * The peak heap in use in a GC log (i.e., the largest heap before a
+	 * collection), or -1 if the log does not exist or has no collections.
+	 * 
+	 * @param gcLog
+	 * @return
+	 */
+	public static long peakHeap(File gcLog) {
+		if (!gcLog.exists()) {
+			return -1;
+		}
+
+		long peak = -1;
+		try {
+			for (String line : java.nio.file.Files.readAllLines(gcLog.toPath(), StandardCharsets.ISO_8859_1)) {
+				Matcher matcher = GC.matcher(line);
+				while (matcher.find()) {
+					peak = java.lang.Math.max(peak, Long.parseLong(matcher.group(1)) * unit(matcher.group(2)));
+				}
+			}
+		} catch (IOException e) {
+			return -1;
+		}
+		return peak;
+	}
+
+	private static long unit(String unit) {
+		switch (unit) {
+		case "K":
+			return 1 << 10;
+		case "M":
+			return MB;
+		default:
+			return 1 << 30;
+		}
+	}
+
+	private static double median(List<Double> values) {
+		Collections.sort(values);
+		return values.get(values.size() / 2);
+	}
+}
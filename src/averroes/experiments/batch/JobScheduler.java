@@ -0,0 +1,244 @@
+package averroes.experiments.batch;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Hands out {@link BatchJob}s to the workers of a {@link BatchRunner}, longest
+ * estimated job first (LPT), so that the long jobs do not end up running alone
+ * at the end of a batch. A job only starts if its estimated memory fits in the
+ * memory that the running jobs leave free. Otherwise, the job waits for memory
+ * to be freed, and a shorter job that fits may start in the meantime
+ * (backfilling), but only if it does not delay the waiting job: it is
+ * expected to end before the running jobs free enough memory for the waiting
+ * job, or it only uses memory that the waiting job will not need then. The
+ * times are based on the estimates, a job that runs over its estimate stops
+ * the backfilling until it ends.
+ * 
+ * A job that does not fit in the whole memory still runs, once nothing else
+ * is running. Only one Doop job runs at a time, they share the state in the
+ * Doop home directory.
+ * 
+ */
+public class JobScheduler {
+
+	// Estimates are rough, each job reserves a quarter more than its estimate
+	private static final double MARGIN = 1.25;
+
+	private List<Task> pending = new ArrayList<Task>();
+	private long memory;
+	private long free;
+	private List<Task> running = new ArrayList<Task>();
+	private boolean doopRunning = false;
+
+	/**
+	 * A job and the memory it holds while it runs.
+	 */
+	public static class Task {
+		private BatchJob job;
+		private JobHistory.Estimate estimate;
+		private long reservation;
+		// When the job is expected to end, once it started
+		private long end;
+
+		private Task(BatchJob job, JobHistory.Estimate estimate, long reservation) {
+			this.job = job;
+			this.estimate = estimate;
+			this.reservation = reservation;
+		}
+
+		public BatchJob job() {
+			return job;
+		}
+
+		public JobHistory.Estimate estimate() {
+			return estimate;
+		}
+
+		/**
+		 * The memory held by this job while it runs, in bytes.
+		 * 
+		 * @return
+		 */
+		public long reservation() {
+			return reservation;
+		}
+	}
+
+	/**
+	 * Construct a new scheduler.
+	 * 
+	 * @param memory
+	 *            the memory the jobs may use together, in bytes
+	 */
+	public JobScheduler(long memory) {
+		this.memory = memory;
+		this.free = memory;
+	}
+
+	/**
+	 * Add a job with its estimated cost. The memory it reserves is capped by
+	 * the given maximum (e.g., the -Xmx of the job plus the footprint of the
+	 * JVM), as the job cannot use more. Doop jobs are not capped, most of
+	 * their memory is used by the Datalog engine, outside the JVM.
+	 * 
+	 * @param job
+	 * @param estimate
+	 * @param maxMemory
+	 */
+	public synchronized void add(BatchJob job, JobHistory.Estimate estimate, long maxMemory) {
+		long reservation = (long) (estimate.memory() * MARGIN);
+		if (!job.isDoop()) {
+			reservation = java.lang.Math.min(reservation, maxMemory);
+		}
+		Task task = new Task(job, estimate, reservation);
+
+		// Keep the pending jobs sorted by decreasing duration, ties in the
+		// order the jobs were added
+		int i = pending.size();
+		while (i > 0 && pending.get(i - 1).estimate.millis() < estimate.millis()) {
+			i--;
+		}
+		pending.add(i, task);
+	}
+
+	/**
+	 * The pending jobs, in the order they will be considered.
+	 * 
+	 * @return
+	 */
+	public synchronized List<Task> pending() {
+		return new ArrayList<Task>(pending);
+	}
+
+	/**
+	 * Wait for the next job that can start, and hold its memory. Returns null
+	 * once there are no jobs left.
+	 * 
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public synchronized Task next() throws InterruptedException {
+		while (!pending.isEmpty()) {
+			long now = System.currentTimeMillis();
+			Task head = null;
+			long shadow = 0;
+			long spare = 0;
+			for (Task task : pending) {
+				if (task.job.isDoop() && doopRunning) {
+					continue;
+				}
+				boolean fits = task.reservation <= free || running.isEmpty();
+				if (head == null) {
+					if (fits) {
+						return start(task, now);
+					}
+
+					// The longest job waits. Find when the running jobs free
+					// enough memory for it, and how much they free beyond that.
+					head = task;
+					List<Task> ends = new ArrayList<Task>(running);
+					ends.sort(Comparator.comparingLong(t -> t.end));
+					long available = free;
+					shadow = now;
+					for (Task t : ends) {
+						if (available >= head.reservation) {
+							break;
+						}
+						available += t.reservation;
+						shadow = t.end;
+					}
+					spare = available - head.reservation;
+				} else if (fits && (now + task.estimate.millis() <= shadow || task.reservation <= spare)) {
+					return start(task, now);
+				}
+			}
+			wait();
+		}
+		return null;
+	}
+
+	/**
+	 * Hold the memory of a job that starts now.
+	 */
+	private Task start(Task task, long now) {
+		pending.remove(task);
+		free -= task.reservation;
+		task.end = now + task.estimate.millis();
+		running.add(task);
+		doopRunning |= task.job.isDoop();
+		return task;
+	}
+
+	/**
+	 * Release the memory of a job that finished.
+	 * 
+	 * @param task
+	 */
+	public synchronized void finished(Task task) {
+		free += task.reservation;
+		running.remove(task);
+		if (task.job.isDoop()) {
+			doopRunning = false;
+		}
+		notifyAll();
+	}
+
+	/**
+	 * The memory the jobs may use together.
+	 * 
+	 * @return
+	 */
+	public long memory() {
+		return memory;
+	}
+
+	/**
+	 * The physical memory of the machine less the given reserve (for the
+	 * operating system and the batch driver), or Long.MAX_VALUE if it is
+	 * unknown.
+	 * 
+	 * @param reserve
+	 * @return
+	 */
+	public static long availableMemory(long reserve) {
+		OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+		if (os instanceof com.sun.management.OperatingSystemMXBean) {
+			return java.lang.Math.max(0, ((com.sun.management.OperatingSystemMXBean) os).getTotalPhysicalMemorySize()
+					- reserve);
+		}
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * Parse a memory size as given to -Xmx (e.g., 512m or 8g) into bytes.
+	 * 
+	 * @param size
+	 * @return
+	 */
+	public static long parseSize(String size) {
+		String value = size.trim().toLowerCase(Locale.ROOT);
+		int shift;
+		switch (value.charAt(value.length() - 1)) {
+		case 'k':
+			shift = 10;
+			break;
+		case 'm':
+			shift = 20;
+			break;
+		case 'g':
+			shift = 30;
+			break;
+		case 't':
+			shift = 40;
+			break;
+		default:
+			return Long.parseLong(value);
+		}
+		return Long.parseLong(value.substring(0, value.length() - 1)) << shift;
+	}
+}
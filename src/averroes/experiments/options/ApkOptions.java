@@ -0,0 +1,261 @@
+package averroes.experiments.options;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.OptionGroup;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import averroes.experiments.batch.JobScheduler;
+import averroes.experiments.util.ApkManifest;
+
+/**
+ * A class that holds the options of the driver that runs Spark on Android APKs
+ * (see {@link averroes.experiments.ApkCallGraphGenerator}), either on a single
+ * APK or on a whole directory of APKs.
+ * 
+ */
+public final class ApkOptions {
+
+	private static Option base = Option.builder("b").longOpt("base").desc("the base directory for experiments")
+			.hasArg().argName("directory").required().build();
+
+	private static Option apk = Option.builder("k").longOpt("apk").desc("the APK to analyze").hasArg()
+			.argName("file").build();
+
+	private static Option corpus = Option.builder("c").longOpt("corpus")
+			.desc("a directory of APKs to analyze, each one in its own JVM").hasArg().argName("directory").build();
+
+	private static OptionGroup input = new OptionGroup().addOption(apk).addOption(corpus);
+
+	// Either a single APK or a corpus, this has to be set before the group is
+	// added to the options
+	static {
+		input.setRequired(true);
+	}
+
+	private static Option androidJar = Option.builder("l").longOpt("android-jar")
+			.desc("the android.jar that is the library of the vanilla analysis").hasArg().argName("file")
+			.required().build();
+
+	private static Option averroes = Option.builder("a").longOpt("averroes")
+			.desc("run averroes or the vanilla analysis?").hasArg(false).required(false).build();
+
+	private static Option applicationRegex = Option.builder("r").longOpt("application-regex")
+			.desc("a list of regular expressions for application packages or classes separated by File.pathSeparator (default: the package in the manifest and its sub-packages)")
+			.hasArg().argName("regex").required(false).build();
+
+	private static Option outputDirectory = Option.builder("o").longOpt("output-directory")
+			.desc("the directory to which the call graph is written (default: callgraphs/apk/<name> in the base directory)")
+			.hasArg().argName("directory").required(false).build();
+
+	private static Option format = Option.builder("f").longOpt("format")
+			.desc("the format of the output call graph (text, binary, or both). The default is text.").hasArg()
+			.argName("format").required(false).build();
+
+	private static Option sparkProfile = Option.builder().longOpt("spark-profile")
+			.desc("the Spark options to use (default, throughput, low-memory, or auto to pick one based on the number of classes). The default is default.")
+			.hasArg().argName("name").required(false).build();
+
+	private static Option workers = Option.builder("w").longOpt("workers")
+			.desc("the maximum number of APKs to analyze at the same time (default: number of cores)").hasArg()
+			.argName("count").required(false).build();
+
+	private static Option maxHeap = Option.builder("x").longOpt("max-heap")
+			.desc("the maximum heap size of each APK, passed to -Xmx (default: 4g)").hasArg().argName("size")
+			.required(false).build();
+
+	private static Option timeout = Option.builder("T").longOpt("timeout")
+			.desc("the number of minutes after which the analysis of an APK is killed (default: 30)").hasArg()
+			.argName("minutes").required(false).build();
+
+	private static Option memory = Option.builder("M").longOpt("memory")
+			.desc("the memory the APKs may use together, e.g., 60g (default: the physical memory less 2g)")
+			.hasArg().argName("size").required(false).build();
+
+	private static Options options = new Options().addOption(base).addOptionGroup(input).addOption(androidJar)
+			.addOption(averroes).addOption(applicationRegex).addOption(outputDirectory).addOption(format)
+			.addOption(sparkProfile).addOption(workers).addOption(maxHeap).addOption(timeout).addOption(memory);
+
+	private static CommandLine cmd;
+
+	/**
+	 * Process the input arguments of the APK driver.
+	 * 
+	 * @param args
+	 */
+	public static void processArguments(String[] args) {
+		try {
+			cmd = new DefaultParser().parse(options, args);
+		} catch (ParseException e) {
+			// The getters cannot work without the command line, stop here
+			System.err.println(e.getMessage());
+			new HelpFormatter().printHelp("averroes.experiments.ApkCallGraphGenerator", options, true);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * The base directory for the experiments.
+	 * 
+	 * @return
+	 */
+	public static String getBaseDirectory() {
+		return cmd.getOptionValue(base.getOpt());
+	}
+
+	/**
+	 * The APK to analyze, or null in corpus mode.
+	 * 
+	 * @return
+	 */
+	public static File getApk() {
+		return cmd.hasOption(apk.getOpt()) ? new File(cmd.getOptionValue(apk.getOpt())) : null;
+	}
+
+	/**
+	 * Are we analyzing a whole directory of APKs?
+	 * 
+	 * @return
+	 */
+	public static boolean isCorpus() {
+		return cmd.hasOption(corpus.getOpt());
+	}
+
+	/**
+	 * The APKs in the corpus directory, sorted by name.
+	 * 
+	 * @return
+	 */
+	public static List<File> getCorpus() {
+		File[] files = new File(cmd.getOptionValue(corpus.getOpt())).listFiles((FileFilter) f -> f.isFile()
+				&& f.getName().endsWith(".apk"));
+		if (files == null) {
+			throw new IllegalStateException(cmd.getOptionValue(corpus.getOpt()) + " is not a directory");
+		}
+		Arrays.sort(files);
+		return Arrays.asList(files);
+	}
+
+	/**
+	 * The android.jar to analyze the APKs against.
+	 * 
+	 * @return
+	 */
+	public static File getAndroidJar() {
+		return new File(cmd.getOptionValue(androidJar.getOpt()));
+	}
+
+	/**
+	 * Run averroes or the vanilla analysis?
+	 * 
+	 * @return
+	 */
+	public static boolean isAverroes() {
+		return cmd.hasOption(averroes.getOpt());
+	}
+
+	/**
+	 * The application regex, or the package of the app and all its
+	 * sub-packages if none is given.
+	 * 
+	 * @param manifest
+	 * @return
+	 */
+	public static String[] getApplicationRegex(ApkManifest manifest) {
+		return cmd.hasOption(applicationRegex.getOpt()) ? cmd.getOptionValue(applicationRegex.getOpt()).split(
+				File.pathSeparator) : new String[] { manifest.getPackageName() + ".**" };
+	}
+
+	/**
+	 * The output directory, or null if none is given.
+	 * 
+	 * @return
+	 */
+	public static String getOutputDirectory() {
+		return cmd.getOptionValue(outputDirectory.getOpt());
+	}
+
+	/**
+	 * The format of the output call graph (text, binary, or both).
+	 * 
+	 * @return
+	 */
+	public static String getFormat() {
+		return cmd.getOptionValue(format.getOpt(), "text");
+	}
+
+	/**
+	 * Should the call graph be written as gzipped text?
+	 * 
+	 * @return
+	 */
+	public static boolean isTextFormat() {
+		return getFormat().equalsIgnoreCase("text") || getFormat().equalsIgnoreCase("both");
+	}
+
+	/**
+	 * Should the call graph be written in the binary format?
+	 * 
+	 * @return
+	 */
+	public static boolean isBinaryFormat() {
+		return getFormat().equalsIgnoreCase("binary") || getFormat().equalsIgnoreCase("both");
+	}
+
+	/**
+	 * The name of the Spark profile (see
+	 * {@link averroes.experiments.soot.SparkProfile}).
+	 * 
+	 * @return
+	 */
+	public static String getSparkProfile() {
+		return cmd.getOptionValue(sparkProfile.getLongOpt(), "default");
+	}
+
+	/**
+	 * The maximum number of APKs to analyze at the same time.
+	 * 
+	 * @return
+	 */
+	public static int getWorkers() {
+		return cmd.hasOption(workers.getOpt()) ? Integer.parseInt(cmd.getOptionValue(workers.getOpt())) : Runtime
+				.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * The maximum heap size of each APK (e.g., 4g).
+	 * 
+	 * @return
+	 */
+	public static String getMaxHeap() {
+		return cmd.getOptionValue(maxHeap.getOpt(), "4g");
+	}
+
+	/**
+	 * The number of minutes after which the analysis of an APK is killed, 0
+	 * means no timeout.
+	 * 
+	 * @return
+	 */
+	public static long getTimeout() {
+		return Long.parseLong(cmd.getOptionValue(timeout.getOpt(), "30"));
+	}
+
+	/**
+	 * The memory the APKs may use together, in bytes.
+	 * 
+	 * @return
+	 */
+	public static long getMemory() {
+		return cmd.hasOption(memory.getOpt()) ? JobScheduler.parseSize(cmd.getOptionValue(memory.getOpt()))
+				: JobScheduler.availableMemory(2L << 30);
+	}
+}
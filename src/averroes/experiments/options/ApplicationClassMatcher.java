@@ -0,0 +1,152 @@
+package averroes.experiments.options;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import probe.ProbeClass;
+
+/**
+ * A compiled form of the application regex (the -r option). Each entry is one
+ * of the following:
+ * 
+ * 1. pkg.* matches the classes in package pkg (ignoring case).
+ * 
+ * 2. pkg.** matches the classes in package pkg and all its sub-packages.
+ * 
+ * 3. ** matches the classes in the default package.
+ * 
+ * 4. Otherwise, the entry is a full class name (ignoring case).
+ * 
+ * The super packages of case 2 are kept in a trie of package names. The
+ * verdict for each class is cached, so after the first query for a class, a
+ * query is a single lookup.
+ * 
+ */
+public class ApplicationClassMatcher {
+
+	private Set<String> packages = new HashSet<String>();
+	private Node superPackages = new Node();
+	private List<String> prefixes = new ArrayList<String>();
+	private boolean defaultPackage = false;
+	private Set<String> classes = new HashSet<String>();
+
+	private ConcurrentHashMap<ProbeClass, Boolean> verdicts = new ConcurrentHashMap<ProbeClass, Boolean>();
+
+	/**
+	 * A node in the trie of super packages.
+	 */
+	private static class Node {
+		private Map<String, Node> children = new HashMap<String, Node>();
+		private boolean isSuperPackage = false;
+	}
+
+	/**
+	 * Compile the given application regex entries.
+	 * 
+	 * @param entries
+	 */
+	public ApplicationClassMatcher(String[] entries) {
+		for (String entry : entries) {
+			if (entry.endsWith(".*")) {
+				packages.add(lowerCase(entry.replace(".*", "")));
+			} else if (entry.endsWith(".**")) {
+				addSuperPackage(entry.replace("**", ""));
+			} else if (entry.equalsIgnoreCase("**")) {
+				defaultPackage = true;
+			} else {
+				classes.add(lowerCase(entry));
+			}
+		}
+	}
+
+	/**
+	 * Check if a class belongs to the application.
+	 * 
+	 * @param probeClass
+	 * @return
+	 */
+	public boolean isApplicationClass(ProbeClass probeClass) {
+		Boolean verdict = verdicts.get(probeClass);
+		if (verdict == null) {
+			verdict = matches(probeClass) ? Boolean.TRUE : Boolean.FALSE;
+			verdicts.put(probeClass, verdict);
+		}
+		return verdict;
+	}
+
+	private boolean matches(ProbeClass probeClass) {
+		String pkg = probeClass.pkg();
+		String name = probeClass.toString();
+
+		if (pkg.isEmpty() && defaultPackage) {
+			return true;
+		} else if (packages.contains(lowerCase(pkg)) || classes.contains(lowerCase(name))) {
+			return true;
+		} else if (isInSuperPackage(pkg)) {
+			return true;
+		}
+
+		for (String prefix : prefixes) {
+			if (name.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Add the prefix of a pkg.** entry (e.g., "org.apache.xalan."). Prefixes
+	 * that are not a plain package name followed by a dot are matched as
+	 * strings instead.
+	 */
+	private void addSuperPackage(String prefix) {
+		String pkg = prefix.substring(0, prefix.length() - 1);
+		if (!prefix.endsWith(".") || pkg.isEmpty() || pkg.contains("*") || pkg.startsWith(".")
+				|| pkg.endsWith(".") || pkg.contains("..")) {
+			prefixes.add(prefix);
+			return;
+		}
+
+		Node node = superPackages;
+		for (String segment : pkg.split("\\.")) {
+			node = node.children.computeIfAbsent(segment, s -> new Node());
+		}
+		node.isSuperPackage = true;
+	}
+
+	/**
+	 * Check if a class in the given package starts with one of the pkg.**
+	 * prefixes, i.e., if the package or one of its super packages is in the
+	 * trie.
+	 */
+	private boolean isInSuperPackage(String pkg) {
+		if (pkg.isEmpty()) {
+			return false;
+		}
+
+		Node node = superPackages;
+		int start = 0;
+		while (start <= pkg.length()) {
+			int dot = pkg.indexOf('.', start);
+			int end = dot < 0 ? pkg.length() : dot;
+			node = node.children.get(pkg.substring(start, end));
+			if (node == null) {
+				return false;
+			} else if (node.isSuperPackage) {
+				return true;
+			}
+			start = end + 1;
+		}
+		return false;
+	}
+
+	private static String lowerCase(String s) {
+		return s.toLowerCase(Locale.ROOT);
+	}
+}
@@ -0,0 +1,188 @@
+package averroes.experiments.options;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import averroes.experiments.batch.JobScheduler;
+
+/**
+ * A class that holds the options of the batch driver that runs the whole tool
+ * x benchmark matrix (see {@link averroes.experiments.BatchCallGraphGenerator}
+ * ).
+ * 
+ */
+public final class BatchOptions {
+
+	private static Option base = Option.builder("b").longOpt("base").desc("the base directory for experiments")
+			.hasArg().argName("directory").required().build();
+
+	private static Option jre = Option.builder("j").longOpt("jre-version").desc("the JRE version passed to DOOP")
+			.hasArg().required().build();
+
+	private static Option doopHome = Option.builder("h").longOpt("doop-home")
+			.desc("the location where doop is installed (required when running doop)").hasArg()
+			.argName("directory").required(false).build();
+
+	private static Option tools = Option.builder("t").longOpt("tools")
+			.desc("a comma-separated list of tools to run (default: spark,doop,wala)").hasArg().argName("names")
+			.required(false).build();
+
+	private static Option variants = Option.builder("v").longOpt("variants")
+			.desc("a comma-separated list of analysis variants to run (default: vanilla,averroes)").hasArg()
+			.argName("names").required(false).build();
+
+	private static Option programs = Option.builder("p").longOpt("programs")
+			.desc("a comma-separated list of benchmark programs to analyze (default: all)").hasArg()
+			.argName("names").required(false).build();
+
+	private static Option workers = Option.builder("w").longOpt("workers")
+			.desc("the maximum number of jobs to run at the same time (default: number of cores)").hasArg()
+			.argName("count").required(false).build();
+
+	private static Option maxHeap = Option.builder("x").longOpt("max-heap")
+			.desc("the maximum heap size of each job, passed to -Xmx (default: 8g)").hasArg().argName("size")
+			.required(false).build();
+
+	private static Option timeout = Option.builder("T").longOpt("timeout")
+			.desc("the number of minutes after which a job is killed (default: no timeout)").hasArg()
+			.argName("minutes").required(false).build();
+
+	private static Option memory = Option.builder("M").longOpt("memory")
+			.desc("the memory the jobs may use together, e.g., 60g (default: the physical memory less 2g)")
+			.hasArg().argName("size").required(false).build();
+
+	private static Options options = new Options().addOption(base).addOption(jre).addOption(doopHome)
+			.addOption(tools).addOption(variants).addOption(programs).addOption(workers).addOption(maxHeap)
+			.addOption(timeout).addOption(memory);
+
+	private static CommandLine cmd;
+
+	/**
+	 * Process the input arguments of the batch driver.
+	 * 
+	 * @param args
+	 */
+	public static void processArguments(String[] args) {
+		try {
+			cmd = new DefaultParser().parse(options, args);
+		} catch (ParseException e) {
+			// The getters cannot work without the command line, stop here
+			System.err.println(e.getMessage());
+			new HelpFormatter().printHelp("averroes.experiments.BatchCallGraphGenerator", options, true);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * The base directory for the experiments.
+	 * 
+	 * @return
+	 */
+	public static String getBaseDirectory() {
+		return cmd.getOptionValue(base.getOpt());
+	}
+
+	/**
+	 * The JRE version to pass to DOOP.
+	 * 
+	 * @return
+	 */
+	public static String getJreVersion() {
+		return cmd.getOptionValue(jre.getOpt());
+	}
+
+	/**
+	 * The home of the DOOP installation.
+	 * 
+	 * @return
+	 */
+	public static String getDoopHome() {
+		return cmd.getOptionValue(doopHome.getOpt());
+	}
+
+	/**
+	 * The tools to run.
+	 * 
+	 * @return
+	 */
+	public static List<String> getTools() {
+		return Arrays.asList(cmd.getOptionValue(tools.getOpt(), "spark,doop,wala").split(","));
+	}
+
+	/**
+	 * Should we run the vanilla analyses?
+	 * 
+	 * @return
+	 */
+	public static boolean isVanilla() {
+		return getVariants().contains("vanilla");
+	}
+
+	/**
+	 * Should we run the analyses with Averroes?
+	 * 
+	 * @return
+	 */
+	public static boolean isAverroes() {
+		return getVariants().contains("averroes");
+	}
+
+	/**
+	 * The benchmark programs to analyze.
+	 * 
+	 * @return
+	 */
+	public static List<String> getPrograms() {
+		return cmd.hasOption(programs.getOpt()) ? Arrays.asList(cmd.getOptionValue(programs.getOpt()).split(","))
+				: Benchmarks.getPrograms();
+	}
+
+	/**
+	 * The maximum number of jobs to run at the same time.
+	 * 
+	 * @return
+	 */
+	public static int getWorkers() {
+		return cmd.hasOption(workers.getOpt()) ? Integer.parseInt(cmd.getOptionValue(workers.getOpt())) : Runtime
+				.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * The maximum heap size of each job (e.g., 8g).
+	 * 
+	 * @return
+	 */
+	public static String getMaxHeap() {
+		return cmd.getOptionValue(maxHeap.getOpt(), "8g");
+	}
+
+	/**
+	 * The number of minutes after which a job is killed, 0 means no timeout.
+	 * 
+	 * @return
+	 */
+	public static long getTimeout() {
+		return Long.parseLong(cmd.getOptionValue(timeout.getOpt(), "0"));
+	}
+
+	/**
+	 * The memory the jobs may use together, in bytes.
+	 * 
+	 * @return
+	 */
+	public static long getMemory() {
+		return cmd.hasOption(memory.getOpt()) ? JobScheduler.parseSize(cmd.getOptionValue(memory.getOpt()))
+				: JobScheduler.availableMemory(2L << 30);
+	}
+
+	private static List<String> getVariants() {
+		return Arrays.asList(cmd.getOptionValue(variants.getOpt(), "vanilla,averroes").split(","));
+	}
+}
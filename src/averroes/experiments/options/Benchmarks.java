@@ -1,7 +1,10 @@
 package averroes.experiments.options;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A class that holds the benchmark names.
@@ -18,6 +21,43 @@ public final class Benchmarks {
 			"pmd", "xalan");
 	private static List<String> specjvm = Arrays.asList("compress", "db", "jack", "javac", "jess", "raytrace");
 
+	// These mirror the appregex and mainclass arrays in scripts/run-tool
+	private static Map<String, String> applicationRegex = new HashMap<String, String>();
+	private static Map<String, String> mainClass = new HashMap<String, String>();
+
+	static {
+		applicationRegex.put("antlr", "dacapo.antlr.*:antlr.**");
+		applicationRegex.put("bloat", "dacapo.bloat.*:EDU.purdue.cs.bloat.**");
+		applicationRegex.put("chart", "dacapo.chart.*:org.jfree.chart.**:org.jfree.data.**");
+		applicationRegex.put("hsqldb", "dacapo.hsqldb.*:org.hsqldb.**");
+		applicationRegex.put("luindex", "dacapo.luindex.*:org.apache.lucene.**");
+		applicationRegex.put("lusearch", "dacapo.lusearch.*:org.apache.lucene.**");
+		applicationRegex.put("pmd", "dacapo.pmd.*:net.sourceforge.pmd.**");
+		applicationRegex.put("xalan", "dacapo.xalan.*:org.apache.xalan.**:org.apache.xml.dtm.**:"
+				+ "org.apache.xml.utils.**:org.apache.xpath.**:org.w3c.dom.xpath.*");
+		applicationRegex.put("compress", "spec.benchmarks._201_compress.*");
+		applicationRegex.put("db", "spec.benchmarks._209_db.*");
+		applicationRegex.put("jack", "spec.benchmarks._228_jack.*");
+		applicationRegex.put("javac", "spec.benchmarks._213_javac.*");
+		applicationRegex.put("jess", "spec.benchmarks._202_jess.**");
+		applicationRegex.put("raytrace", "spec.benchmarks._205_raytrace.*");
+
+		mainClass.put("antlr", "dacapo.antlr.Main2");
+		mainClass.put("bloat", "dacapo.bloat.Main2");
+		mainClass.put("chart", "dacapo.chart.Main2");
+		mainClass.put("hsqldb", "org.hsqldb.hsqldbDoopDriver");
+		mainClass.put("luindex", "dacapo.luindex.Main2");
+		mainClass.put("lusearch", "dacapo.lusearch.Main2");
+		mainClass.put("pmd", "dacapo.pmd.Main2");
+		mainClass.put("xalan", "dacapo.xalan.Main2");
+		mainClass.put("compress", "spec.benchmarks._201_compress.Main");
+		mainClass.put("db", "spec.benchmarks._209_db.Main");
+		mainClass.put("jack", "spec.benchmarks._228_jack.Main");
+		mainClass.put("javac", "spec.benchmarks._213_javac.Main");
+		mainClass.put("jess", "spec.benchmarks._202_jess.Main");
+		mainClass.put("raytrace", "spec.benchmarks._205_raytrace.Main");
+	}
+
 	/**
 	 * Get the name of the benchmark this program belongs to.
 	 * 
@@ -41,4 +81,39 @@ public final class Benchmarks {
 	public static boolean isSpecjvm(String program) {
 		return specjvm.contains(program);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Get all the benchmark programs, DaCapo first.
+	 * 
+	 * @return
+	 */
+	public static List<String> getPrograms() {
+		List<String> result = new ArrayList<String>(dacapo);
+		result.addAll(specjvm);
+		return result;
+	}
+
+	/**
+	 * Get the application regex (i.e., the value of the -r option) for a
+	 * benchmark program.
+	 * 
+	 * @param program
+	 * @return
+	 */
+	public static String getApplicationRegex(String program) {
+		getBenchmark(program);
+		return applicationRegex.get(program);
+	}
+
+	/**
+	 * Get the main class (i.e., the value of the -m option) for a benchmark
+	 * program.
+	 * 
+	 * @param program
+	 * @return
+	 */
+	public static String getMainClass(String program) {
+		getBenchmark(program);
+		return mainClass.get(program);
+	}
+}
@@ -13,6 +13,7 @@ import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
+import org.apache.commons.io.FileUtils;
 
 import probe.ObjectManager;
 import probe.ProbeClass;
@@ -30,7 +31,9 @@ public final class ExperimentsOptions {
 
 	private static List<String> dynamicClasses = null;
 
-	private static final String instrumentedJarLocation = "instrumented.jar";
+	private static ApplicationClassMatcher applicationClassMatcher = null;
+
+	private static File workDirectory = null;
 
 	private static final String dynamicCallGraphReportLocation = "cg.txt";
 
@@ -70,9 +73,31 @@ public final class ExperimentsOptions {
 			.desc("the directory to which Averroes will write any output files/folders.").hasArg().argName("directory")
 			.required().build();
 
+	private static Option format = Option.builder("f").longOpt("format")
+			.desc("the format of the output call graph (text, binary, or both). The default is text.").hasArg()
+			.argName("format").required(false).build();
+
+	private static Option walaTimeBudget = Option.builder().longOpt("wala-time-budget")
+			.desc("run WALA in monitored mode, giving each precision level (0-1-CFA, then 0-CFA) at most this many seconds before falling back to the next one")
+			.hasArg().argName("seconds").required(false).build();
+
+	private static Option walaHeapBudget = Option.builder().longOpt("wala-heap-budget")
+			.desc("run WALA in monitored mode, falling back to the next precision level when the heap in use goes over this many MB")
+			.hasArg().argName("MB").required(false).build();
+
+	private static Option dynamicPipe = Option.builder().longOpt("dynamic-pipe")
+			.desc("stream the trace of the instrumented benchmark through a named pipe, converting it while the benchmark runs")
+			.hasArg(false).required(false).build();
+
+	private static Option sparkProfile = Option.builder().longOpt("spark-profile")
+			.desc("the Spark options to use (default, throughput, low-memory, or auto to pick one based on the number of classes). The default is default.")
+			.hasArg().argName("name").required(false).build();
+
 	private static Options options = new Options().addOption(doopHome).addOption(tool).addOption(base)
 			.addOption(program).addOption(averroes).addOption(jre).addOption(applicationRegex).addOption(mainClass)
-			.addOption(dynamicClassesFile).addOption(outputDirectory);
+			.addOption(dynamicClassesFile).addOption(outputDirectory).addOption(format)
+			.addOption(walaTimeBudget).addOption(walaHeapBudget).addOption(dynamicPipe)
+			.addOption(sparkProfile);
 
 	private static CommandLine cmd;
 
@@ -82,6 +107,12 @@ public final class ExperimentsOptions {
 	 * @param args
 	 */
 	public static void processArguments(String[] args) {
+		// Forget the state of any previous run in this JVM (e.g., in the daemon)
+		cmd = null;
+		dynamicClasses = null;
+		applicationClassMatcher = null;
+		workDirectory = null;
+
 		try {
 			cmd = new DefaultParser().parse(options, args);
 		} catch (ParseException e) {
@@ -90,13 +121,95 @@ public final class ExperimentsOptions {
 	}
 
 	/**
-	 * The location of the instrumented JAR that WALA produces (for dynamic call
-	 * graph purposes).
+	 * Should the call graph be written as gzipped text (see
+	 * {@link averroes.experiments.util.Files#callGraphGzipFile()})?
+	 * 
+	 * @return
+	 */
+	public static boolean isTextFormat() {
+		String value = cmd.getOptionValue(format.getOpt(), "text");
+		return value.equalsIgnoreCase("text") || value.equalsIgnoreCase("both");
+	}
+
+	/**
+	 * Should the call graph be written in the binary format (see
+	 * {@link averroes.experiments.util.Files#callGraphBinaryFile()})?
+	 * 
+	 * @return
+	 */
+	public static boolean isBinaryFormat() {
+		String value = cmd.getOptionValue(format.getOpt(), "text");
+		return value.equalsIgnoreCase("binary") || value.equalsIgnoreCase("both");
+	}
+
+	/**
+	 * Should the dynamic call graph trace be converted while the instrumented
+	 * benchmark runs, instead of after it is written to disk?
+	 * 
+	 * @return
+	 */
+	public static boolean isDynamicPipelined() {
+		return cmd.hasOption(dynamicPipe.getLongOpt());
+	}
+
+	/**
+	 * The name of the Spark profile (see
+	 * {@link averroes.experiments.soot.SparkProfile}).
+	 * 
+	 * @return
+	 */
+	public static String getSparkProfile() {
+		return cmd.getOptionValue(sparkProfile.getLongOpt(), "default");
+	}
+
+	/**
+	 * Should WALA run with budgets, falling back to cheaper configurations
+	 * (0-CFA, then RTA) when a budget runs out?
 	 * 
 	 * @return
 	 */
-	public static String getInstrumentedJarLocation() {
-		return new File(getOutputDirectory(), instrumentedJarLocation).getPath();
+	public static boolean isWalaMonitored() {
+		return cmd.hasOption(walaTimeBudget.getLongOpt()) || cmd.hasOption(walaHeapBudget.getLongOpt());
+	}
+
+	/**
+	 * The wall-clock budget of each WALA precision level in milliseconds, or 0
+	 * if there is none.
+	 * 
+	 * @return
+	 */
+	public static long getWalaTimeBudget() {
+		return Long.parseLong(cmd.getOptionValue(walaTimeBudget.getLongOpt(), "0")) * 1000;
+	}
+
+	/**
+	 * The heap budget of the WALA builder in bytes, or 0 if there is none.
+	 * 
+	 * @return
+	 */
+	public static long getWalaHeapBudget() {
+		return Long.parseLong(cmd.getOptionValue(walaHeapBudget.getLongOpt(), "0")) << 20;
+	}
+
+	/**
+	 * A working directory private to this run, created on first use in the
+	 * output directory, so that concurrent runs do not overwrite each other's
+	 * working files (e.g., the trace of the dynamic call graph). The outputs of
+	 * a run (the call graph, step logs, metrics, and profile) are named after
+	 * the tool in the output directory, so concurrent runs of the same tool
+	 * still need different output directories.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public static File getWorkDirectory() throws IOException {
+		if (workDirectory == null) {
+			File output = new File(getOutputDirectory());
+			FileUtils.forceMkdir(output);
+			workDirectory = java.nio.file.Files.createTempDirectory(output.toPath(),
+					getToolName() + "-work-").toFile().getAbsoluteFile();
+		}
+		return workDirectory;
 	}
 
 	/**
@@ -104,8 +217,8 @@ public final class ExperimentsOptions {
 	 * 
 	 * @return
 	 */
-	public static String getDynamicCallGraphReportLocation() {
-		return new File(getOutputDirectory(), dynamicCallGraphReportLocation).getPath();
+	public static String getDynamicCallGraphReportLocation() throws IOException {
+		return new File(getWorkDirectory(), dynamicCallGraphReportLocation).getPath();
 	}
 
 	/**
@@ -241,30 +354,29 @@ public final class ExperimentsOptions {
 	 * @return
 	 */
 	public static boolean isApplicationClass(ProbeClass probeClass) {
-		for (String entry : getApplicationRegex()) {
-			/*
-			 * 1. If the entry ends with .* then this means it's a package. 2.
-			 * If the entry ends with .** then it's a super package. 3. If the
-			 * entry is **, then it's the default package. 4. Otherwise, it's
-			 * the full class name.
-			 */
-			if (entry.endsWith(".*")) {
-				String pkg = entry.replace(".*", "");
-				if (probeClass.pkg().equalsIgnoreCase(pkg)) {
-					return true;
-				}
-			} else if (entry.endsWith(".**")) {
-				String pkg = entry.replace("**", "");
-				if (probeClass.toString().startsWith(pkg)) {
-					return true;
-				}
-			} else if (entry.equalsIgnoreCase("**") && probeClass.pkg().isEmpty()) {
-				return true;
-			} else if (entry.equalsIgnoreCase(probeClass.toString())) {
-				return true;
-			}
+		return getApplicationClassMatcher().isApplicationClass(probeClass);
+	}
+
+	/**
+	 * The compiled form of the {@link #applicationRegex} option.
+	 * 
+	 * @return
+	 */
+	public static ApplicationClassMatcher getApplicationClassMatcher() {
+		if (applicationClassMatcher == null) {
+			applicationClassMatcher = new ApplicationClassMatcher(getApplicationRegex());
 		}
-		return false;
+		return applicationClassMatcher;
+	}
+
+	/**
+	 * Set the application classes without processing the arguments (e.g., for
+	 * an Android APK, where they are derived from its manifest).
+	 * 
+	 * @param matcher
+	 */
+	public static void setApplicationClassMatcher(ApplicationClassMatcher matcher) {
+		applicationClassMatcher = matcher;
 	}
 
 	/**
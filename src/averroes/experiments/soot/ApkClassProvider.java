@@ -0,0 +1,204 @@
+package averroes.experiments.soot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.FileUtils;
+import org.jf.dexlib2.DexFileFactory;
+import org.jf.dexlib2.iface.ClassDef;
+
+import soot.ClassProvider;
+import soot.ClassSource;
+import soot.DexClassSource;
+import averroes.experiments.util.Files;
+import averroes.experiments.util.Hashes;
+
+/**
+ * This class provider adds the classes in the dex files of an Android APK
+ * (classes.dex, classes2.dex, ...) to the list of application classes, and the
+ * classes of the library JARs (android.jar, or the placeholder library of
+ * Averroes) to the list of library classes.
+ * 
+ * Soot reads a dex class from a dex file on disk, so the dex files are
+ * extracted from the APK to {@link Files#dexCacheDirectory(String)} first.
+ * They are kept there under the hash of the APK, so the APK is only extracted
+ * once. The library JARs are handled by an {@link AverroesClassProvider}.
+ * 
+ */
+public class ApkClassProvider implements ClassProvider {
+
+	private static final Pattern DEX_ENTRY = Pattern.compile("classes\\d*\\.dex");
+
+	// dexlib2 only needs the API level to pick the opcodes, any level reads
+	// the class definitions.
+	private static final int DEX_API_LEVEL = 15;
+
+	private String base;
+	private File apk;
+	private List<File> libraries;
+
+	private Map<String, File> applicationClasses;
+	private AverroesClassProvider library;
+
+	/**
+	 * Construct a new class provider.
+	 * 
+	 * @param base
+	 * @param apk
+	 * @param libraries
+	 *            the library JARs (e.g., android.jar)
+	 */
+	public ApkClassProvider(String base, File apk, List<File> libraries) {
+		this.base = base;
+		this.apk = apk;
+		this.libraries = libraries;
+
+		applicationClasses = new HashMap<String, File>();
+		library = new AverroesClassProvider(base, Files.apkName(apk), false);
+	}
+
+	/**
+	 * Get the set of application class names (i.e., the classes in the dex
+	 * files).
+	 * 
+	 * @return
+	 */
+	public Set<String> getApplicationClassNames() {
+		return applicationClasses.keySet();
+	}
+
+	/**
+	 * Get the set of library class names.
+	 * 
+	 * @return
+	 */
+	public Set<String> getLibraryClassNames() {
+		return library.getLibraryClassNames();
+	}
+
+	/**
+	 * Check if this class provider has a class, without reading it.
+	 * 
+	 * @param className
+	 * @return
+	 */
+	public boolean contains(String className) {
+		return applicationClasses.containsKey(className) || library.contains(className);
+	}
+
+	/**
+	 * Check if a class comes from the dex files of the APK.
+	 * 
+	 * @param className
+	 * @return
+	 */
+	public boolean isApplicationClass(String className) {
+		return applicationClasses.containsKey(className);
+	}
+
+	/**
+	 * Add the classes of the dex files and the library JARs. A class that is
+	 * both in the APK and in a library JAR (e.g., a bundled copy of
+	 * org.apache.http) is taken from the APK. A class that is in more than one
+	 * dex file is taken from the first one.
+	 * 
+	 * @throws IOException
+	 */
+	public void prepare() throws IOException {
+		System.out.println("");
+		System.out.println("Preparing classes ...");
+
+		int duplicates = 0;
+		for (File dex : extractDexFiles()) {
+			System.out.println("Adding application dex file: " + dex.getAbsolutePath());
+			for (ClassDef classDef : DexFileFactory.loadDexFile(dex, DEX_API_LEVEL).getClasses()) {
+				if (applicationClasses.putIfAbsent(className(classDef.getType()), dex) != null) {
+					duplicates++;
+				}
+			}
+		}
+		if (duplicates > 0) {
+			System.out.println("Ignored " + duplicates + " classes that are in more than one dex file.");
+		}
+
+		for (File jar : libraries) {
+			library.addArchive(jar, false);
+		}
+	}
+
+	/**
+	 * Extract the dex files of the APK, unless they have been extracted by an
+	 * earlier run. Each dex file is written to a temporary file first, other
+	 * runs might be reading it.
+	 */
+	private List<File> extractDexFiles() throws IOException {
+		File directory = new File(Files.dexCacheDirectory(base), Hashes.sha1(apk));
+		List<File> result = new ArrayList<File>();
+
+		try (ZipFile archive = new ZipFile(apk)) {
+			Enumeration<? extends ZipEntry> entries = archive.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if (!DEX_ENTRY.matcher(entry.getName()).matches()) {
+					continue;
+				}
+
+				File dex = new File(directory, entry.getName());
+				if (!dex.isFile() || dex.length() != entry.getSize()) {
+					FileUtils.forceMkdir(directory);
+					File temp = File.createTempFile(entry.getName(), ".tmp", directory);
+					try (InputStream stream = archive.getInputStream(entry)) {
+						FileUtils.copyInputStreamToFile(stream, temp);
+						java.nio.file.Files.move(temp.toPath(), dex.toPath(), StandardCopyOption.REPLACE_EXISTING,
+								StandardCopyOption.ATOMIC_MOVE);
+					} finally {
+						FileUtils.deleteQuietly(temp);
+					}
+				}
+				result.add(dex);
+			}
+		}
+
+		if (result.isEmpty()) {
+			throw new IOException(apk + " does not have any dex files");
+		}
+
+		// classes.dex, classes2.dex, ..., classes10.dex
+		result.sort((a, b) -> a.getName().length() != b.getName().length() ? a.getName().length()
+				- b.getName().length() : a.getName().compareTo(b.getName()));
+		return result;
+	}
+
+	/**
+	 * Convert a dex type descriptor (e.g., Lcom/example/Main;) to a class
+	 * name.
+	 */
+	private static String className(String type) {
+		return type.substring(1, type.length() - 1).replace('/', '.');
+	}
+
+	/**
+	 * Find the class for the given className. This method is invoked by
+	 * {@link soot.SourceLocator}.
+	 */
+	@Override
+	public ClassSource find(String className) {
+		File dex = applicationClasses.get(className);
+		if (dex != null) {
+			return new DexClassSource(className, dex);
+		} else {
+			return library.find(className);
+		}
+	}
+}
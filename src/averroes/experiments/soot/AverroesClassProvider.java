@@ -3,6 +3,8 @@ package averroes.experiments.soot;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -10,16 +12,24 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
 import soot.ClassProvider;
 import soot.ClassSource;
 import soot.CoffiClassSource;
-import soot.coffi.ClassFile;
 import averroes.experiments.util.Files;
+import averroes.experiments.util.io.CachedZipEntryResource;
+import averroes.experiments.util.io.ClassBytesCache;
+import averroes.experiments.util.io.ClassNameReader;
 import averroes.experiments.util.io.Resource;
-import averroes.experiments.util.io.ZipEntryResource;
 
 /**
  * This class provider adds the Java classes from the application JAR to the
@@ -29,6 +39,12 @@ import averroes.experiments.util.io.ZipEntryResource;
  * This class provider adds a class once. Any consequent additions will throw an
  * exception because each class should be encountered only once.
  * 
+ * Class names are taken from the paths of the archive entries, and a class file
+ * is only read (and its name checked) when Soot asks for it through
+ * {@link #find(String)}. The entry paths of each archive are kept in an index
+ * under {@link Files#cacheDirectory(String)}, which is reused as long as the
+ * size and modification time of the archive do not change.
+ * 
  * @author karim
  */
 public class AverroesClassProvider implements ClassProvider {
@@ -88,17 +104,58 @@ public class AverroesClassProvider implements ClassProvider {
 		return classes.keySet();
 	}
 
+	/**
+	 * Check if this class provider has a class, without reading it.
+	 * 
+	 * @param className
+	 * @return
+	 */
+	public boolean contains(String className) {
+		return classes.containsKey(className);
+	}
+
 	/**
 	 * Add the organized application and library archives specified in the
-	 * properties file.
+	 * properties file. The archives are scanned in parallel, then added in
+	 * order (application first), so that duplicate classes are reported the
+	 * same way every time.
 	 * 
 	 * @throws IOException
 	 */
 	public void prepare() throws IOException {
 		System.out.println("");
 		System.out.println("Preparing classes ...");
-		addApplicationArchive();
-		addLibraryArchive();
+
+		List<File> archives = new ArrayList<File>();
+		archives.add(Files.organizedApplicationJarFile(base, benchmark));
+		if (isAve) {
+			archives.add(Files.placeholderLibraryJarFile(base, benchmark));
+			archives.add(Files.averroesLibraryClassJarFile(base, benchmark));
+		} else {
+			archives.add(Files.organizedLibraryJarFile(base, benchmark));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(archives.size());
+		try {
+			List<Future<List<String>>> scans = new ArrayList<Future<List<String>>>();
+			for (File archive : archives) {
+				scans.add(executor.submit(() -> scanArchive(archive)));
+			}
+
+			for (int i = 0; i < archives.size(); i++) {
+				addEntries(archives.get(i), scans.get(i).get(), i == 0);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
 	}
 
 	/**
@@ -112,11 +169,12 @@ public class AverroesClassProvider implements ClassProvider {
 	 * @throws IOException
 	 */
 	public String addClass(ZipFile archive, ZipEntry entry, boolean fromApplicationArchive) throws IOException {
-		return addClass(entry.getName(), new ZipEntryResource(archive, entry), fromApplicationArchive);
+		return addClass(entry.getName(), new CachedZipEntryResource(archive, entry), fromApplicationArchive);
 	}
 
 	/**
-	 * Add a class file from a resource.
+	 * Add a class file from a resource. The class name is read from the class
+	 * file.
 	 * 
 	 * @param path
 	 * @param resource
@@ -125,20 +183,23 @@ public class AverroesClassProvider implements ClassProvider {
 	 * @throws IOException
 	 */
 	public String addClass(String path, Resource resource, boolean fromApplicationArchive) throws IOException {
-		ClassFile c = new ClassFile(path);
+		String className;
+		try (InputStream stream = resource.open()) {
+			className = ClassNameReader.thisClass(IOUtils.toByteArray(stream));
+		}
 
-		InputStream stream = null;
-		try {
-			stream = resource.open();
-			c.loadClassFile(stream);
-		} finally {
-			if (stream != null) {
-				stream.close();
-			}
+		if (className == null) {
+			throw new IOException(path + " is not a valid class file");
 		}
 
-		String className = c.toString().replace('/', '.');
+		register(className, resource, fromApplicationArchive);
+		return className;
+	}
 
+	/**
+	 * Add a class to the class provider.
+	 */
+	private void register(String className, Resource resource, boolean fromApplicationArchive) {
 		if (classes.containsKey(className)) {
 			// This means we encountered another copy of the class later on the
 			// path, this should never happen!
@@ -151,8 +212,6 @@ public class AverroesClassProvider implements ClassProvider {
 			}
 			classes.put(className, resource);
 		}
-
-		return className;
 	}
 
 	/**
@@ -164,21 +223,7 @@ public class AverroesClassProvider implements ClassProvider {
 	 * @throws IOException
 	 */
 	public List<String> addArchive(File file, boolean isApplication) throws IOException {
-		System.out.println("Adding " + (isApplication ? "application" : "placeholder library") + " archive: "
-				+ file.getAbsolutePath());
-		List<String> result = new ArrayList<String>();
-
-		ZipFile archive = new ZipFile(file);
-		Enumeration<? extends ZipEntry> entries = archive.entries();
-		while (entries.hasMoreElements()) {
-			ZipEntry entry = entries.nextElement();
-			if (entry.getName().endsWith(".class")) {
-				String className = addClass(archive, entry, isApplication);
-				result.add(className);
-			}
-		}
-
-		return result;
+		return addEntries(file, scanArchive(file), isApplication);
 	}
 
 	/**
@@ -194,29 +239,70 @@ public class AverroesClassProvider implements ClassProvider {
 	}
 
 	/**
-	 * Add the organized application archive to the class provider.
-	 * 
-	 * @return
-	 * @throws IOException
+	 * Add the classes of an archive, given the paths of its class entries.
+	 * The archive itself is only opened when one of its classes is found.
 	 */
-	private List<String> addApplicationArchive() throws IOException {
-		return addArchive(Files.organizedApplicationJarFile(base, benchmark), true);
+	private List<String> addEntries(File file, List<String> paths, boolean isApplication) {
+		System.out.println("Adding " + (isApplication ? "application" : "placeholder library") + " archive: "
+				+ file.getAbsolutePath());
+		List<String> result = new ArrayList<String>();
+		LazyArchive archive = new LazyArchive(file);
+
+		for (String path : paths) {
+			String className = path.substring(0, path.length() - ".class".length()).replace('/', '.');
+			register(className, new VerifiedResource(className, archive, path), isApplication);
+			result.add(className);
+		}
+
+		return result;
 	}
 
 	/**
-	 * Add the organized library archive to the class provider.
-	 * 
-	 * @return
-	 * @throws IOException
+	 * Get the paths of the class entries of an archive, from its index if it
+	 * is up to date.
 	 */
-	private List<String> addLibraryArchive() throws IOException {
-		if (isAve) {
-			List<String> result = addArchive(Files.placeholderLibraryJarFile(base, benchmark), false);
-			result.addAll(addArchive(Files.averroesLibraryClassJarFile(base, benchmark), false));
-			return result;
-		} else {
-			return addArchive(Files.organizedLibraryJarFile(base, benchmark), false);
+	private List<String> scanArchive(File file) throws IOException {
+		File index = indexFile(file);
+		String stamp = file.length() + "\t" + file.lastModified() + "\t" + file.getAbsolutePath();
+
+		if (index.exists()) {
+			List<String> lines = java.nio.file.Files.readAllLines(index.toPath(), StandardCharsets.UTF_8);
+			if (!lines.isEmpty() && lines.get(0).equals(stamp)) {
+				return lines.subList(1, lines.size());
+			}
+		}
+
+		List<String> paths = new ArrayList<String>();
+		try (ZipFile archive = new ZipFile(file)) {
+			Enumeration<? extends ZipEntry> entries = archive.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if (entry.getName().endsWith(".class")) {
+					paths.add(entry.getName());
+				}
+			}
 		}
+
+		// Write the index to a temporary file first, other runs might be
+		// reading it
+		List<String> lines = new ArrayList<String>();
+		lines.add(stamp);
+		lines.addAll(paths);
+		FileUtils.forceMkdir(index.getParentFile());
+		File temp = File.createTempFile(index.getName(), ".tmp", index.getParentFile());
+		java.nio.file.Files.write(temp.toPath(), lines, StandardCharsets.UTF_8);
+		java.nio.file.Files.move(temp.toPath(), index.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+
+		return paths;
+	}
+
+	/**
+	 * The index file of an archive.
+	 */
+	private File indexFile(File archive) {
+		String name = archive.getName() + "-" + Integer.toHexString(archive.getAbsolutePath().hashCode()) + ".idx";
+		return new File(new File(Files.cacheDirectory(base), "class-index"), name);
 	}
 
 	/**
@@ -243,4 +329,64 @@ public class AverroesClassProvider implements ClassProvider {
 			return null;
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * An archive that is only opened when one of its entries is read.
+	 */
+	private static class LazyArchive {
+		private File file;
+		private ZipFile archive = null;
+
+		private LazyArchive(File file) {
+			this.file = file;
+		}
+
+		private CachedZipEntryResource resource(String path) throws IOException {
+			ZipFile zip;
+			synchronized (this) {
+				if (archive == null) {
+					archive = new ZipFile(file);
+				}
+				zip = archive;
+			}
+
+			ZipEntry entry = zip.getEntry(path);
+			if (entry == null) {
+				throw new IOException(path + " is not in " + file);
+			}
+			return new CachedZipEntryResource(zip, entry);
+		}
+	}
+
+	/**
+	 * A class file whose name comes from its path. The first time it is
+	 * opened, the class file is checked to declare that class. The bytes are
+	 * read through the {@link ClassBytesCache}, so the check does not inflate
+	 * the class file a second time.
+	 */
+	private static class VerifiedResource implements Resource {
+		private String className;
+		private LazyArchive archive;
+		private String path;
+		private volatile boolean verified = false;
+
+		private VerifiedResource(String className, LazyArchive archive, String path) {
+			this.className = className;
+			this.archive = archive;
+			this.path = path;
+		}
+
+		@Override
+		public InputStream open() throws IOException {
+			CachedZipEntryResource resource = archive.resource(path);
+			if (!verified) {
+				String declared = ClassNameReader.thisClass(resource.buffer());
+				if (!className.equals(declared)) {
+					throw new RuntimeException("the class file for " + className + " declares class " + declared);
+				}
+				verified = true;
+			}
+			return resource.open();
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package averroes.experiments.soot;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import soot.ClassProvider;
+import soot.G;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.SourceLocator;
+import soot.options.Options;
+import averroes.experiments.util.ApkManifest;
+import averroes.experiments.util.CompactCallGraph;
+import averroes.experiments.util.Files;
+import averroes.experiments.util.Profiler;
+
+/**
+ * Run Spark on an Android APK. An app has no main method, the Android
+ * framework instantiates the components declared in the manifest and calls
+ * their lifecycle methods. The entry points are therefore all the concrete
+ * methods of the component classes (and of the Application class), including
+ * the ones they inherit from other classes in the APK.
+ * 
+ * The library is either android.jar (vanilla Spark) or the placeholder
+ * library that Averroes generated for the APK. In the latter, the callbacks
+ * that the app registers with the library are called from averroes.Library.
+ * 
+ */
+public class SparkApkCallGraphTransformer {
+	private ApkClassProvider provider;
+	private ApkManifest manifest;
+	private File androidJar;
+	private boolean isAverroes;
+	private String sparkProfile;
+
+	/**
+	 * Construct a new transformer.
+	 * 
+	 * @param base
+	 * @param apk
+	 * @param manifest
+	 * @param androidJar
+	 *            the android.jar of the vanilla analysis, it also tells Soot
+	 *            the API level of the dex files
+	 * @param isAverroes
+	 * @param sparkProfile
+	 *            the name of the {@link SparkProfile}, or auto
+	 */
+	public SparkApkCallGraphTransformer(String base, File apk, ApkManifest manifest, File androidJar,
+			boolean isAverroes, String sparkProfile) {
+		this.manifest = manifest;
+		this.androidJar = androidJar;
+		this.isAverroes = isAverroes;
+		this.sparkProfile = sparkProfile;
+
+		List<File> libraries = new ArrayList<File>();
+		if (isAverroes) {
+			libraries.add(Files.apkPlaceholderLibraryJarFile(base, Files.apkName(apk)));
+			libraries.add(Files.apkAverroesLibraryClassJarFile(base, Files.apkName(apk)));
+		} else {
+			libraries.add(androidJar);
+		}
+		provider = new ApkClassProvider(base, apk, libraries);
+	}
+
+	/**
+	 * Run Spark and convert its call graph (see
+	 * {@link SparkCallGraphTransformer#getCallGraph()}).
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public CompactCallGraph getCallGraph() throws IOException {
+		System.out.println("Generating the call graph from Spark" + (isAverroes ? "Averroes" : "") + " for "
+				+ manifest.getPackageName() + ".");
+
+		// Reset Soot
+		G.reset();
+		provider.prepare();
+
+		// Set some soot parameters. References to classes that are in
+		// neither the APK nor the library (e.g., optional APIs of newer
+		// Android versions) are common in apps.
+		SourceLocator.v().setClassProviders(Collections.singletonList((ClassProvider) provider));
+		Options.v().classes().addAll(provider.getApplicationClassNames());
+		Options.v().set_whole_program(true);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_force_android_jar(androidJar.getPath());
+
+		if (isAverroes) {
+			// required since this class is not related to any other class now
+			Options.v().classes().add("averroes.Library");
+		}
+
+		// Load the necessary classes
+		try (Profiler.Phase phase = Profiler.v().start("spark-load")) {
+			Scene.v().loadNecessaryClasses();
+		}
+
+		// Setting entry points (i.e., the methods of the components)
+		List<SootMethod> entryPoints = entryPoints();
+		System.out.println("[Spark] " + entryPoints.size() + " entry points in " + manifest.getEntryClasses().size()
+				+ " components.");
+		Scene.v().setEntryPoints(entryPoints);
+
+		// Run the Spark transformer
+		SparkCallGraphTransformer.propagate(sparkProfile, provider.getApplicationClassNames().size()
+				+ provider.getLibraryClassNames().size(), isAverroes);
+
+		// Retrieve the call graph edges
+		CompactCallGraph result = SparkCallGraphTransformer.convertCallGraph();
+
+		// Soot is not needed anymore
+		G.reset();
+		return result;
+	}
+
+	/**
+	 * The concrete methods of the entry classes and of their super classes in
+	 * the APK. A component that is declared in the manifest but is not in the
+	 * APK is skipped.
+	 * 
+	 * @return
+	 */
+	private List<SootMethod> entryPoints() {
+		Set<SootMethod> result = new LinkedHashSet<SootMethod>();
+		for (String className : manifest.getEntryClasses()) {
+			if (!provider.isApplicationClass(className)) {
+				System.out.println("[Spark] Component " + className + " is not in the APK.");
+				continue;
+			}
+
+			for (SootClass cls = Scene.v().getSootClass(className); cls != null
+					&& provider.isApplicationClass(cls.getName()); cls = cls.hasSuperclass() ? cls.getSuperclass()
+					: null) {
+				for (SootMethod method : cls.getMethods()) {
+					if (method.isConcrete()) {
+						result.add(method);
+					}
+				}
+			}
+		}
+
+		if (isAverroes) {
+			result.add(Scene.v().getMethod("<averroes.Library: void <clinit>()>"));
+		}
+		return new ArrayList<SootMethod>(result);
+	}
+}
@@ -3,10 +3,11 @@ package averroes.experiments.soot;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.ToIntFunction;
 
-import probe.CallGraph;
 import probe.ObjectManager;
 import probe.ProbeClass;
 import probe.ProbeMethod;
@@ -20,6 +21,10 @@ import soot.SourceLocator;
 import soot.jimple.spark.SparkTransformer;
 import soot.options.Options;
 import averroes.experiments.options.ExperimentsOptions;
+import averroes.experiments.util.CompactCallGraph;
+import averroes.experiments.util.MethodTable;
+import averroes.experiments.util.Profiler;
+import averroes.experiments.util.io.ClassBytesCache;
 
 public class SparkCallGraphTransformer {
 	private AverroesClassProvider provider;
@@ -30,7 +35,15 @@ public class SparkCallGraphTransformer {
 		provider = new AverroesClassProvider(base, benchmark, this.isAverroes);
 	}
 
-	public CallGraph getProbeCallGraph() throws IOException {
+	/**
+	 * Run Spark and convert its call graph. The filtered edges are streamed
+	 * from Soot's call graph into a compact call graph, and Soot is reset
+	 * afterwards so that its memory can be reclaimed.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public CompactCallGraph getCallGraph() throws IOException {
 		System.out.println("Generating the call graph from Spark" + (isAverroes ? "Averroes." : "."));
 
 		// Reset Soot
@@ -53,70 +66,27 @@ public class SparkCallGraphTransformer {
 		}
 
 		// Load the necessary classes
-		Scene.v().loadNecessaryClasses();
-		Scene.v().setMainClassFromOptions();
+		try (Profiler.Phase phase = Profiler.v().start("spark-load")) {
+			Scene.v().loadNecessaryClasses();
+			Scene.v().setMainClassFromOptions();
+		}
 
 		// Setting entry points (i.e., main method of the main class)
 		Scene.v().setEntryPoints(entryPoints());
 
 		// Run the Spark transformer
-		SparkTransformer.v().transform("", Transformer.sparkOptions(isAverroes));
+		propagate(ExperimentsOptions.getSparkProfile(), provider.getClassNames().size(), isAverroes);
 
 		// Retrieve the call graph edges
-		CallGraph probecg = new CallGraph();
-		soot.jimple.toolkits.callgraph.CallGraph cg = Scene.v().getCallGraph();
-
-		// TODO
-		// PAG pag = (PAG) Scene.v().getPointsToAnalysis();
-		// SootField f =
-		// Scene.v().getSootClass(Names.AVERROES_ABSTRACT_LIBRARY_CLASS)
-		// .getFieldByName(Names.LIBRARY_POINTS_TO);
-		//
-		// SootMethod m =
-		// Scene.v().getMethod(Names.AVERROES_LIBRARY_DO_IT_ALL_METHOD_SIGNATURE);
-		// System.out.println(m.getActiveBody());
-		// m.getActiveBody().getLocals().stream().filter(l ->
-		// l.getName().equals("r0"))
-		// .map(l -> pag.reachingObjects(l, f)).forEach(pt ->
-		// ((DoublePointsToSet) pt).forall(new P2SetVisitor() {
-		// public void visit(Node n) {
-		// AllocNode key = (AllocNode) n;
-		// Arrays.stream(pag.allocLookup(key)).forEach(System.out::println);
-		// }
-		// }));
-		//
-		// SootMethod m2 =
-		// Scene.v().getSootClass("org.hsqldb.Table").getMethodByName("deleteNoCheck");
-		// List<String> locals = Arrays.asList("$r7", "$r8");
-		// System.out.println(m2.getActiveBody());
-		// m2.getActiveBody().getLocals().stream().filter(l ->
-		// locals.contains(l.getName()))
-		// .map(l -> pag.reachingObjects(l)).forEach(pt -> ((DoublePointsToSet)
-		// pt).forall(new P2SetVisitor() {
-		// public void visit(Node n) {
-		// AllocNode key = (AllocNode) n;
-		// Arrays.stream(pag.allocLookup(key)).forEach(System.out::println);
-		// }
-		// }));
-
-		Iterator<soot.jimple.toolkits.callgraph.Edge> it = cg.listener();
-		while (it.hasNext()) {
-			soot.jimple.toolkits.callgraph.Edge e = it.next();
-			if (e.isExplicit() || e.kind().equals(Kind.NEWINSTANCE)) {
-				probecg.edges().add(new probe.CallEdge(probeMethod(e.src()), probeMethod(e.tgt())));
-			}
-		}
-
-		// Retrieve the call graph entry points
-		for (SootMethod method : Scene.v().getEntryPoints()) {
-			probecg.entryPoints().add(probeMethod(method));
-		}
+		CompactCallGraph result = convertCallGraph();
 
 		// DijkstraAlgorithm alg = new DijkstraAlgorithm(probecg);
 		// alg.execute(ProbeUtils.LIBRARY_BLOB);
 		// System.out.println(alg.getPath(ProbeUtils.createProbeMethodBySignature(m.getSignature())));
 
-		return probecg;
+		// Soot is not needed anymore
+		G.reset();
+		return result;
 	}
 
 	/**
@@ -134,25 +104,126 @@ public class SparkCallGraphTransformer {
 		return result;
 	}
 
+	/**
+	 * Run Spark with the given profile (or the one picked for the given
+	 * number of classes), and tag the run with the profile, the propagation
+	 * time and the peak heap.
+	 * 
+	 * @param profileName
+	 * @param classes
+	 * @param isAverroes
+	 */
+	static void propagate(String profileName, int classes, boolean isAverroes) {
+		SparkProfile profile = SparkProfile.select(profileName, classes);
+		System.out.println("[Spark] Using the " + profile + " profile (" + classes + " classes).");
+
+		Profiler.Phase phase = Profiler.v().start("spark-propagation");
+		try (Profiler.Phase propagation = phase) {
+			SparkTransformer.v().transform("", Transformer.sparkOptions(profile, isAverroes));
+		}
+		// Stopping the closed phase again returns its record
+		Profiler.Record record = phase.stop();
+
+		long peakHeap = Profiler.peakHeap();
+		System.out.println("[Spark] Propagation with the " + profile + " profile took " + phase.seconds()
+				+ " seconds, peak heap " + (peakHeap < 0 ? "unknown" : (peakHeap >> 20) + " MB") + ".");
+		Profiler.v().tag("spark-profile", profile);
+		Profiler.v().tag("spark-profile-requested", profileName);
+		Profiler.v().tag("spark-classes", classes);
+		Profiler.v().tag("spark-propagation(ms)", record.wallMillis());
+		Profiler.v().tag("spark-peak-heap(bytes)", peakHeap);
+	}
+
+	/**
+	 * Convert the call graph in the Soot scene, keeping the explicit and
+	 * newInstance edges.
+	 * 
+	 * @return
+	 */
+	static CompactCallGraph convertCallGraph() {
+		try (Profiler.Phase phase = Profiler.v().start("spark-convert")) {
+			CompactCallGraph.Builder probecg = new CompactCallGraph.Builder();
+			soot.jimple.toolkits.callgraph.CallGraph cg = Scene.v().getCallGraph();
+			MethodTable table = MethodTable.v();
+
+			// Soot methods are unique objects, so each one is converted once
+			IdentityHashMap<SootMethod, Integer> ids = new IdentityHashMap<SootMethod, Integer>();
+			ToIntFunction<SootMethod> id = method -> ids.computeIfAbsent(method, m -> table.id(probeMethod(m)));
+
+			// TODO
+			// PAG pag = (PAG) Scene.v().getPointsToAnalysis();
+			// SootField f =
+			// Scene.v().getSootClass(Names.AVERROES_ABSTRACT_LIBRARY_CLASS)
+			// .getFieldByName(Names.LIBRARY_POINTS_TO);
+			//
+			// SootMethod m =
+			// Scene.v().getMethod(Names.AVERROES_LIBRARY_DO_IT_ALL_METHOD_SIGNATURE);
+			// System.out.println(m.getActiveBody());
+			// m.getActiveBody().getLocals().stream().filter(l ->
+			// l.getName().equals("r0"))
+			// .map(l -> pag.reachingObjects(l, f)).forEach(pt ->
+			// ((DoublePointsToSet) pt).forall(new P2SetVisitor() {
+			// public void visit(Node n) {
+			// AllocNode key = (AllocNode) n;
+			// Arrays.stream(pag.allocLookup(key)).forEach(System.out::println);
+			// }
+			// }));
+			//
+			// SootMethod m2 =
+			// Scene.v().getSootClass("org.hsqldb.Table").getMethodByName("deleteNoCheck");
+			// List<String> locals = Arrays.asList("$r7", "$r8");
+			// System.out.println(m2.getActiveBody());
+			// m2.getActiveBody().getLocals().stream().filter(l ->
+			// locals.contains(l.getName()))
+			// .map(l -> pag.reachingObjects(l)).forEach(pt -> ((DoublePointsToSet)
+			// pt).forall(new P2SetVisitor() {
+			// public void visit(Node n) {
+			// AllocNode key = (AllocNode) n;
+			// Arrays.stream(pag.allocLookup(key)).forEach(System.out::println);
+			// }
+			// }));
+
+			Iterator<soot.jimple.toolkits.callgraph.Edge> it = cg.listener();
+			while (it.hasNext()) {
+				soot.jimple.toolkits.callgraph.Edge e = it.next();
+				if (e.isExplicit() || e.kind().equals(Kind.NEWINSTANCE)) {
+					probecg.addEdge(id.applyAsInt(e.src()), id.applyAsInt(e.tgt()));
+				}
+			}
+
+			// Retrieve the call graph entry points
+			for (SootMethod method : Scene.v().getEntryPoints()) {
+				probecg.addEntryPoint(id.applyAsInt(method));
+			}
+
+			CompactCallGraph result = probecg.build();
+			phase.stop();
+			System.out.println("[Spark] Call graph converted in " + phase.seconds() + " seconds ("
+					+ ids.size() + " methods).");
+			System.out.println("[Spark] " + ClassBytesCache.v());
+			return result;
+		}
+	}
+
 	/**
 	 * Convert a soot method to a probe method.
 	 * 
 	 * @param sootMethod
 	 * @return
 	 */
-	private ProbeMethod probeMethod(SootMethod sootMethod) {
+	private static ProbeMethod probeMethod(SootMethod sootMethod) {
 		SootClass sootClass = sootMethod.getDeclaringClass();
 		ProbeClass cls = ObjectManager.v().getClass(sootClass.toString());
 		return ObjectManager.v().getMethod(cls, sootMethod.getName(), sootMethod.getBytecodeParms());
 	}
 
-	public static void addCommonDynamicClass(ClassProvider provider, String className) {
-		if (provider.find(className) != null) {
+	public static void addCommonDynamicClass(AverroesClassProvider provider, String className) {
+		if (provider.contains(className)) {
 			Scene.v().addBasicClass(className);
 		}
 	}
 
-	public static void addCommonDynamicClasses(ClassProvider provider) {
+	public static void addCommonDynamicClasses(AverroesClassProvider provider) {
 		/*
 		 * For simulating the FileSystem class, we need the implementation of
 		 * the FileSystem, but the classes are not loaded automatically due to
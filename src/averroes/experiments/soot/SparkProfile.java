@@ -0,0 +1,146 @@
+package averroes.experiments.soot;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Named sets of Spark options (see {@link Transformer#sparkOptions(SparkProfile, boolean)}).
+ * None of them changes the call graph: they only pick how the points-to sets
+ * are represented and what Spark does besides propagating (e.g., forcing
+ * garbage collections to report its memory use). On-the-fly call graph
+ * construction stays on in all of them, Spark would otherwise start from the
+ * CHA call graph.
+ * 
+ */
+public enum SparkProfile {
+
+	/**
+	 * The options the experiments have always used: Soot's defaults (hybrid
+	 * sets for both the old and the new part of each points-to set), verbose,
+	 * and a forced collection after each step of Spark.
+	 */
+	DEFAULT("default") {
+		@Override
+		protected void options(Map<String, String> opts) {
+			opts.put("verbose", "true");
+			opts.put("force-gc", "true");
+		}
+	},
+
+	/**
+	 * Bit vectors for the old part of the points-to sets, which makes
+	 * propagation fast when there are few allocation sites, i.e., for small
+	 * programs. No forced collections and no statistics.
+	 */
+	THROUGHPUT("throughput") {
+		@Override
+		protected void options(Map<String, String> opts) {
+			opts.put("verbose", "false");
+			opts.put("force-gc", "false");
+			opts.put("set-impl", "double");
+			opts.put("double-set-old", "bit");
+			opts.put("double-set-new", "hybrid");
+		}
+	},
+
+	/**
+	 * Shared lists for the old part of the points-to sets, whose common
+	 * suffixes are stored once, for large programs where bit vectors over all
+	 * the allocation sites do not fit. Forcing collections does not lower the
+	 * peak heap, it only costs time, so it is off as well.
+	 */
+	LOW_MEMORY("low-memory") {
+		@Override
+		protected void options(Map<String, String> opts) {
+			opts.put("verbose", "false");
+			opts.put("force-gc", "false");
+			opts.put("set-impl", "double");
+			opts.put("double-set-old", "sharedlist");
+			opts.put("double-set-new", "hybrid");
+		}
+	};
+
+	/**
+	 * The name that picks a profile based on the size of the program.
+	 */
+	public static final String AUTO = "auto";
+
+	// Programs with fewer classes use the throughput profile, programs with
+	// more use the low memory one
+	private static final int SMALL_PROGRAM = 5000;
+	private static final int LARGE_PROGRAM = 20000;
+
+	// A heap below this is too small for bit vectors on anything but a small
+	// program
+	private static final long SMALL_HEAP = 2L << 30;
+
+	private String name;
+
+	private SparkProfile(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Add the options of this profile.
+	 * 
+	 * @param opts
+	 */
+	protected abstract void options(Map<String, String> opts);
+
+	/**
+	 * The options of this profile, on top of Soot's defaults.
+	 * 
+	 * @return
+	 */
+	public Map<String, String> options() {
+		Map<String, String> opts = new HashMap<String, String>();
+		options(opts);
+		return opts;
+	}
+
+	/**
+	 * Get the profile with the given name, or pick one for a program with the
+	 * given number of classes (application and library) if the name is
+	 * {@link #AUTO}.
+	 * 
+	 * @param name
+	 * @param classes
+	 * @return
+	 */
+	public static SparkProfile select(String name, int classes) {
+		if (name.equalsIgnoreCase(AUTO)) {
+			return auto(classes, Runtime.getRuntime().maxMemory());
+		}
+
+		for (SparkProfile profile : values()) {
+			if (profile.name.equalsIgnoreCase(name)) {
+				return profile;
+			}
+		}
+		throw new IllegalArgumentException(name + " is not a Spark profile. Please provide one of: default, "
+				+ "throughput, low-memory, or auto.");
+	}
+
+	/**
+	 * Pick a profile for a program with the given number of classes, running
+	 * with the given maximum heap.
+	 * 
+	 * @param classes
+	 * @param maxHeap
+	 * @return
+	 */
+	public static SparkProfile auto(int classes, long maxHeap) {
+		if (classes < SMALL_PROGRAM) {
+			return THROUGHPUT;
+		} else if (classes > LARGE_PROGRAM || maxHeap < SMALL_HEAP) {
+			return LOW_MEMORY;
+		} else {
+			return DEFAULT;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
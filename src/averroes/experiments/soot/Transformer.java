@@ -16,11 +16,14 @@ public class Transformer {
 	}
 
 	public static Map<String, String> sparkOptions(boolean isAve) {
+		return sparkOptions(SparkProfile.DEFAULT, isAve);
+	}
+
+	public static Map<String, String> sparkOptions(SparkProfile profile, boolean isAve) {
 		Map<String, String> opts = new HashMap<String, String>(PhaseOptions.v().getPhaseOptions("cg.spark"));
 		opts.put("enabled", "true");
-		opts.put("verbose", "true");
 		if(isAve) opts.put("simulate-natives", "false"); // this should only be false for SparkAve
-		opts.put("force-gc", "true");
+		opts.putAll(profile.options());
 		// opts.put("ignore-types", "true");
 		return opts;
 	}
@@ -0,0 +1,178 @@
+package averroes.experiments.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import android.content.res.AXmlResourceParser;
+
+/**
+ * The parts of the binary AndroidManifest.xml of an APK that the call graph
+ * needs: the package name, the Application class, and the classes of the
+ * components (activities, services, broadcast receivers, and content
+ * providers) that the Android framework instantiates and calls into.
+ * 
+ */
+public class ApkManifest {
+
+	private static final String ANDROID_NAMESPACE = "http://schemas.android.com/apk/res/android";
+
+	private String packageName = null;
+	private String applicationClass = null;
+	private Set<String> components = new LinkedHashSet<String>();
+
+	private ApkManifest() {
+	}
+
+	/**
+	 * Read the manifest of the given APK.
+	 * 
+	 * @param apk
+	 * @return
+	 * @throws IOException
+	 */
+	public static ApkManifest read(File apk) throws IOException {
+		try (ZipFile archive = new ZipFile(apk)) {
+			ZipEntry entry = archive.getEntry("AndroidManifest.xml");
+			if (entry == null) {
+				throw new IOException(apk + " does not have an AndroidManifest.xml");
+			}
+
+			try (InputStream stream = archive.getInputStream(entry)) {
+				ApkManifest manifest = new ApkManifest();
+				manifest.parse(stream);
+				if (manifest.packageName == null) {
+					throw new IOException("the manifest of " + apk + " does not declare a package");
+				}
+				return manifest;
+			}
+		}
+	}
+
+	/**
+	 * The package of the app (e.g., com.example.app).
+	 * 
+	 * @return
+	 */
+	public String getPackageName() {
+		return packageName;
+	}
+
+	/**
+	 * The custom Application class of the app, or null if it uses
+	 * android.app.Application.
+	 * 
+	 * @return
+	 */
+	public String getApplicationClass() {
+		return applicationClass;
+	}
+
+	/**
+	 * The classes of the components declared in the manifest, in the order
+	 * they are declared.
+	 * 
+	 * @return
+	 */
+	public Set<String> getComponents() {
+		return Collections.unmodifiableSet(components);
+	}
+
+	/**
+	 * The classes the framework instantiates: the Application class (if any)
+	 * followed by the components.
+	 * 
+	 * @return
+	 */
+	public List<String> getEntryClasses() {
+		List<String> result = new ArrayList<String>();
+		if (applicationClass != null) {
+			result.add(applicationClass);
+		}
+		result.addAll(components);
+		return result;
+	}
+
+	/**
+	 * Walk over the elements of the manifest. Activity aliases are skipped,
+	 * their names are not classes.
+	 */
+	private void parse(InputStream stream) throws IOException {
+		AXmlResourceParser parser = new AXmlResourceParser();
+		parser.open(stream);
+
+		try {
+			for (int event = parser.next(); event != XmlPullParser.END_DOCUMENT; event = parser.next()) {
+				if (event != XmlPullParser.START_TAG) {
+					continue;
+				}
+
+				switch (parser.getName()) {
+				case "manifest":
+					packageName = attribute(parser, "", "package");
+					break;
+				case "application":
+					applicationClass = className(attribute(parser, ANDROID_NAMESPACE, "name"));
+					break;
+				case "activity":
+				case "service":
+				case "receiver":
+				case "provider":
+					String component = className(attribute(parser, ANDROID_NAMESPACE, "name"));
+					if (component != null) {
+						components.add(component);
+					}
+					break;
+				default:
+					break;
+				}
+			}
+		} catch (XmlPullParserException e) {
+			throw new IOException(e);
+		} finally {
+			parser.close();
+		}
+	}
+
+	/**
+	 * The value of an attribute of the current element, or null if it does
+	 * not have one. Compiled manifests do not always keep the namespace of
+	 * the android attributes, so the namespace is only compared if it is
+	 * there.
+	 */
+	private static String attribute(AXmlResourceParser parser, String namespace, String name) {
+		for (int i = 0; i < parser.getAttributeCount(); i++) {
+			String ns = parser.getAttributeNamespace(i);
+			if (parser.getAttributeName(i).equals(name) && (ns == null || ns.isEmpty() || ns.equals(namespace))) {
+				return parser.getAttributeValue(i);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Resolve a class name in the manifest against the package: ".Main" and
+	 * "Main" both stand for package.Main.
+	 */
+	private String className(String name) {
+		if (name == null || name.isEmpty()) {
+			return null;
+		} else if (name.startsWith(".")) {
+			return packageName + name;
+		} else if (name.indexOf('.') < 0) {
+			return packageName + "." + name;
+		} else {
+			return name;
+		}
+	}
+}
@@ -1,28 +1,29 @@
 package averroes.experiments.util;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.Arrays;
 
 import averroes.experiments.options.ExperimentsOptions;
 
 public class CommandExecuter {
 
-	public static boolean run(String[] cmdarray) throws IOException, InterruptedException {
-		System.out.println("Spawning process " + Arrays.toString(cmdarray));
-		Process p = Runtime.getRuntime().exec(cmdarray);
-
-		BufferedReader stdout = new BufferedReader(new InputStreamReader(p.getInputStream()));
-
-		String line;
-		while ((line = stdout.readLine()) != null) {
-			System.out.println(line);
-		}
-
-		stdout.close();
-		return p.waitFor() == 0;
+	/**
+	 * Run a command under a {@link ProcessSupervisor}, echoing its output and
+	 * recording its resource usage in the {@link RunMetrics} of this run.
+	 * 
+	 * @param name
+	 *            the name of the step
+	 * @param cmdarray
+	 * @return
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public static boolean run(String name, String[] cmdarray) throws IOException, InterruptedException {
+		RunMetrics.Step step = new ProcessSupervisor(name, Arrays.asList(cmdarray), Files.stepLogFile(name), true, 0)
+				.run();
+		RunMetrics.v().add(step);
+		return step.isSuccess();
 	}
 
 	/**
@@ -41,6 +42,6 @@ public class CommandExecuter {
 				Files.organizedApplicationJarFile(base, benchmark).getPath(), lib.getPath() };
 		// AverroesProperties.getInputJarFilesForSpark().trim(),
 		// AverroesProperties.getLibraryClassPath().trim() };
-		return run(cmdArray);
+		return run("doop", cmdArray);
 	}
 }
\ No newline at end of file
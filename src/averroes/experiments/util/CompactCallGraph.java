@@ -0,0 +1,269 @@
+package averroes.experiments.util;
+
+import java.util.Arrays;
+
+import probe.CallEdge;
+import probe.CallGraph;
+import probe.ProbeMethod;
+
+/**
+ * A call graph over the method ids of {@link MethodTable}. The edges are kept
+ * in compressed sparse row form: the successors of method m are
+ * targets[offsets[m]] .. targets[offsets[m + 1] - 1], sorted and without
+ * duplicates. The entry points are a sorted array of ids.
+ *
+ * A compact call graph is immutable, use a {@link Builder} to create one. Use
+ * {@link #toProbeCallGraph()} to get a probe call graph (e.g., for
+ * {@link probe.TextWriter}).
+ *
+ */
+public class CompactCallGraph {
+
+	private int[] entryPoints;
+	private int[] offsets;
+	private int[] targets;
+
+	private CompactCallGraph(int[] entryPoints, int[] offsets, int[] targets) {
+		this.entryPoints = entryPoints;
+		this.offsets = offsets;
+		this.targets = targets;
+	}
+
+	/**
+	 * The sorted ids of the entry points. Do not modify the returned array.
+	 *
+	 * @return
+	 */
+	public int[] entryPoints() {
+		return entryPoints;
+	}
+
+	/**
+	 * All method ids of this graph are less than this bound.
+	 *
+	 * @return
+	 */
+	public int methodBound() {
+		return offsets.length - 1;
+	}
+
+	/**
+	 * The number of edges.
+	 *
+	 * @return
+	 */
+	public int edgeCount() {
+		return targets.length;
+	}
+
+	/**
+	 * The index of the first edge of a method in {@link #target(int)}.
+	 *
+	 * @param method
+	 * @return
+	 */
+	public int firstEdge(int method) {
+		return method < methodBound() ? offsets[method] : targets.length;
+	}
+
+	/**
+	 * The index after the last edge of a method in {@link #target(int)}.
+	 *
+	 * @param method
+	 * @return
+	 */
+	public int endEdge(int method) {
+		return method < methodBound() ? offsets[method + 1] : targets.length;
+	}
+
+	/**
+	 * The target of the edge at the given index.
+	 *
+	 * @param edge
+	 * @return
+	 */
+	public int target(int edge) {
+		return targets[edge];
+	}
+
+	/**
+	 * The sorted successors of a method.
+	 *
+	 * @param method
+	 * @return
+	 */
+	public int[] successors(int method) {
+		return Arrays.copyOfRange(targets, firstEdge(method), endEdge(method));
+	}
+
+	/**
+	 * The edges as sorted (src << 32 | dst) keys.
+	 *
+	 * @return
+	 */
+	public long[] edgeKeys() {
+		long[] keys = new long[targets.length];
+		for (int src = 0; src < methodBound(); src++) {
+			for (int e = offsets[src]; e < offsets[src + 1]; e++) {
+				keys[e] = key(src, targets[e]);
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Convert this graph to a probe call graph.
+	 *
+	 * @return
+	 */
+	public CallGraph toProbeCallGraph() {
+		MethodTable table = MethodTable.v();
+		CallGraph probe = new CallGraph();
+
+		for (int entry : entryPoints) {
+			probe.entryPoints().add(table.method(entry));
+		}
+
+		for (int src = 0; src < methodBound(); src++) {
+			for (int e = offsets[src]; e < offsets[src + 1]; e++) {
+				probe.edges().add(new CallEdge(table.method(src), table.method(targets[e])));
+			}
+		}
+
+		return probe;
+	}
+
+	/**
+	 * Convert a probe call graph to a compact call graph.
+	 *
+	 * @param probe
+	 * @return
+	 */
+	public static CompactCallGraph fromProbe(CallGraph probe) {
+		Builder builder = new Builder();
+		probe.entryPoints().forEach(builder::addEntryPoint);
+		probe.edges().forEach(edge -> builder.addEdge(edge.src(), edge.dst()));
+		return builder.build();
+	}
+
+	public static long key(int src, int dst) {
+		return ((long) src << 32) | (dst & 0xFFFFFFFFL);
+	}
+
+	public static int src(long key) {
+		return (int) (key >>> 32);
+	}
+
+	public static int dst(long key) {
+		return (int) key;
+	}
+
+	/**
+	 * Accumulates entry points and edges, then sorts them once. Duplicates
+	 * are fine, they are removed whenever the edge buffer fills up, so a
+	 * stream with many repeated edges (e.g., a dynamic trace) does not need
+	 * more memory than its distinct edges.
+	 *
+	 * A builder is not thread-safe.
+	 */
+	public static class Builder {
+		private int[] entries = new int[16];
+		private int entryCount = 0;
+		private long[] edges = new long[1 << 12];
+		private int edgeCount = 0;
+		private int sortedCount = 0;
+
+		public Builder addEntryPoint(ProbeMethod method) {
+			return addEntryPoint(MethodTable.v().id(method));
+		}
+
+		public Builder addEntryPoint(int method) {
+			if (entryCount == entries.length) {
+				entries = Arrays.copyOf(entries, entryCount * 2);
+			}
+			entries[entryCount++] = method;
+			return this;
+		}
+
+		public Builder addEdge(ProbeMethod src, ProbeMethod dst) {
+			MethodTable table = MethodTable.v();
+			return addEdge(table.id(src), table.id(dst));
+		}
+
+		public Builder addEdge(int src, int dst) {
+			if (edgeCount == edges.length) {
+				compact();
+				// Only grow if removing the duplicates did not free enough
+				if (edgeCount > edges.length / 2) {
+					edges = Arrays.copyOf(edges, edges.length * 2);
+				}
+			}
+			edges[edgeCount++] = key(src, dst);
+			return this;
+		}
+
+		public CompactCallGraph build() {
+			compact();
+			int[] entryPoints = sortedUnique(entries, entryCount);
+
+			// Only as many offsets as the largest id of this graph needs, the
+			// method table has the methods of every graph read so far
+			int bound = 0;
+			if (entryPoints.length > 0) {
+				bound = entryPoints[entryPoints.length - 1] + 1;
+			}
+			if (edgeCount > 0) {
+				bound = java.lang.Math.max(bound, src(edges[edgeCount - 1]) + 1);
+			}
+			int[] targets = new int[edgeCount];
+			for (int i = 0; i < edgeCount; i++) {
+				targets[i] = dst(edges[i]);
+				bound = java.lang.Math.max(bound, targets[i] + 1);
+			}
+
+			int[] offsets = new int[bound + 1];
+			for (int i = 0; i < edgeCount; i++) {
+				offsets[src(edges[i]) + 1]++;
+			}
+			for (int m = 0; m < bound; m++) {
+				offsets[m + 1] += offsets[m];
+			}
+
+			return new CompactCallGraph(entryPoints, offsets, targets);
+		}
+
+		/**
+		 * Sort the edge buffer and remove the duplicates.
+		 */
+		private void compact() {
+			if (sortedCount == edgeCount) {
+				return;
+			}
+			if (edgeCount > 1 << 16) {
+				Arrays.parallelSort(edges, 0, edgeCount);
+			} else {
+				Arrays.sort(edges, 0, edgeCount);
+			}
+			int unique = 0;
+			for (int i = 0; i < edgeCount; i++) {
+				if (unique == 0 || edges[i] != edges[unique - 1]) {
+					edges[unique++] = edges[i];
+				}
+			}
+			edgeCount = unique;
+			sortedCount = unique;
+		}
+
+		private static int[] sortedUnique(int[] values, int count) {
+			int[] result = Arrays.copyOf(values, count);
+			Arrays.sort(result);
+			int unique = 0;
+			for (int i = 0; i < count; i++) {
+				if (unique == 0 || result[i] != result[unique - 1]) {
+					result[unique++] = result[i];
+				}
+			}
+			return Arrays.copyOf(result, unique);
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package averroes.experiments.util;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * The differences between a reference call graph and another call graph (e.g.,
+ * the dynamic call graph and a static one): the entry points, edges and
+ * reachable methods that are missing from the other graph, and the ones it
+ * has in addition. Since both graphs use the ids of {@link MethodTable}, every
+ * difference is a merge pass over sorted id arrays (see {@link SetUtils}).
+ *
+ */
+public class CompactCallGraphDiff {
+
+	private int referenceEntryPoints;
+	private int otherEntryPoints;
+	private int referenceEdges;
+	private int otherEdges;
+	private int referenceReachable;
+	private int otherReachable;
+
+	private int[] missingEntryPoints;
+	private int[] extraEntryPoints;
+	private long[] missingEdges;
+	private long[] extraEdges;
+	private int[] missingReachable;
+	private int[] extraReachable;
+
+	private CompactCallGraphDiff() {
+	}
+
+	/**
+	 * Compute the differences between two call graphs.
+	 *
+	 * @param reference
+	 * @param other
+	 * @return
+	 */
+	public static CompactCallGraphDiff compute(CompactCallGraph reference, CompactCallGraph other) {
+		CompactCallGraphDiff diff = new CompactCallGraphDiff();
+
+		int[] referenceEntryPoints = reference.entryPoints();
+		int[] otherEntryPoints = other.entryPoints();
+		diff.referenceEntryPoints = referenceEntryPoints.length;
+		diff.otherEntryPoints = otherEntryPoints.length;
+		int[][] entryPoints = SetUtils.split(referenceEntryPoints, otherEntryPoints);
+		diff.missingEntryPoints = entryPoints[0];
+		diff.extraEntryPoints = entryPoints[1];
+
+		long[] referenceEdges = reference.edgeKeys();
+		long[] otherEdges = other.edgeKeys();
+		diff.referenceEdges = referenceEdges.length;
+		diff.otherEdges = otherEdges.length;
+		long[][] edges = SetUtils.split(referenceEdges, otherEdges);
+		diff.missingEdges = edges[0];
+		diff.extraEdges = edges[1];
+
+		int[] referenceReachable = Reachability.reachable(reference);
+		int[] otherReachable = Reachability.reachable(other);
+		diff.referenceReachable = referenceReachable.length;
+		diff.otherReachable = otherReachable.length;
+		int[][] reachable = SetUtils.split(referenceReachable, otherReachable);
+		diff.missingReachable = reachable[0];
+		diff.extraReachable = reachable[1];
+
+		return diff;
+	}
+
+	public int[] missingEntryPoints() {
+		return missingEntryPoints;
+	}
+
+	public int[] extraEntryPoints() {
+		return extraEntryPoints;
+	}
+
+	/**
+	 * The edges of the reference graph that are not in the other one, as
+	 * sorted {@link CompactCallGraph#key(int, int)} keys.
+	 *
+	 * @return
+	 */
+	public long[] missingEdges() {
+		return missingEdges;
+	}
+
+	/**
+	 * The edges of the other graph that are not in the reference one, as
+	 * sorted {@link CompactCallGraph#key(int, int)} keys.
+	 *
+	 * @return
+	 */
+	public long[] extraEdges() {
+		return extraEdges;
+	}
+
+	public int[] missingReachable() {
+		return missingReachable;
+	}
+
+	public int[] extraReachable() {
+		return extraReachable;
+	}
+
+	/**
+	 * Does the other graph have everything the reference graph has?
+	 *
+	 * @return
+	 */
+	public boolean isSound() {
+		return missingEntryPoints.length == 0 && missingEdges.length == 0 && missingReachable.length == 0;
+	}
+
+	/**
+	 * The header of {@link #summary()}.
+	 *
+	 * @return
+	 */
+	public static String summaryHeader() {
+		return String.join("\t", "entry points", "other entry points", "missing entry points",
+				"extra entry points", "edges", "other edges", "missing edges", "extra edges", "reachable",
+				"other reachable", "missing reachable", "extra reachable");
+	}
+
+	/**
+	 * All the counts as one tab-separated row (see {@link #summaryHeader()}).
+	 *
+	 * @return
+	 */
+	public String summary() {
+		return referenceEntryPoints + "\t" + otherEntryPoints + "\t" + missingEntryPoints.length + "\t"
+				+ extraEntryPoints.length + "\t" + referenceEdges + "\t" + otherEdges + "\t" + missingEdges.length
+				+ "\t" + extraEdges.length + "\t" + referenceReachable + "\t" + otherReachable + "\t"
+				+ missingReachable.length + "\t" + extraReachable.length;
+	}
+
+	/**
+	 * Write the counts, then every difference on its own tab-separated line
+	 * (e.g., "missing-edge src dst"). The count lines use the same labels as
+	 * probe.CallGraphDiff.
+	 *
+	 * @param out
+	 */
+	public void write(PrintStream out) {
+		MethodTable table = MethodTable.v();
+
+		out.println("Missing entry points: " + missingEntryPoints.length);
+		out.println("Extra entry points: " + extraEntryPoints.length);
+		out.println("Missing call edges: " + missingEdges.length);
+		out.println("Extra call edges: " + extraEdges.length);
+		out.println("Number of reachable methods missing: " + missingReachable.length);
+		out.println("Number of extra reachable methods: " + extraReachable.length);
+
+		Arrays.stream(missingEntryPoints).forEach(m -> out.println("missing-entry\t" + table.method(m)));
+		Arrays.stream(extraEntryPoints).forEach(m -> out.println("extra-entry\t" + table.method(m)));
+		Arrays.stream(missingEdges).forEach(
+				e -> out.println("missing-edge\t" + table.method(CompactCallGraph.src(e)) + "\t"
+						+ table.method(CompactCallGraph.dst(e))));
+		Arrays.stream(extraEdges).forEach(
+				e -> out.println("extra-edge\t" + table.method(CompactCallGraph.src(e)) + "\t"
+						+ table.method(CompactCallGraph.dst(e))));
+		Arrays.stream(missingReachable).forEach(m -> out.println("missing-reachable\t" + table.method(m)));
+		Arrays.stream(extraReachable).forEach(m -> out.println("extra-reachable\t" + table.method(m)));
+	}
+}
@@ -16,13 +16,152 @@ import averroes.experiments.options.ExperimentsOptions;
  */
 public class Files {
 
+	public static final String BINARY_CALL_GRAPH_EXTENSION = ".cg.bin";
+
 	/**
 	 * The path to the call graph.
 	 * 
 	 * @return
 	 */
 	public static File callGraphGzipFile() {
-		return new File(ExperimentsOptions.getOutputDirectory(), ExperimentsOptions.getToolName() + ".txt.gzip");
+		return callGraphGzipFile(ExperimentsOptions.getOutputDirectory(), ExperimentsOptions.getToolName());
+	}
+
+	/**
+	 * The path to the call graph of the given tool in the given output
+	 * directory.
+	 * 
+	 * @param outputDirectory
+	 * @param toolName
+	 * @return
+	 */
+	public static File callGraphGzipFile(String outputDirectory, String toolName) {
+		return new File(outputDirectory, toolName + ".txt.gzip");
+	}
+
+	/**
+	 * The path to the call graph in the binary format.
+	 * 
+	 * @return
+	 */
+	public static File callGraphBinaryFile() {
+		return callGraphBinaryFile(ExperimentsOptions.getOutputDirectory(), ExperimentsOptions.getToolName());
+	}
+
+	/**
+	 * The path to the call graph of the given tool, in the binary format, in
+	 * the given output directory.
+	 * 
+	 * @param outputDirectory
+	 * @param toolName
+	 * @return
+	 */
+	public static File callGraphBinaryFile(String outputDirectory, String toolName) {
+		return new File(outputDirectory, toolName + BINARY_CALL_GRAPH_EXTENSION);
+	}
+
+	/**
+	 * The log file of an external step (e.g., doop) of the current run.
+	 * 
+	 * @param step
+	 * @return
+	 */
+	public static File stepLogFile(String step) {
+		return new File(ExperimentsOptions.getOutputDirectory(), ExperimentsOptions.getToolName() + "-" + step
+				+ ".log");
+	}
+
+	/**
+	 * The file where the {@link RunMetrics} of the current run are written.
+	 * 
+	 * @return
+	 */
+	public static File metricsFile() {
+		return new File(ExperimentsOptions.getOutputDirectory(), ExperimentsOptions.getToolName() + "-metrics.txt");
+	}
+
+	/**
+	 * The file where the {@link Profiler} phases of the current run are
+	 * written, in the given format (i.e., json or csv).
+	 * 
+	 * @param format
+	 * @return
+	 */
+	public static File profileFile(String format) {
+		return profileFile(ExperimentsOptions.getOutputDirectory(), ExperimentsOptions.getToolName(), format);
+	}
+
+	/**
+	 * The file where the {@link Profiler} phases of the given tool are written
+	 * in the given output directory.
+	 * 
+	 * @param outputDirectory
+	 * @param toolName
+	 * @param format
+	 * @return
+	 */
+	public static File profileFile(String outputDirectory, String toolName, String format) {
+		return new File(outputDirectory, toolName + "-profile." + format);
+	}
+
+	/**
+	 * The directory where the call graphs of a benchmark program are written
+	 * (i.e., the -o option used by scripts/run-tool).
+	 * 
+	 * @param base
+	 * @param program
+	 * @return
+	 */
+	public static File callGraphsDirectory(String base, String program) {
+		return Paths.get(base, "callgraphs", Benchmarks.getBenchmark(program), program).toFile();
+	}
+
+	/**
+	 * The file where the batch drivers keep the duration and memory of every
+	 * job they ran (see {@link averroes.experiments.batch.JobHistory}), one
+	 * file per driver (e.g., batch or apk).
+	 * 
+	 * @param base
+	 * @param driver
+	 * @return
+	 */
+	public static File jobHistoryFile(String base, String driver) {
+		return Paths.get(base, "callgraphs", driver + "-history.txt").toFile();
+	}
+
+	/**
+	 * The directory where indexes and other derived data are cached between
+	 * runs.
+	 * 
+	 * @param base
+	 * @return
+	 */
+	public static File cacheDirectory(String base) {
+		return new File(base, "cache");
+	}
+
+	/**
+	 * The directory where instrumented JAR files are cached between runs (see
+	 * {@link InstrumentedJarCache}).
+	 * 
+	 * @param base
+	 * @return
+	 */
+	public static File instrumentedJarCacheDirectory(String base) {
+		return new File(cacheDirectory(base), "instrumented");
+	}
+
+	/**
+	 * The file that lists the dynamically loaded classes of a benchmark
+	 * program (i.e., the -d option used by scripts/run-tool). Like in
+	 * run-tool, it is relative to the working directory, not to the base
+	 * directory.
+	 * 
+	 * @param program
+	 * @return
+	 */
+	public static File dynamicClassesFile(String program) {
+		return Paths.get("benchmarks", Benchmarks.getBenchmark(program), program + ".dyn").toFile();
 	}
 
 	/**
@@ -100,6 +239,60 @@ public class Files {
 				.toFile();
 	}
 
+	/**
+	 * The name of an Android APK (i.e., its file name without the .apk
+	 * extension), which takes the place of the program name for APKs.
+	 * 
+	 * @param apk
+	 * @return
+	 */
+	public static String apkName(File apk) {
+		String name = apk.getName();
+		return name.endsWith(".apk") ? name.substring(0, name.length() - ".apk".length()) : name;
+	}
+
+	/**
+	 * The directory where the call graphs of an Android APK are written.
+	 * 
+	 * @param base
+	 * @param apk
+	 * @return
+	 */
+	public static File apkCallGraphsDirectory(String base, String apk) {
+		return Paths.get(base, "callgraphs", "apk", apk).toFile();
+	}
+
+	/**
+	 * The path to the placeholder library JAR file of an Android APK.
+	 * 
+	 * @return
+	 */
+	public static File apkPlaceholderLibraryJarFile(String base, String apk) {
+		return Paths.get(base, "benchmarks-averroes", "apk", apk, "placeholder-lib.jar").toFile();
+	}
+
+	/**
+	 * The path to the JAR file that contains the single file averroes.Library
+	 * for an Android APK.
+	 * 
+	 * @return
+	 */
+	public static File apkAverroesLibraryClassJarFile(String base, String apk) {
+		return Paths.get(base, "benchmarks-averroes", "apk", apk, "averroes-lib-class.jar").toFile();
+	}
+
+	/**
+	 * The directory where the dex files of the Android APKs are extracted.
+	 * The dex files of an APK are kept in a sub-directory named after the
+	 * hash of its contents.
+	 * 
+	 * @param base
+	 * @return
+	 */
+	public static File dexCacheDirectory(String base) {
+		return new File(cacheDirectory(base), "dex");
+	}
+
 	/**
 	 * The path to the Doop executable
 	 * 
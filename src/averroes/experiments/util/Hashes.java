@@ -0,0 +1,106 @@
+package averroes.experiments.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Content hashes of files (e.g., the JARs of an analysis scope), used as cache
+ * keys. A file is only hashed again if its size or modification time changed
+ * since the last time it was hashed in this run.
+ *
+ */
+public class Hashes {
+
+	private static ConcurrentHashMap<String, Stamped> hashes = new ConcurrentHashMap<String, Stamped>();
+
+	private static class Stamped {
+		private long size;
+		private long lastModified;
+		private String hash;
+
+		private Stamped(long size, long lastModified, String hash) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.hash = hash;
+		}
+	}
+
+	/**
+	 * The SHA-1 of the contents of a file, in hex.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static String sha1(File file) throws IOException {
+		String path = file.getCanonicalPath();
+		long size = file.length();
+		long lastModified = file.lastModified();
+
+		Stamped stamped = hashes.get(path);
+		if (stamped != null && stamped.size == size && stamped.lastModified == lastModified) {
+			return stamped.hash;
+		}
+
+		MessageDigest digest = sha1();
+		byte[] buffer = new byte[1 << 16];
+		try (InputStream in = new FileInputStream(file)) {
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				digest.update(buffer, 0, n);
+			}
+		}
+
+		String hash = hex(digest.digest());
+		hashes.put(path, new Stamped(size, lastModified, hash));
+		return hash;
+	}
+
+	/**
+	 * The SHA-1 of a string, in hex.
+	 *
+	 * @param s
+	 * @return
+	 */
+	public static String sha1(String s) {
+		return hex(sha1().digest(s.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * A key made of the content hashes of the given files, in order. Files
+	 * that do not exist are represented by their path.
+	 *
+	 * @param files
+	 * @return
+	 * @throws IOException
+	 */
+	public static String key(File... files) throws IOException {
+		StringBuilder key = new StringBuilder();
+		for (File file : files) {
+			key.append(file.isFile() ? sha1(file) : file.getPath()).append(';');
+		}
+		return key.toString();
+	}
+
+	private static MessageDigest sha1() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String hex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+}
@@ -0,0 +1,109 @@
+package averroes.experiments.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+
+import com.ibm.wala.shrikeBT.analysis.Analyzer.FailureException;
+import com.ibm.wala.shrikeCT.InvalidClassFileException;
+
+/**
+ * A cache of instrumented JAR files (for the dynamic call graphs), kept on
+ * disk between runs. An instrumented JAR is keyed by the contents of the input
+ * JAR, the contents of the rt.jar it was instrumented against, and the
+ * instrumentation flags.
+ *
+ * Each miss instruments into a private temporary file that is then moved into
+ * place atomically, so concurrent runs never see (or overwrite) a partial JAR.
+ * If two runs miss on the same key, both instrument and the first one to
+ * finish wins.
+ *
+ */
+public class InstrumentedJarCache {
+
+	private File directory;
+
+	/**
+	 * Instruments an input JAR into the given output file.
+	 */
+	public interface Instrumenter {
+		void instrument(File output) throws ClassNotFoundException, IOException, InvalidClassFileException,
+				FailureException;
+	}
+
+	/**
+	 * Construct a new cache in the given directory (e.g.,
+	 * {@link Files#instrumentedJarCacheDirectory(String)}).
+	 *
+	 * @param directory
+	 */
+	public InstrumentedJarCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Get the instrumented version of a JAR, calling the instrumenter only if
+	 * it is not in the cache.
+	 *
+	 * @param input
+	 * @param rt
+	 * @param flags
+	 * @param instrumenter
+	 * @return
+	 * @throws ClassNotFoundException
+	 * @throws IOException
+	 * @throws InvalidClassFileException
+	 * @throws FailureException
+	 */
+	public File get(File input, File rt, List<String> flags, Instrumenter instrumenter)
+			throws ClassNotFoundException, IOException, InvalidClassFileException, FailureException {
+		File cached = new File(directory, key(input, rt, flags) + ".jar");
+		if (cached.isFile()) {
+			System.out.println("Instrumented jar restored from " + cached + " (warm)");
+			return cached;
+		}
+
+		FileUtils.forceMkdir(directory);
+		File tmp = File.createTempFile(input.getName() + "-", ".tmp", directory);
+		try {
+			instrumenter.instrument(tmp);
+			if (!tmp.isFile() || tmp.length() == 0) {
+				throw new IOException("expected to create the instrumented jar " + tmp);
+			}
+			commit(tmp, cached);
+		} finally {
+			FileUtils.deleteQuietly(tmp);
+		}
+
+		System.out.println("Instrumented jar cached at " + cached + " (cold)");
+		return cached;
+	}
+
+	/**
+	 * The cache key of an instrumented JAR.
+	 *
+	 * @param input
+	 * @param rt
+	 * @param flags
+	 * @return
+	 * @throws IOException
+	 */
+	public static String key(File input, File rt, List<String> flags) throws IOException {
+		return Hashes.sha1(Hashes.key(input, rt) + String.join(" ", flags));
+	}
+
+	private static void commit(File tmp, File cached) throws IOException {
+		try {
+			java.nio.file.Files.move(tmp.toPath(), cached.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch (FileAlreadyExistsException e) {
+			// Another run cached the same jar first
+		} catch (AtomicMoveNotSupportedException e) {
+			java.nio.file.Files.move(tmp.toPath(), cached.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package averroes.experiments.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import probe.ProbeMethod;
+
+/**
+ * A dense table of method ids. Every probe method gets the next free int id
+ * the first time it is seen, and keeps it for the rest of the run. Because
+ * the table is shared, the ids of two {@link CompactCallGraph}s can be
+ * compared directly.
+ *
+ * Lookups are lock-free; assigning a new id takes a lock.
+ *
+ */
+public class MethodTable {
+
+	private static MethodTable instance = new MethodTable();
+
+	private ConcurrentHashMap<ProbeMethod, Integer> ids = new ConcurrentHashMap<ProbeMethod, Integer>();
+	private volatile ProbeMethod[] methods = new ProbeMethod[1 << 12];
+	private volatile int size = 0;
+
+	public static MethodTable v() {
+		return instance;
+	}
+
+	/**
+	 * Get the id of a method, assigning a new one if necessary.
+	 *
+	 * @param method
+	 * @return
+	 */
+	public int id(ProbeMethod method) {
+		Integer id = ids.get(method);
+		return id != null ? id : assign(method);
+	}
+
+	/**
+	 * Get the method with the given id.
+	 *
+	 * @param id
+	 * @return
+	 */
+	public ProbeMethod method(int id) {
+		return methods[id];
+	}
+
+	/**
+	 * The number of ids assigned so far. All ids are in [0, size()).
+	 *
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Forget all the ids. Only safe once no {@link CompactCallGraph} of the
+	 * previous run is in use anymore.
+	 */
+	public synchronized void reset() {
+		ids.clear();
+		methods = new ProbeMethod[1 << 12];
+		size = 0;
+	}
+
+	private synchronized int assign(ProbeMethod method) {
+		Integer id = ids.get(method);
+		if (id != null) {
+			return id;
+		}
+
+		if (size == methods.length) {
+			methods = Arrays.copyOf(methods, size * 2);
+		}
+		methods[size] = method;
+		ids.put(method, size);
+		return size++;
+	}
+}
@@ -1,17 +1,12 @@
 package averroes.experiments.util;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.Iterator;
-import java.util.StringTokenizer;
-import java.util.zip.GZIPInputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ToIntFunction;
 
-import org.apache.bcel.classfile.Utility;
-import org.deri.iris.storage.IRelation;
-
-import probe.CallEdge;
 import probe.CallGraph;
 import probe.ObjectManager;
 import probe.ProbeClass;
@@ -22,6 +17,7 @@ import averroes.experiments.options.ExperimentsOptions;
 import com.ibm.wala.classLoader.IMethod;
 import com.ibm.wala.ipa.callgraph.CGNode;
 import com.ibm.wala.ipa.callgraph.impl.BasicCallGraph;
+import com.ibm.wala.types.MethodReference;
 
 /**
  * A utility class for Probe.
@@ -34,58 +30,87 @@ public class ProbeUtils {
 	public static final ProbeMethod LIBRARY_BLOB = ObjectManager.v().getMethod(
 			ObjectManager.v().getClass("averroes.Library"), "blob", "");
 
+	// The kinds of methods when collapsing a call graph
+	private static final byte COLLAPSE_KNOWN = 1;
+	private static final byte COLLAPSE_APP = 2;
+	private static final byte COLLAPSE_IGNORED = 4;
+
 	/**
 	 * Convert the generated Doop call graph to summarized Probe version.
 	 * 
 	 * @return
 	 * @throws IOException
 	 */
-	public static CallGraph convertDoopCallGraph(String doopHome, boolean isAverroes) throws IOException {
-		CallGraph probe = new CallGraph();
-		IRelation edges = ResultImporter.getDoopCallGraphEdges(doopHome);
-		IRelation reflectiveEdges = ResultImporter.getDoopReflectiveCallGraphEdges(doopHome);
-		IRelation entryPoints = ResultImporter.getDoopEntryPoints(doopHome);
-
-		// Create the graph entry points
-		for (int i = 0; i < entryPoints.size(); i++) {
-			String methodSignature = (String) entryPoints.get(i).get(0).getValue();
-			ProbeMethod method = createProbeMethodBySignature(methodSignature);
-			probe.entryPoints().add(method);
-		}
-
-		// Create the edges according to the app_includes parameter
-		for (int i = 0; i < edges.size(); i++) {
-			String srcName = (String) edges.get(i).get(0).getValue();
-			String dstName = (String) edges.get(i).get(2).getValue();
-
-			ProbeMethod src = createProbeMethodBySignature(srcName);
-			ProbeMethod dst = createProbeMethodBySignature(dstName);
-
-			boolean isSrcApp = isApplicationMethod(src);
-			boolean isDstApp = isApplicationMethod(dst);
+	public static CompactCallGraph convertDoopCallGraph(String doopHome, boolean isAverroes) throws IOException {
+		try (Profiler.Phase phase = Profiler.v().start("doop-convert")) {
+			CompactCallGraph.Builder probe = new CompactCallGraph.Builder();
+			MethodTable table = MethodTable.v();
+			int blob = table.id(LIBRARY_BLOB);
+
+			// Create the graph entry points
+			ResultImporter.getDoopEntryPoints(doopHome, (columns, count) -> {
+				// MainMethodDeclaration(?method)
+				checkArity(count, 1);
+				int method = table.id(createProbeMethodBySignature(columns[0]));
+				// The results are scanned in parallel, and the builder is not
+				// thread-safe (the same goes for the consumers below)
+				synchronized (probe) {
+					probe.addEntryPoint(method);
+				}
+			});
 
-			if (isSrcApp && isDstApp) {
-				probe.edges().add(new CallEdge(src, dst));
-			} else if (isSrcApp && !isDstApp) {
-				probe.edges().add(new CallEdge(src, LIBRARY_BLOB));
-			} else if (!isSrcApp && isDstApp) {
-				probe.edges().add(new CallEdge(LIBRARY_BLOB, dst));
-			}
-		}
+			// Create the edges according to the app_includes parameter
+			ResultImporter.getDoopCallGraphEdges(doopHome, (columns, count) -> {
+				// InsensCallGraphEdge(?caller, ?invocation, ?callee)
+				checkArity(count, 3);
+				ProbeMethod src = createProbeMethodBySignature(columns[0]);
+				ProbeMethod dst = createProbeMethodBySignature(columns[2]);
 
-		// Add the reflective edges for anything but DoopAverroes
-		if (!isAverroes) {
-			for (int i = 0; i < reflectiveEdges.size(); i++) {
-				String dstName = (String) reflectiveEdges.get(i).get(1).getValue();
-				ProbeMethod dst = createProbeMethodBySignature(dstName);
+				boolean isSrcApp = isApplicationMethod(src);
+				boolean isDstApp = isApplicationMethod(dst);
 
-				if (isApplicationMethod(dst)) {
-					probe.edges().add(new CallEdge(LIBRARY_BLOB, dst));
+				if (isSrcApp || isDstApp) {
+					int srcId = isSrcApp ? table.id(src) : blob;
+					int dstId = isDstApp ? table.id(dst) : blob;
+					synchronized (probe) {
+						probe.addEdge(srcId, dstId);
+					}
 				}
+			});
+
+			// Add the reflective edges for anything but DoopAverroes
+			if (!isAverroes) {
+				ResultImporter.getDoopReflectiveCallGraphEdges(doopHome, (columns, count) -> {
+					// ReflectiveCallGraphEdge(?invocation, ?callee)
+					checkArity(count, 2);
+					ProbeMethod dst = createProbeMethodBySignature(columns[1]);
+
+					if (isApplicationMethod(dst)) {
+						int dstId = table.id(dst);
+						synchronized (probe) {
+							probe.addEdge(blob, dstId);
+						}
+					}
+				});
 			}
+
+			System.out.println("[Doop] " + SignatureInterner.v());
+			return probe.build();
 		}
+	}
 
-		return probe;
+	/**
+	 * Check that a fact of a Doop results file has as many columns as its
+	 * predicate. The scanner reports the file and the line of a fact that
+	 * does not.
+	 * 
+	 * @param count
+	 * @param arity
+	 */
+	private static void checkArity(int count, int arity) {
+		if (count != arity) {
+			throw new IllegalArgumentException("expected " + arity + " columns, found " + count);
+		}
 	}
 
 	/**
@@ -94,56 +119,55 @@ public class ProbeUtils {
 	 * @param walaCallGraph
 	 * @return
 	 */
-	public static CallGraph convertWalaCallGraph(BasicCallGraph<?> walaCallGraph) {
-		probe.CallGraph probeGraph = new probe.CallGraph();
-
-		CGNode root = walaCallGraph.getFakeRootNode();
-		CGNode clinit = walaCallGraph.getFakeWorldClinitNode();
-
-		// Edges from FakeRootNode are entry points (ignoring the edge
-		// FakeRootNode => FakeWorldClinit)
-		walaCallGraph.getSuccNodes(root).forEachRemaining(node -> {
-			if (!node.equals(clinit)) {
-				probeGraph.entryPoints().add(ProbeUtils.probeMethod(node));
-			}
-		});
-
-		// Edges from FakeWorldClinit are entry points
-		walaCallGraph.getSuccNodes(clinit).forEachRemaining(node -> {
-			probeGraph.entryPoints().add(ProbeUtils.probeMethod(node));
-		});
-
-		// // Get the entry points
-		// for (CGNode entrypoint : walaCallGraph.getEntrypointNodes()) {
-		// probeGraph.entryPoints().add(ProbeUtils.probeMethod(entrypoint));
-		// }
-		//
-		// // Edges from fake root clinit node are also entry points
-		// Iterator<CGNode> moreEntryPoints =
-		// walaCallGraph.getSuccNodes(clinit);
-		// while (moreEntryPoints.hasNext()) {
-		// CGNode node = moreEntryPoints.next();
-		// ProbeMethod dst = ProbeUtils.probeMethod(node);
-		// probeGraph.entryPoints().add(dst);
-		// }
-
-		// Get the edges
-		for (CGNode node : walaCallGraph) {
-			// Ignore edges from FakeRootNode and FakeWorldClinit.
-			// They have already been added as entry points.
-			if (!node.equals(root) && !node.equals(clinit)) {
-				Iterator<CGNode> successors = walaCallGraph.getSuccNodes(node);
-				ProbeMethod src = ProbeUtils.probeMethod(node);
-
-				while (successors.hasNext()) {
-					CGNode succ = successors.next();
-					ProbeMethod dst = ProbeUtils.probeMethod(succ);
-					probeGraph.edges().add(new CallEdge(src, dst));
+	public static CompactCallGraph convertWalaCallGraph(BasicCallGraph<?> walaCallGraph) {
+		try (Profiler.Phase phase = Profiler.v().start("wala-convert")) {
+			CompactCallGraph.Builder probeGraph = new CompactCallGraph.Builder();
+			MethodTable table = MethodTable.v();
+
+			CGNode root = walaCallGraph.getFakeRootNode();
+			CGNode clinit = walaCallGraph.getFakeWorldClinitNode();
+
+			// Each node is converted once (by graph node id), and all the context
+			// clones of a method share the probe method of its reference
+			int[] ids = new int[walaCallGraph.getMaxNumber() + 1];
+			Arrays.fill(ids, -1);
+			Map<MethodReference, Integer> references = new HashMap<MethodReference, Integer>();
+			ToIntFunction<CGNode> id = node -> {
+				int number = node.getGraphNodeId();
+				if (ids[number] < 0) {
+					ids[number] = references.computeIfAbsent(node.getMethod().getReference(),
+							reference -> table.id(probeMethod(reference)));
+				}
+				return ids[number];
+			};
+
+			// Edges from FakeRootNode are entry points (ignoring the edge
+			// FakeRootNode => FakeWorldClinit)
+			walaCallGraph.getSuccNodes(root).forEachRemaining(node -> {
+				if (!node.equals(clinit)) {
+					probeGraph.addEntryPoint(id.applyAsInt(node));
+				}
+			});
+
+			// Edges from FakeWorldClinit are entry points
+			walaCallGraph.getSuccNodes(clinit).forEachRemaining(node -> {
+				probeGraph.addEntryPoint(id.applyAsInt(node));
+			});
+
+			// Get the edges, projected to methods. The builder removes the
+			// duplicates that come from context clones.
+			for (CGNode node : walaCallGraph) {
+				// Ignore edges from FakeRootNode and FakeWorldClinit.
+				// They have already been added as entry points.
+				if (!node.equals(root) && !node.equals(clinit)) {
+					int src = id.applyAsInt(node);
+					walaCallGraph.getSuccNodeNumbers(node).foreach(
+							succ -> probeGraph.addEdge(src, id.applyAsInt(walaCallGraph.getNode(succ))));
 				}
 			}
-		}
 
-		return probeGraph;
+			return probeGraph.build();
+		}
 	}
 
 	/**
@@ -154,84 +178,81 @@ public class ProbeUtils {
 	 * @return
 	 * @throws IOException
 	 */
-	public static CallGraph convertWalaDynamicCallGraph(String dynamicCGFile) throws IOException {
-		BufferedReader dynamicEdgesFile = new BufferedReader(new InputStreamReader(new GZIPInputStream(
-				new FileInputStream(dynamicCGFile))));
-		probe.CallGraph probecg = new CallGraph();
-		String line;
-		
-		while ((line = dynamicEdgesFile.readLine()) != null) {
-			StringTokenizer edge = new StringTokenizer(line, "\t");
-			String callerClass = edge.nextToken();
-
-			// Lines that start with "root" or "clinit" are entry points
-			if ("root".equals(callerClass) || "clinit".equals(callerClass)) {
-				String cls = edge.nextToken().replaceAll("/", ".");
-				String subSig = edge.nextToken();
-				probecg.entryPoints().add(probeMethod(cls, subSig));
-			} else if ("callbacks".equals(callerClass)) { // a callback from the
-															// java standard
-															// library
-				String cls = edge.nextToken().replaceAll("/", ".");
-				String subSig = edge.nextToken();
-				probecg.edges().add(new CallEdge(LIBRARY_BLOB, probeMethod(cls, subSig)));
-			} else if (line.startsWith("call to ")){
-				// Mark the reset point and read the next line
-				dynamicEdgesFile.mark(1000);
-				String next = dynamicEdgesFile.readLine();
-				
-				/* 
-				 * Read the next line, if it's "return from", that means we are
-				 * calling into the standard library and should generate an edge
-				 * to the library blob. Otherwise, put back whatever bytes we 
-				 * previously read and continue processing the file. 
-				 */
-				if(next != null && next.startsWith("return from ")) {
-					// generate edge to library blob
-					line = line.replace("call to ", "");
-					StringTokenizer callToLine = new StringTokenizer(line, "\t");
-					String callToClass = callToLine.nextToken().replaceAll("/", ".");;
-					String callToSubSig = callToLine.nextToken();
-					
-					next = next.replace("return from ", "");
-					StringTokenizer returnFromLine = new StringTokenizer(next, "\t");
-					String returnFromClass = returnFromLine.nextToken().replaceAll("/", ".");;
-					String returnFromSubSig = returnFromLine.nextToken();
-					
-					// we should check that the caller/callee pair in "return from" matches that of "call to"
-					if(callToClass.equals(returnFromClass) && callToSubSig.equals(returnFromSubSig)) {
-						ProbeMethod src = probeMethod(callToClass, callToSubSig);
-						probecg.edges().add(new CallEdge(src, LIBRARY_BLOB));
-						
-//						if (src.cls().toString().equals("org.apache.lucene.analysis.standard.Token")
-//								&& src.name().equals("newToken")) {
-//							System.out.println("implicit call to library");
-//							System.out.println(line);
-//							System.out.println(next);
-//						}
+	public static CompactCallGraph convertWalaDynamicCallGraph(String dynamicCGFile) throws IOException {
+		return convertWalaDynamicCallGraph(WalaTraceParser.open(dynamicCGFile), false);
+	}
+
+	/**
+	 * Convert the trace read by the given parser as it arrives (e.g., from a
+	 * pipe). If collapse is set, every edge is collapsed (see
+	 * {@link #collapse(CompactCallGraph)}) as soon as it is read, so the edges
+	 * within the library are never stored.
+	 * 
+	 * @param parser
+	 * @param collapse
+	 * @return
+	 * @throws IOException
+	 */
+	public static CompactCallGraph convertWalaDynamicCallGraph(WalaTraceParser parser, boolean collapse)
+			throws IOException {
+		try (Profiler.Phase phase = Profiler.v().start("dynamic-convert")) {
+			CompactCallGraph.Builder probecg = new CompactCallGraph.Builder();
+			int blob = MethodTable.v().id(LIBRARY_BLOB);
+			Collapser collapser = collapse ? new Collapser(blob) : null;
+
+			// Each distinct method in the trace is converted to a probe method once
+			IntUnaryOperator id = new IntUnaryOperator() {
+				private int[] ids = new int[0];
+
+				@Override
+				public int applyAsInt(int method) {
+					if (method >= ids.length) {
+						int length = ids.length;
+						ids = Arrays.copyOf(ids, (method + 1) * 2);
+						Arrays.fill(ids, length, ids.length, -1);
 					}
-				} else {
-					dynamicEdgesFile.reset();
+					if (ids[method] < 0) {
+						ids[method] = MethodTable.v().id(probeMethod(parser.className(method), parser.subsignature(method)));
+					}
+					return ids[method];
 				}
-				
-			} else if (line.startsWith("return from ")){
-				// ignore such lines
-			} else { // a normal edge
-				String callerSubSig = edge.nextToken();
-				String calleeClass = edge.nextToken().replaceAll("/", ".");
-				String calleeSubSig = edge.nextToken();
-				callerClass = callerClass.replaceAll("/", ".");
-
-				ProbeMethod src = probeMethod(callerClass, callerSubSig);
-				ProbeMethod dst = probeMethod(calleeClass, calleeSubSig);
-				probecg.edges().add(new CallEdge(src, dst));
-			}
+			};
 
-		}
+			parser.parse(new WalaTraceParser.Listener() {
+				@Override
+				public void entryPoint(int method) {
+					probecg.addEntryPoint(id.applyAsInt(method));
+				}
 
-		dynamicEdgesFile.close();
+				@Override
+				public void callback(int method) {
+					// a callback from the java standard library
+					add(blob, id.applyAsInt(method));
+				}
+
+				@Override
+				public void libraryCall(int method) {
+					// a "call to" followed by its "return from": a call into the
+					// java standard library
+					add(id.applyAsInt(method), blob);
+				}
 
-		return probecg;
+				@Override
+				public void edge(int src, int dst) {
+					add(id.applyAsInt(src), id.applyAsInt(dst));
+				}
+
+				private void add(int src, int dst) {
+					if (collapser == null) {
+						probecg.addEdge(src, dst);
+					} else {
+						collapser.addEdge(probecg, src, dst);
+					}
+				}
+			});
+
+			return probecg.build();
+		}
 	}
 
 	/**
@@ -242,41 +263,91 @@ public class ProbeUtils {
 	 * @return
 	 */
 	public static CallGraph collapse(CallGraph probe) {
-		CallGraph result = new CallGraph();
-
-		// Add the entry points
-		probe.entryPoints().forEach(entry -> result.entryPoints().add(entry));
-
-		// Getting the correct placement for each edge
-		// Note: If both src and dst of an edge are in the library, ignore it.
-		for (CallEdge edge : probe.edges()) {
-			ProbeMethod src = edge.src();
-			ProbeMethod dst = edge.dst();
-
-			/*
-			 * We don't care about the following edges (primarily used for
-			 * converting dynamic call graphs) 1) edges to <clinit> methods 2)
-			 * edges to java.lang.ClassLoader:
-			 * loadClassInternal(Ljava/lang/String;) 3) edges to
-			 * java.lang.ClassLoader:
-			 * checkPackageAccess(Ljava/lang/Class;Ljava/security
-			 * /ProtectionDomain;)
-			 */
-			if (!isClinit(dst) && !isLoadClassInternal(dst) && !isCheckPackageAccess(dst)) {
-				boolean isSrcApp = isApplicationMethod(src);
-				boolean isDstApp = isApplicationMethod(dst);
+		return collapse(CompactCallGraph.fromProbe(probe)).toProbeCallGraph();
+	}
+
+	/**
+	 * Collapse the given call graph to an averroes call graph that summarizes
+	 * the library in one blob.
+	 * 
+	 * @param probe
+	 * @return
+	 */
+	public static CompactCallGraph collapse(CompactCallGraph probe) {
+		try (Profiler.Phase phase = Profiler.v().start("collapse")) {
+			CompactCallGraph.Builder result = new CompactCallGraph.Builder();
+			Collapser collapser = new Collapser(MethodTable.v().id(LIBRARY_BLOB));
+
+			// Add the entry points
+			for (int entry : probe.entryPoints()) {
+				result.addEntryPoint(entry);
+			}
+
+			for (int src = 0; src < probe.methodBound(); src++) {
+				for (int e = probe.firstEdge(src); e < probe.endEdge(src); e++) {
+					collapser.addEdge(result, src, probe.target(e));
+				}
+			}
+
+			return result.build();
+		}
+	}
+
+	/**
+	 * Collapses edges one at a time. The kind of each method is computed once
+	 * (see COLLAPSE_*).
+	 */
+	private static class Collapser {
+		private MethodTable table = MethodTable.v();
+		private int blob;
+		private byte[] kinds = new byte[table.size()];
+
+		private Collapser(int blob) {
+			this.blob = blob;
+		}
+
+		/**
+		 * Add the collapsed version of an edge, if any, to the given call graph.
+		 * Note: If both src and dst of an edge are in the library, ignore it.
+		 */
+		private void addEdge(CompactCallGraph.Builder result, int src, int dst) {
+			int dstKind = kind(dst);
+
+			if ((dstKind & COLLAPSE_IGNORED) == 0) {
+				boolean isSrcApp = (kind(src) & COLLAPSE_APP) != 0;
+				boolean isDstApp = (dstKind & COLLAPSE_APP) != 0;
 
 				if (isSrcApp && isDstApp) {
-					result.edges().add(edge);
+					result.addEdge(src, dst);
 				} else if (isSrcApp && !isDstApp) {
-					result.edges().add(new CallEdge(src, LIBRARY_BLOB));
+					result.addEdge(src, blob);
 				} else if (!isSrcApp && isDstApp) {
-					result.edges().add(new CallEdge(LIBRARY_BLOB, dst));
+					result.addEdge(blob, dst);
 				}
 			}
 		}
 
-		return result;
+		private int kind(int m) {
+			if (m >= kinds.length) {
+				kinds = Arrays.copyOf(kinds, java.lang.Math.max(m + 1, table.size()));
+			}
+			if (kinds[m] == 0) {
+				ProbeMethod method = table.method(m);
+				/*
+				 * We don't care about the following edges (primarily used for
+				 * converting dynamic call graphs) 1) edges to <clinit> methods
+				 * 2) edges to java.lang.ClassLoader:
+				 * loadClassInternal(Ljava/lang/String;) 3) edges to
+				 * java.lang.ClassLoader:
+				 * checkPackageAccess(Ljava/lang/Class;Ljava/security
+				 * /ProtectionDomain;)
+				 */
+				boolean ignored = isClinit(method) || isLoadClassInternal(method) || isCheckPackageAccess(method);
+				kinds[m] = (byte) (COLLAPSE_KNOWN | (isApplicationMethod(method) ? COLLAPSE_APP : 0) | (ignored ? COLLAPSE_IGNORED
+						: 0));
+			}
+			return kinds[m];
+		}
 	}
 
 	/**
@@ -286,13 +357,7 @@ public class ProbeUtils {
 	 * @return
 	 */
 	public static ProbeMethod createProbeMethodBySignature(String methodSignature) {
-		String methodDeclaringClass = sootSignatureToMethodDeclaringClass(methodSignature);
-		String name = sootSignatureToMethodName(methodSignature);
-		String bcSig = sootSignatureToMethodArguments(methodSignature, true);
-
-		ProbeClass cls = ObjectManager.v().getClass(methodDeclaringClass);
-
-		return ObjectManager.v().getMethod(cls, name, bcSig);
+		return SignatureInterner.v().probeMethod(methodSignature);
 	}
 
 	/**
@@ -303,21 +368,8 @@ public class ProbeUtils {
 	 * @return
 	 */
 	public static String sootSignatureToMethodArguments(String sootSignature, boolean isInBCFormat) {
-		String sub = signatureToSubsignature(sootSignature);
-		String args = sub.substring(sub.indexOf('(') + 1, sub.indexOf(')'));
-
-		if (isInBCFormat) {
-			StringBuffer buffer = new StringBuffer();
-			StringTokenizer strTok = new StringTokenizer(args, ",");
-
-			while (strTok.hasMoreTokens()) {
-				buffer.append(Utility.getSignature(strTok.nextToken().trim()));
-			}
-
-			return buffer.toString();
-		} else {
-			return args;
-		}
+		SootSignature sig = SignatureInterner.v().signature(sootSignature);
+		return isInBCFormat ? sig.bytecodeArguments() : sig.arguments();
 	}
 
 	/**
@@ -328,62 +380,28 @@ public class ProbeUtils {
 	 * @return
 	 */
 	public static String sootSignatureToMethodReturnType(String sootSignature, boolean isInBCFormat) {
-		String sub = signatureToSubsignature(sootSignature);
-		String type = sub.substring(0, sub.indexOf(" "));
-
-		return isInBCFormat ? Utility.getSignature(type) : type;
+		SootSignature sig = SignatureInterner.v().signature(sootSignature);
+		return isInBCFormat ? sig.bytecodeReturnType() : sig.returnType();
 	}
 
 	/**
-	 * Get the declaring class of a method given its signature. Note: I copied
-	 * this as is from soot.Scene because I don't want to depend on the Scene
-	 * for this utility method.
+	 * Get the declaring class of a method given its signature.
 	 * 
 	 * @param sootSignature
 	 * @return
 	 */
 	public static String sootSignatureToMethodDeclaringClass(String sootSignature) {
-		if (sootSignature.charAt(0) != '<') {
-			throw new RuntimeException("oops " + sootSignature);
-		}
-
-		if (sootSignature.charAt(sootSignature.length() - 1) != '>') {
-			throw new RuntimeException("oops " + sootSignature);
-		}
-
-		int index = sootSignature.indexOf(":");
-
-		if (index < 0) {
-			throw new RuntimeException("oops " + sootSignature);
-		}
-
-		return sootSignature.substring(1, index);
+		return SignatureInterner.v().signature(sootSignature).declaringClass();
 	}
 
 	/**
-	 * Get the subsignature of a method given its signature. Note: I copied this
-	 * as is from soot.Scene because I don't want to depend on the Scene for
-	 * this utility method.
+	 * Get the subsignature of a method given its signature.
 	 * 
 	 * @param sootSignature
 	 * @return
 	 */
 	public static String signatureToSubsignature(String sootSignature) {
-		if (sootSignature.charAt(0) != '<') {
-			throw new RuntimeException("oops " + sootSignature);
-		}
-
-		if (sootSignature.charAt(sootSignature.length() - 1) != '>') {
-			throw new RuntimeException("oops " + sootSignature);
-		}
-
-		int index = sootSignature.indexOf(":");
-
-		if (index < 0) {
-			throw new RuntimeException("oops " + sootSignature);
-		}
-
-		return sootSignature.substring(index + 2, sootSignature.length() - 1);
+		return SignatureInterner.v().signature(sootSignature).subsignature();
 	}
 
 	/**
@@ -393,9 +411,7 @@ public class ProbeUtils {
 	 * @return
 	 */
 	public static String sootSignatureToMethodName(String sootSignature) {
-		String sub = signatureToSubsignature(sootSignature);
-		String name = sub.substring(sub.indexOf(" ") + 1, sub.indexOf('('));
-		return name;
+		return SignatureInterner.v().signature(sootSignature).name();
 	}
 
 	/**
@@ -405,20 +421,7 @@ public class ProbeUtils {
 	 * @return
 	 */
 	public static String sootSignatureToBytecodeSignature(String sootSignature) {
-		String cls = sootSignatureToMethodDeclaringClass(sootSignature);
-		String name = sootSignatureToMethodName(sootSignature);
-		String args = sootSignatureToMethodArguments(sootSignature, true);
-		String ret = sootSignatureToMethodReturnType(sootSignature, true);
-
-		StringBuffer buffer = new StringBuffer();
-		buffer.append("<");
-		buffer.append(cls + ": ");
-		buffer.append(name);
-		buffer.append("(" + args + ")");
-		buffer.append(ret);
-		buffer.append(">");
-
-		return buffer.toString();
+		return SignatureInterner.v().signature(sootSignature).bytecodeSignature();
 	}
 
 	/**
@@ -474,22 +477,27 @@ public class ProbeUtils {
 	 * @return
 	 */
 	public static ProbeMethod probeMethod(IMethod method) {
+		return probeMethod(method.getReference());
+	}
+
+	/**
+	 * Get a probe method from a WALA method reference.
+	 * 
+	 * @param reference
+	 * @return
+	 */
+	public static ProbeMethod probeMethod(MethodReference reference) {
 		/*
 		 * A method that has the following signature java.lang.Object.<init>()V
 		 * has declaring class = java.lang.Object, name = <init>, and descriptor
 		 * = ()
 		 */
-		String signature = method.getSignature();
-		int leftBracket = signature.indexOf('(');
-		int rightBracket = signature.lastIndexOf(')');
-		int dot = signature.substring(0, leftBracket).lastIndexOf('.');
-
-		String decCls = signature.substring(0, dot);
-		String name = method.getName().toString();
-		String descriptor = signature.substring(leftBracket + 1, rightBracket);
+		String decCls = reference.getDeclaringClass().getName().toString().substring(1).replace('/', '.');
+		String name = reference.getName().toString();
+		String descriptor = reference.getDescriptor().toString();
 		ProbeClass cls = ObjectManager.v().getClass(decCls);
 
-		return ObjectManager.v().getMethod(cls, name, descriptor);
+		return ObjectManager.v().getMethod(cls, name, descriptor.substring(1, descriptor.lastIndexOf(')')));
 	}
 
 	public static boolean isClinit(ProbeMethod method) {
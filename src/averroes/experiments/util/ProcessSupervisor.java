@@ -0,0 +1,336 @@
+package averroes.experiments.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs an external process (e.g., Doop or an instrumented benchmark) and
+ * watches it until it finishes. Its stdout and stderr are pumped concurrently
+ * (so the child never blocks on a full pipe) into a buffered log file, and
+ * optionally echoed to System.out and System.err. The process is killed, with
+ * all its descendants, once it goes over its timeout.
+ *
+ * While the process runs, the CPU time and resident set size of its whole
+ * process tree are sampled from /proc every
+ * -Daverroes.sampleInterval milliseconds (1000 by default). On systems
+ * without /proc, the process still runs but its CPU time and RSS are
+ * reported as -1.
+ *
+ */
+public class ProcessSupervisor {
+
+	public static final long SAMPLE_INTERVAL = Long.getLong("averroes.sampleInterval", 1000);
+
+	// USER_HZ, the unit of the CPU times in /proc/<pid>/stat, is 100 on Linux
+	private static final long TICKS_PER_SECOND = 100;
+
+	private String name;
+	private List<String> command;
+	private File log;
+	private boolean echo;
+	private long timeout;
+	private File directory;
+
+	// Updated by the sampler thread
+	private long pid = -1;
+	private volatile long cpuTicks = -1;
+	private volatile long peakRss = -1;
+	private volatile List<Long> tree = new ArrayList<Long>();
+	private int samples = 0;
+
+	// Set by destroy(), possibly from another thread
+	private volatile Process process;
+	private volatile boolean destroyed = false;
+
+	/**
+	 * Construct a new supervisor.
+	 *
+	 * @param name
+	 *            the name of the step, used in the metrics
+	 * @param command
+	 * @param log
+	 *            the file the output of the process is written to, or null
+	 * @param echo
+	 *            also copy the output to System.out (stdout) and System.err
+	 *            (stderr)?
+	 * @param timeout
+	 *            in milliseconds, 0 means no timeout
+	 */
+	public ProcessSupervisor(String name, List<String> command, File log, boolean echo, long timeout) {
+		this(name, command, log, echo, timeout, null);
+	}
+
+	/**
+	 * Construct a new supervisor for a process that runs in the given working
+	 * directory (null means the working directory of this JVM).
+	 *
+	 * @param name
+	 * @param command
+	 * @param log
+	 * @param echo
+	 * @param timeout
+	 * @param directory
+	 */
+	public ProcessSupervisor(String name, List<String> command, File log, boolean echo, long timeout,
+			File directory) {
+		this.name = name;
+		this.command = command;
+		this.log = log;
+		this.echo = echo;
+		this.timeout = timeout;
+		this.directory = directory;
+	}
+
+	/**
+	 * Run the process and wait for it to finish (or time out).
+	 *
+	 * @return
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public RunMetrics.Step run() throws IOException, InterruptedException {
+		System.out.println("Spawning process " + command);
+		Writer writer = log == null ? null : new BufferedWriter(new OutputStreamWriter(new FileOutputStream(log),
+				StandardCharsets.UTF_8), 1 << 16);
+
+		long start = System.currentTimeMillis();
+		Process p = new ProcessBuilder(command).directory(directory).start();
+		pid = pid(p);
+		process = p;
+		if (destroyed) {
+			kill(p);
+		}
+
+		Thread stdout = pump(p.getInputStream(), writer, echo ? System.out : null);
+		Thread stderr = pump(p.getErrorStream(), writer, echo ? System.err : null);
+
+		ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, name + "-sampler");
+			t.setDaemon(true);
+			return t;
+		});
+		if (pid > 0 && new File("/proc/self/stat").exists()) {
+			sampler.scheduleAtFixedRate(this::sample, 0, SAMPLE_INTERVAL, TimeUnit.MILLISECONDS);
+		}
+
+		boolean timedOut = false;
+		try {
+			if (timeout > 0) {
+				timedOut = !p.waitFor(timeout, TimeUnit.MILLISECONDS);
+			} else {
+				p.waitFor();
+			}
+		} finally {
+			sampler.shutdownNow();
+			sampler.awaitTermination(SAMPLE_INTERVAL, TimeUnit.MILLISECONDS);
+			if (timedOut || p.isAlive()) {
+				kill(p);
+			}
+
+			// The pumps stop at the end of the streams. Do not wait forever in
+			// case an orphaned grandchild still holds the pipes.
+			stdout.join(5000);
+			stderr.join(5000);
+			if (writer != null) {
+				synchronized (writer) {
+					writer.close();
+				}
+			}
+		}
+		long wallMillis = System.currentTimeMillis() - start;
+
+		if (timedOut) {
+			System.out.println("Process " + name + " timed out after " + timeout / 1000.0 + " seconds");
+		}
+		return new RunMetrics.Step(name, timedOut ? -1 : p.exitValue(), timedOut, wallMillis, cpuTicks < 0 ? -1
+				: cpuTicks * 1000 / TICKS_PER_SECOND, peakRss, samples);
+	}
+
+	/**
+	 * Kill the process (and its descendants) from another thread, e.g. when
+	 * nobody reads its output anymore. If the process has not started yet, it
+	 * is killed as soon as it starts. run() then returns a failed step.
+	 *
+	 * @throws InterruptedException
+	 */
+	public void destroy() throws InterruptedException {
+		destroyed = true;
+		Process p = process;
+		if (p != null) {
+			kill(p);
+		}
+	}
+
+	/**
+	 * Copy the lines of a stream to the log (and echo) on a new thread.
+	 */
+	private Thread pump(InputStream in, Writer writer, PrintStream echo) {
+		Thread t = new Thread(() -> {
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (writer != null) {
+						synchronized (writer) {
+							writer.write(line);
+							writer.write('\n');
+						}
+					}
+					if (echo != null) {
+						echo.println(line);
+					}
+				}
+			} catch (IOException e) {
+				// The stream was closed under us (e.g., the process was killed)
+			}
+		}, name + "-pump");
+		t.setDaemon(true);
+		t.start();
+		return t;
+	}
+
+	/**
+	 * Sample the CPU time and RSS of the process and all its descendants.
+	 */
+	private void sample() {
+		Map<Long, List<Long>> children = new HashMap<Long, List<Long>>();
+		Map<Long, long[]> stats = new HashMap<Long, long[]>();
+
+		File[] procs = new File("/proc").listFiles();
+		if (procs == null) {
+			return;
+		}
+		for (File proc : procs) {
+			if (!Character.isDigit(proc.getName().charAt(0))) {
+				continue;
+			}
+			long[] stat = stat(proc);
+			if (stat != null) {
+				long id = Long.parseLong(proc.getName());
+				stats.put(id, stat);
+				children.computeIfAbsent(stat[0], k -> new ArrayList<Long>()).add(id);
+			}
+		}
+
+		if (!stats.containsKey(pid)) {
+			return;
+		}
+
+		// Walk the tree under the process
+		List<Long> members = new ArrayList<Long>();
+		Deque<Long> work = new ArrayDeque<Long>();
+		work.add(pid);
+		long cpu = 0;
+		long rss = 0;
+		while (!work.isEmpty()) {
+			long id = work.poll();
+			long[] stat = stats.get(id);
+			if (stat == null) {
+				continue;
+			}
+			members.add(id);
+			cpu += stat[1];
+			rss += rss(id);
+			work.addAll(children.getOrDefault(id, new ArrayList<Long>()));
+		}
+
+		tree = members;
+		cpuTicks = java.lang.Math.max(cpuTicks, cpu);
+		peakRss = java.lang.Math.max(peakRss, rss);
+		samples++;
+	}
+
+	/**
+	 * Read the parent id and the CPU time (utime + stime + cutime + cstime, in
+	 * ticks) of a process from /proc/[pid]/stat.
+	 */
+	private static long[] stat(File proc) {
+		try {
+			String stat = new String(java.nio.file.Files.readAllBytes(new File(proc, "stat").toPath()),
+					StandardCharsets.US_ASCII);
+			// The command name is in parentheses and may contain spaces
+			String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+			long ppid = Long.parseLong(fields[1]);
+			long cpu = Long.parseLong(fields[11]) + Long.parseLong(fields[12]) + Long.parseLong(fields[13])
+					+ Long.parseLong(fields[14]);
+			return new long[] { ppid, cpu };
+		} catch (IOException | RuntimeException e) {
+			// The process exited while we were reading it
+			return null;
+		}
+	}
+
+	/**
+	 * Read the resident set size (in bytes) of a process from
+	 * /proc/[pid]/status.
+	 */
+	private static long rss(long pid) {
+		try {
+			for (String line : java.nio.file.Files.readAllLines(Paths.get("/proc", Long.toString(pid), "status"),
+					StandardCharsets.US_ASCII)) {
+				if (line.startsWith("VmRSS:")) {
+					return Long.parseLong(line.substring(6).replace("kB", "").trim()) << 10;
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			// The process exited while we were reading it
+		}
+		return 0;
+	}
+
+	/**
+	 * Kill the process and the descendants found by the last sample, all at
+	 * once so that the process cannot react to its children dying.
+	 */
+	private void kill(Process p) throws InterruptedException {
+		List<String> kill = new ArrayList<String>();
+		kill.add("kill");
+		kill.add("-KILL");
+		tree.forEach(id -> kill.add(Long.toString(id)));
+		if (kill.size() > 2) {
+			try {
+				new ProcessBuilder(kill).start().waitFor();
+			} catch (IOException e) {
+				// No kill command, only the process itself is killed
+			}
+		}
+		p.destroyForcibly().waitFor();
+	}
+
+	/**
+	 * The id of a process, or -1 if it is not available. Process.pid() only
+	 * exists since Java 9, before that the id is a private field.
+	 */
+	private static long pid(Process p) {
+		try {
+			return (Long) Process.class.getMethod("pid").invoke(p);
+		} catch (ReflectiveOperationException e) {
+			try {
+				Field field = p.getClass().getDeclaredField("pid");
+				field.setAccessible(true);
+				return field.getLong(p);
+			} catch (ReflectiveOperationException | RuntimeException e2) {
+				return -1;
+			}
+		}
+	}
+}
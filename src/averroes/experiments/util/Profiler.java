@@ -0,0 +1,409 @@
+package averroes.experiments.util;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Profiles the phases of a run (e.g., class loading, Spark propagation, the
+ * conversion to a probe call graph, collapsing, writing the call graph).
+ *
+ * A phase is started with {@link #start(String)} and stopped with
+ * {@link Phase#stop()} (or try-with-resources). It records its wall time, the
+ * CPU time and the bytes allocated by the thread that runs it, the CPU time
+ * of the whole process (which includes helper threads), and the collections
+ * and collection time of the garbage collectors. The collectors are shared by
+ * all the threads, so phases that run concurrently see the same collections.
+ *
+ * Phases started while another phase of the same thread is running are
+ * nested in it (e.g., "convert" started within "spark" is "spark/convert").
+ * Phases can run on any number of threads at the same time.
+ *
+ * A run can also be tagged with how it was configured (e.g., the Spark
+ * profile), and the peak heap of the run is written with its phases.
+ *
+ */
+public class Profiler {
+
+	private static Profiler instance = new Profiler();
+
+	private static ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	private static OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+	private static List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+	private static List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+			.filter(pool -> pool.getType() == MemoryType.HEAP).collect(Collectors.toList());
+
+	private volatile long start = System.nanoTime();
+	private List<Record> records = new ArrayList<Record>();
+	private Map<String, String> tags = new LinkedHashMap<String, String>();
+
+	// The phases running on each thread, innermost first
+	private volatile ThreadLocal<Deque<Phase>> running = ThreadLocal.withInitial(ArrayDeque::new);
+
+	static {
+		if (threads.isThreadCpuTimeSupported() && !threads.isThreadCpuTimeEnabled()) {
+			threads.setThreadCpuTimeEnabled(true);
+		}
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+			if (bean.isThreadAllocatedMemorySupported() && !bean.isThreadAllocatedMemoryEnabled()) {
+				bean.setThreadAllocatedMemoryEnabled(true);
+			}
+		}
+	}
+
+	public static Profiler v() {
+		return instance;
+	}
+
+	/**
+	 * Start a phase on the current thread.
+	 *
+	 * @param name
+	 * @return
+	 */
+	public Phase start(String name) {
+		Deque<Phase> stack = running.get();
+		Phase phase = new Phase(stack.isEmpty() ? name : stack.peek().path + "/" + name);
+		stack.push(phase);
+		return phase;
+	}
+
+	/**
+	 * The wall time since the start of the run, in seconds.
+	 *
+	 * @return
+	 */
+	public double elapsedTime() {
+		return seconds(System.nanoTime() - start);
+	}
+
+	/**
+	 * Forget the phases of the previous run, and restart the clock of
+	 * {@link #elapsedTime()}.
+	 */
+	public synchronized void reset() {
+		start = System.nanoTime();
+		records.clear();
+		tags.clear();
+		heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+		// Forget the phases a failed run left running
+		running = ThreadLocal.withInitial(ArrayDeque::new);
+	}
+
+	/**
+	 * The phases stopped so far, in the order they were stopped.
+	 *
+	 * @return
+	 */
+	public synchronized List<Record> records() {
+		return new ArrayList<Record>(records);
+	}
+
+	private synchronized void add(Record record) {
+		records.add(record);
+	}
+
+	/**
+	 * Tag the run with a setting or a measurement (e.g., "spark-profile").
+	 * Tagging a key again replaces its value.
+	 *
+	 * @param key
+	 * @param value
+	 */
+	public synchronized void tag(String key, Object value) {
+		tags.put(key, String.valueOf(value));
+	}
+
+	/**
+	 * The tags of the run, in the order they were first set.
+	 *
+	 * @return
+	 */
+	public synchronized Map<String, String> tags() {
+		return new LinkedHashMap<String, String>(tags);
+	}
+
+	/**
+	 * The peak heap in use since the last {@link #reset()} (or the start of
+	 * the JVM), in bytes. This is the sum of the peaks of the heap pools,
+	 * which may have been reached at different times, so it is an upper
+	 * bound. It is -1 if the JVM does not report its heap pools.
+	 *
+	 * @return
+	 */
+	public static long peakHeap() {
+		return heapPools.isEmpty() ? -1 : heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+	}
+
+	/**
+	 * Write the phases as comma-separated values, one row per phase.
+	 *
+	 * @param file
+	 * @throws FileNotFoundException
+	 */
+	public synchronized void writeCsv(File file) throws FileNotFoundException {
+		try (PrintStream out = new PrintStream(file)) {
+			out.println("phase,thread,start(ms),wall(ms),thread cpu(ms),process cpu(ms),allocated(bytes),gc count,gc time(ms)");
+			for (Record r : records) {
+				out.println(String.join(",", "\"" + r.phase + "\"", "\"" + r.thread + "\"",
+						String.valueOf(r.startMillis), String.valueOf(r.wallMillis), String.valueOf(r.threadCpuMillis),
+						String.valueOf(r.processCpuMillis), String.valueOf(r.allocatedBytes),
+						String.valueOf(r.gcCount), String.valueOf(r.gcMillis)));
+			}
+		}
+	}
+
+	/**
+	 * Write the phases as a JSON object with one entry per phase, along with
+	 * the peak heap and the tags of the run.
+	 *
+	 * @param file
+	 * @throws FileNotFoundException
+	 */
+	public synchronized void writeJson(File file) throws FileNotFoundException {
+		try (PrintStream out = new PrintStream(file)) {
+			out.println("{");
+			out.println("  \"total(ms)\": " + (System.nanoTime() - start) / 1000000 + ",");
+			out.println("  \"peak heap(bytes)\": " + peakHeap() + ",");
+			out.println("  \"tags\": {" + tags.entrySet().stream()
+					.map(e -> "\"" + escape(e.getKey()) + "\": \"" + escape(e.getValue()) + "\"")
+					.collect(Collectors.joining(", ")) + "},");
+			out.println("  \"phases\": [");
+			for (int i = 0; i < records.size(); i++) {
+				Record r = records.get(i);
+				out.println(String.format(Locale.ROOT, "    {\"phase\": \"%s\", \"thread\": \"%s\", \"start(ms)\": %d, "
+						+ "\"wall(ms)\": %d, \"thread cpu(ms)\": %d, \"process cpu(ms)\": %d, "
+						+ "\"allocated(bytes)\": %d, \"gc count\": %d, \"gc time(ms)\": %d}%s", escape(r.phase),
+						escape(r.thread), r.startMillis, r.wallMillis, r.threadCpuMillis, r.processCpuMillis,
+						r.allocatedBytes, r.gcCount, r.gcMillis, i < records.size() - 1 ? "," : ""));
+			}
+			out.println("  ]");
+			out.println("}");
+		}
+	}
+
+	private static String escape(String s) {
+		return s.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	/**
+	 * A value in seconds, rounded to two decimal places (the precision of the
+	 * logs parsed by the stats scripts).
+	 */
+	private static double seconds(long nanos) {
+		return java.lang.Math.round(nanos / 1e7) / 100.0;
+	}
+
+	/**
+	 * A running phase. The measurements are taken on the thread that starts
+	 * the phase, which must also be the one that stops it.
+	 */
+	public class Phase implements AutoCloseable {
+		private String path;
+		private long wallStart;
+		private long threadCpuStart;
+		private long processCpuStart;
+		private long allocatedStart;
+		private long gcCountStart;
+		private long gcMillisStart;
+		private long wallNanos;
+		private Record record = null;
+
+		private Phase(String path) {
+			this.path = path;
+			this.wallStart = System.nanoTime();
+			this.threadCpuStart = threadCpuTime();
+			this.processCpuStart = processCpuTime();
+			this.allocatedStart = allocatedBytes();
+			this.gcCountStart = gcCount();
+			this.gcMillisStart = gcMillis();
+		}
+
+		/**
+		 * Stop the phase, and record it. Stopping a phase again returns the
+		 * same record.
+		 *
+		 * @return
+		 */
+		public Record stop() {
+			if (record != null) {
+				return record;
+			}
+
+			wallNanos = System.nanoTime() - wallStart;
+			long threadCpu = threadCpuTime();
+			long processCpu = processCpuTime();
+			long allocated = allocatedBytes();
+			record = new Record(path, Thread.currentThread().getName(), (wallStart - start) / 1000000,
+					wallNanos / 1000000, millis(delta(threadCpuStart, threadCpu)), millis(delta(processCpuStart,
+							processCpu)), delta(allocatedStart, allocated), gcCount() - gcCountStart, gcMillis()
+							- gcMillisStart);
+
+			// Phases nested in this one and never stopped are dropped
+			Deque<Phase> stack = running.get();
+			if (stack.contains(this)) {
+				while (stack.pop() != this) {
+				}
+			}
+			add(record);
+			return record;
+		}
+
+		@Override
+		public void close() {
+			stop();
+		}
+
+		/**
+		 * The wall time of the phase (so far, if it is still running), in
+		 * seconds.
+		 *
+		 * @return
+		 */
+		public double seconds() {
+			return Profiler.seconds(record == null ? System.nanoTime() - wallStart : wallNanos);
+		}
+	}
+
+	/**
+	 * The measurements of a phase. A measurement that is not supported by the
+	 * JVM is -1.
+	 */
+	public static class Record {
+		private String phase;
+		private String thread;
+		private long startMillis;
+		private long wallMillis;
+		private long threadCpuMillis;
+		private long processCpuMillis;
+		private long allocatedBytes;
+		private long gcCount;
+		private long gcMillis;
+
+		private Record(String phase, String thread, long startMillis, long wallMillis, long threadCpuMillis,
+				long processCpuMillis, long allocatedBytes, long gcCount, long gcMillis) {
+			this.phase = phase;
+			this.thread = thread;
+			this.startMillis = startMillis;
+			this.wallMillis = wallMillis;
+			this.threadCpuMillis = threadCpuMillis;
+			this.processCpuMillis = processCpuMillis;
+			this.allocatedBytes = allocatedBytes;
+			this.gcCount = gcCount;
+			this.gcMillis = gcMillis;
+		}
+
+		/**
+		 * The name of the phase, prefixed by the names of the phases it is
+		 * nested in.
+		 *
+		 * @return
+		 */
+		public String phase() {
+			return phase;
+		}
+
+		public String thread() {
+			return thread;
+		}
+
+		/**
+		 * The start of the phase, in milliseconds since the start of the run.
+		 *
+		 * @return
+		 */
+		public long startMillis() {
+			return startMillis;
+		}
+
+		public long wallMillis() {
+			return wallMillis;
+		}
+
+		public long threadCpuMillis() {
+			return threadCpuMillis;
+		}
+
+		public long processCpuMillis() {
+			return processCpuMillis;
+		}
+
+		public long allocatedBytes() {
+			return allocatedBytes;
+		}
+
+		public long gcCount() {
+			return gcCount;
+		}
+
+		public long gcMillis() {
+			return gcMillis;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: %.2f seconds wall, %.2f seconds cpu, %d MB allocated, %d gcs (%.2f seconds)",
+					phase, wallMillis / 1000.0, threadCpuMillis / 1000.0, allocatedBytes < 0 ? -1
+							: allocatedBytes >> 20, gcCount, gcMillis / 1000.0);
+		}
+	}
+
+	private static long delta(long start, long end) {
+		return start < 0 || end < 0 ? -1 : end - start;
+	}
+
+	private static long millis(long nanos) {
+		return nanos < 0 ? -1 : nanos / 1000000;
+	}
+
+	private static long threadCpuTime() {
+		return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+	}
+
+	private static long processCpuTime() {
+		return os instanceof com.sun.management.OperatingSystemMXBean ? ((com.sun.management.OperatingSystemMXBean) os)
+				.getProcessCpuTime() : -1;
+	}
+
+	private static long allocatedBytes() {
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+			if (bean.isThreadAllocatedMemoryEnabled()) {
+				return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean collector : collectors) {
+			count += java.lang.Math.max(0, collector.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long gcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean collector : collectors) {
+			millis += java.lang.Math.max(0, collector.getCollectionTime());
+		}
+		return millis;
+	}
+}
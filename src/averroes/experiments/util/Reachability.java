@@ -0,0 +1,181 @@
+package averroes.experiments.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * The methods reachable from the entry points of a {@link CompactCallGraph}.
+ * The search goes level by level: the frontier, the methods seen so far and
+ * the next frontier are bitsets over method ids ({@code long[]}, 64 methods a
+ * word), so a level is a scan over the frontier words and the edges of the
+ * methods found there. {@link ProbeUtils#LIBRARY_BLOB} is a method like any
+ * other.
+ *
+ * The parallel variant splits the frontier words of large levels between the
+ * threads of the common fork/join pool. Each thread collects its next frontier
+ * in a private bitset, and the private bitsets are or'ed together at the end
+ * of the level, so no atomic operations are needed.
+ *
+ */
+public class Reachability {
+
+	// Levels with fewer methods in the frontier are done sequentially
+	private static final int PARALLEL_FRONTIER = 1 << 12;
+
+	// The minimum number of frontier words each parallel task scans
+	private static final int CHUNK_WORDS = 1 << 8;
+
+	/**
+	 * The methods reachable from the entry points, as a bitset over method
+	 * ids.
+	 *
+	 * @param cg
+	 * @return
+	 */
+	public static long[] reachableBits(CompactCallGraph cg) {
+		return search(cg, false);
+	}
+
+	/**
+	 * Same as {@link #reachableBits(CompactCallGraph)}, spreading the large
+	 * levels over several threads.
+	 *
+	 * @param cg
+	 * @return
+	 */
+	public static long[] reachableBitsParallel(CompactCallGraph cg) {
+		return search(cg, true);
+	}
+
+	/**
+	 * The sorted ids of the methods reachable from the entry points.
+	 *
+	 * @param cg
+	 * @return
+	 */
+	public static int[] reachable(CompactCallGraph cg) {
+		return toIds(reachableBits(cg));
+	}
+
+	/**
+	 * Same as {@link #reachable(CompactCallGraph)}, spreading the large levels
+	 * over several threads.
+	 *
+	 * @param cg
+	 * @return
+	 */
+	public static int[] reachableParallel(CompactCallGraph cg) {
+		return toIds(reachableBitsParallel(cg));
+	}
+
+	/**
+	 * Is a method in the given bitset?
+	 *
+	 * @param bits
+	 * @param method
+	 * @return
+	 */
+	public static boolean contains(long[] bits, int method) {
+		int word = method >>> 6;
+		return word < bits.length && (bits[word] & (1L << method)) != 0;
+	}
+
+	/**
+	 * The number of methods in the given bitset.
+	 *
+	 * @param bits
+	 * @return
+	 */
+	public static int count(long[] bits) {
+		int count = 0;
+		for (long word : bits) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * The sorted ids of the methods in the given bitset.
+	 *
+	 * @param bits
+	 * @return
+	 */
+	public static int[] toIds(long[] bits) {
+		int[] ids = new int[count(bits)];
+		int n = 0;
+		for (int w = 0; w < bits.length; w++) {
+			for (long word = bits[w]; word != 0; word &= word - 1) {
+				ids[n++] = (w << 6) | Long.numberOfTrailingZeros(word);
+			}
+		}
+		return ids;
+	}
+
+	private static long[] search(CompactCallGraph cg, boolean parallel) {
+		int words = (cg.methodBound() + 63) >>> 6;
+		long[] seen = new long[words];
+		long[] frontier = new long[words];
+
+		for (int entry : cg.entryPoints()) {
+			frontier[entry >>> 6] |= 1L << entry;
+		}
+		System.arraycopy(frontier, 0, seen, 0, words);
+		int size = count(frontier);
+
+		while (size > 0) {
+			long[] next;
+			if (parallel && size >= PARALLEL_FRONTIER) {
+				next = expandParallel(cg, frontier, seen);
+			} else {
+				next = new long[words];
+				expand(cg, frontier, seen, next, 0, words);
+			}
+
+			// Only keep the new methods, and mark them as seen
+			size = 0;
+			for (int w = 0; w < words; w++) {
+				next[w] &= ~seen[w];
+				seen[w] |= next[w];
+				size += Long.bitCount(next[w]);
+			}
+			frontier = next;
+		}
+
+		return seen;
+	}
+
+	/**
+	 * Add the successors of the frontier methods in words [from, to) that are
+	 * not seen yet to the next frontier.
+	 */
+	private static void expand(CompactCallGraph cg, long[] frontier, long[] seen, long[] next, int from, int to) {
+		for (int w = from; w < to; w++) {
+			for (long word = frontier[w]; word != 0; word &= word - 1) {
+				int method = (w << 6) | Long.numberOfTrailingZeros(word);
+				for (int e = cg.firstEdge(method); e < cg.endEdge(method); e++) {
+					int dst = cg.target(e);
+					if ((seen[dst >>> 6] & (1L << dst)) == 0) {
+						next[dst >>> 6] |= 1L << dst;
+					}
+				}
+			}
+		}
+	}
+
+	private static long[] expandParallel(CompactCallGraph cg, long[] frontier, long[] seen) {
+		int words = frontier.length;
+		// A few tasks per thread, each with its own next frontier
+		int chunk = java.lang.Math.max(CHUNK_WORDS, words / (4 * ForkJoinPool.getCommonPoolParallelism()) + 1);
+		int chunks = (words + chunk - 1) / chunk;
+		return IntStream.range(0, chunks).parallel().mapToObj(c -> {
+			long[] next = new long[words];
+			expand(cg, frontier, seen, next, c * chunk, java.lang.Math.min(words, (c + 1) * chunk));
+			return next;
+		}).reduce((a, b) -> {
+			for (int w = 0; w < words; w++) {
+				a[w] |= b[w];
+			}
+			return a;
+		}).orElseGet(() -> new long[words]);
+	}
+}
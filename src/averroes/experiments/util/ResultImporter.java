@@ -1,13 +1,9 @@
 package averroes.experiments.util;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.deri.iris.api.basics.ITuple;
 import org.deri.iris.api.terms.ITerm;
@@ -32,31 +28,8 @@ public class ResultImporter {
 	 * @throws IOException
 	 */
 	public static IRelation retrieve(String resultsFileName) throws IOException {
-		BufferedReader in = new BufferedReader(new FileReader(resultsFileName));
-		String predicate = "";
-		String line;
-		int size = 0;
 		IRelation relation = new SimpleRelationFactory().createRelation();
-
-		// First consume the first 10 lines, they're info about the predicate
-		while ((line = in.readLine()) != null) {
-			// Capture the size of the result set
-			if (line.trim().startsWith("predicate:")) {
-				predicate = line.substring(line.indexOf(" ") + 1, line.indexOf('('));
-			} else if (line.trim().startsWith("size:")) {
-				size = Integer.parseInt(line.trim().replace("size: ", ""));
-			} else if (line.equals("/--- start of " + predicate + " facts ---\\")) {
-				break;
-			}
-		}
-
-		// Now loop for the size of the result set, gather the input
-		for (int i = 0; i < size; i++) {
-			line = in.readLine().trim();
-			relation.add(lineToTuple(line));
-		}
-
-		in.close();
+		ResultScanner.scan(resultsFileName, (columns, count) -> relation.add(toTuple(columns, count)), false);
 		return relation;
 	}
 
@@ -71,6 +44,18 @@ public class ResultImporter {
 		return retrieve(doopHome.concat(File.separator).concat("InsensCallGraphEdge.results"));
 	}
 
+	/**
+	 * Stream the insensitive call graph edges from Doop to the given consumer.
+	 * 
+	 * @param doopHome
+	 * @param consumer
+	 * @throws IOException
+	 */
+	public static void getDoopCallGraphEdges(String doopHome, ResultScanner.TupleConsumer consumer)
+			throws IOException {
+		ResultScanner.scan(doopHome.concat(File.separator).concat("InsensCallGraphEdge.results"), consumer);
+	}
+
 	/**
 	 * Get the reflective call graph edges from Doop.
 	 * 
@@ -82,6 +67,18 @@ public class ResultImporter {
 		return retrieve(doopHome.concat(File.separator).concat("ReflectiveCallGraphEdge.results"));
 	}
 
+	/**
+	 * Stream the reflective call graph edges from Doop to the given consumer.
+	 * 
+	 * @param doopHome
+	 * @param consumer
+	 * @throws IOException
+	 */
+	public static void getDoopReflectiveCallGraphEdges(String doopHome, ResultScanner.TupleConsumer consumer)
+			throws IOException {
+		ResultScanner.scan(doopHome.concat(File.separator).concat("ReflectiveCallGraphEdge.results"), consumer);
+	}
+
 	/**
 	 * Get the entry points from Doop.
 	 * 
@@ -93,6 +90,17 @@ public class ResultImporter {
 		return retrieve(doopHome.concat(File.separator).concat("MainMethodDeclaration.results"));
 	}
 
+	/**
+	 * Stream the entry points from Doop to the given consumer.
+	 * 
+	 * @param doopHome
+	 * @param consumer
+	 * @throws IOException
+	 */
+	public static void getDoopEntryPoints(String doopHome, ResultScanner.TupleConsumer consumer) throws IOException {
+		ResultScanner.scan(doopHome.concat(File.separator).concat("MainMethodDeclaration.results"), consumer);
+	}
+
 	/**
 	 * Get the LibraryPointsTo set from Doop.
 	 * 
@@ -111,23 +119,15 @@ public class ResultImporter {
 	 * @return
 	 */
 	public static ITuple lineToTuple(String line) {
-		String regex = "((?!\\[(\\d+?)\\]).)+";
-		Pattern pattern = Pattern.compile(regex);
-		Matcher matcher = pattern.matcher(line);
-		List<ITerm> terms = new ArrayList<ITerm>();
-
-		while (matcher.find()) {
-			String s = matcher.group().trim();
-			int start = s.indexOf(']') + 1;
-			int end = s.length();
-
-			if (s.endsWith(",")) {
-				end--;
-			}
+		List<String> columns = ResultScanner.columns(line);
+		return toTuple(columns.toArray(new String[columns.size()]), columns.size());
+	}
 
-			terms.add(TermFactory.getInstance().createString(s.substring(start, end)));
+	private static ITuple toTuple(String[] columns, int count) {
+		List<ITerm> terms = new ArrayList<ITerm>(count);
+		for (int i = 0; i < count; i++) {
+			terms.add(TermFactory.getInstance().createString(columns[i]));
 		}
-
 		return BasicFactory.getInstance().createTuple(terms);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,370 @@
+package averroes.experiments.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * A streaming reader for the .results files that Doop writes. The facts of a
+ * results file come after a short header, one per line, and every column is
+ * prefixed with its index (e.g., "[0]<A: void m()>, [1]<B: void n()>"). The
+ * scanner splits a line into columns in a single pass over its bytes and hands
+ * them to a {@link TupleConsumer}, without building any intermediate tuples.
+ *
+ * The column rules are those of {@link ResultImporter#lineToTuple(String)}: a
+ * column starts at every "[n]" marker, is trimmed, loses everything up to its
+ * first ']', and loses one trailing ','. Any text before the first marker is a
+ * column too.
+ *
+ * Large files are memory-mapped in chunks that are scanned in parallel. The
+ * chunks are cut at line boundaries, and the lines of each chunk are counted
+ * first so that only the number of facts given in the header is read.
+ *
+ * A consumer rejects a malformed fact (e.g., one with fewer columns than its
+ * predicate) by throwing a RuntimeException. The scan then fails with an
+ * IOException that names the file and the line of the fact.
+ *
+ */
+public class ResultScanner {
+
+	// Files with less data than this are scanned on the calling thread
+	private static final long PARALLEL_THRESHOLD = 8L << 20;
+	private static final long CHUNK_SIZE = 32L << 20;
+
+	/**
+	 * Receives the columns of each fact. The array is reused for the next
+	 * fact of the same chunk, copy what you need to keep. The slots past count
+	 * are null. When a file is
+	 * scanned in parallel, the consumer is called from several threads at the
+	 * same time.
+	 */
+	public interface TupleConsumer {
+		public void tuple(String[] columns, int count);
+	}
+
+	/**
+	 * Scan the facts of a results file, in parallel if the file is large.
+	 *
+	 * @param resultsFileName
+	 * @param consumer
+	 * @throws IOException
+	 */
+	public static void scan(String resultsFileName, TupleConsumer consumer) throws IOException {
+		scan(resultsFileName, consumer, true);
+	}
+
+	/**
+	 * Scan the facts of a results file. If parallel is false, the consumer is
+	 * called on the calling thread, in file order.
+	 *
+	 * @param resultsFileName
+	 * @param consumer
+	 * @param parallel
+	 * @throws IOException
+	 */
+	public static void scan(String resultsFileName, TupleConsumer consumer, boolean parallel) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(resultsFileName), StandardOpenOption.READ)) {
+			long[] header = readHeader(channel);
+			long dataStart = header[0];
+			long size = header[1];
+			long headerLines = header[2];
+			long[] bounds = chunkBounds(channel, dataStart, CHUNK_SIZE);
+			int chunks = bounds.length - 1;
+
+			MappedByteBuffer[] buffers = new MappedByteBuffer[chunks];
+			for (int i = 0; i < chunks; i++) {
+				buffers[i] = channel.map(FileChannel.MapMode.READ_ONLY, bounds[i], bounds[i + 1] - bounds[i]);
+			}
+
+			boolean inParallel = parallel && chunks > 1 && channel.size() - dataStart >= PARALLEL_THRESHOLD;
+
+			// First pass: count the lines of each chunk, so that every chunk
+			// knows how many of the facts it holds
+			long[] lines = new long[chunks];
+			range(chunks, inParallel).forEach(i -> lines[i] = countLines(buffers[i]));
+
+			long[] limits = new long[chunks];
+			long remaining = size;
+			for (int i = 0; i < chunks; i++) {
+				limits[i] = java.lang.Math.min(lines[i], remaining);
+				remaining -= limits[i];
+			}
+			if (remaining > 0) {
+				throw new IOException("Expected " + size + " facts in " + resultsFileName + ", found "
+						+ (size - remaining));
+			}
+
+			// The line number of the first fact of each chunk, for the errors
+			long[] firstLines = new long[chunks];
+			for (int i = 0; i < chunks; i++) {
+				firstLines[i] = i == 0 ? headerLines + 1 : firstLines[i - 1] + lines[i - 1];
+			}
+
+			// Second pass: split the facts into columns
+			try {
+				range(chunks, inParallel).forEach(
+						i -> scanChunk(buffers[i], limits[i], consumer, resultsFileName, firstLines[i]));
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
+	/**
+	 * Split a single line into its columns.
+	 *
+	 * @param line
+	 * @return
+	 */
+	public static List<String> columns(String line) {
+		List<String> result = new ArrayList<String>();
+		byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+		new LineScanner(ByteBuffer.wrap(bytes)).scan(0, bytes.length, (columns, count) -> {
+			for (int i = 0; i < count; i++) {
+				result.add(columns[i]);
+			}
+		});
+		return result;
+	}
+
+	private static IntStream range(int chunks, boolean parallel) {
+		IntStream range = IntStream.range(0, chunks);
+		return parallel ? range.parallel() : range;
+	}
+
+	/**
+	 * Read the header of the results file, and return the offset of the first
+	 * fact, the number of facts and the number of lines of the header.
+	 */
+	private static long[] readHeader(FileChannel channel) throws IOException {
+		InputStream in = new BufferedInputStream(Channels.newInputStream(channel.position(0)));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		String predicate = "";
+		long size = 0;
+		long offset = 0;
+		long lines = 0;
+
+		while (true) {
+			bytes.reset();
+			int b;
+			while ((b = in.read()) >= 0 && b != '\n') {
+				bytes.write(b);
+				offset++;
+			}
+			if (b < 0 && bytes.size() == 0) {
+				// The start marker is missing, so there are no facts
+				return new long[] { offset, 0, lines };
+			}
+			if (b >= 0) {
+				offset++;
+			}
+			lines++;
+
+			String line = bytes.toString("UTF-8");
+			if (line.endsWith("\r")) {
+				line = line.substring(0, line.length() - 1);
+			}
+
+			// Capture the predicate name and the size of the result set
+			if (line.trim().startsWith("predicate:")) {
+				predicate = line.substring(line.indexOf(" ") + 1, line.indexOf('('));
+			} else if (line.trim().startsWith("size:")) {
+				size = Long.parseLong(line.trim().replace("size: ", ""));
+			} else if (line.equals("/--- start of " + predicate + " facts ---\\")) {
+				return new long[] { offset, size, lines };
+			}
+		}
+	}
+
+	/**
+	 * Cut the data of the file into chunks of about the given size. Every
+	 * chunk but the first starts right after a new line.
+	 */
+	private static long[] chunkBounds(FileChannel channel, long start, long chunkSize) throws IOException {
+		long end = channel.size();
+		List<Long> bounds = new ArrayList<Long>();
+		bounds.add(start);
+
+		ByteBuffer window = ByteBuffer.allocate(1 << 16);
+		long position = start + chunkSize;
+		while (position < end) {
+			// Move the nominal bound forward to the next line
+			long bound = -1;
+			long scan = position;
+			while (bound < 0 && scan < end) {
+				window.clear();
+				int n = channel.read(window, scan);
+				for (int i = 0; i < n; i++) {
+					if (window.get(i) == '\n') {
+						bound = scan + i + 1;
+						break;
+					}
+				}
+				scan += n;
+			}
+			if (bound < 0 || bound >= end) {
+				break;
+			}
+			bounds.add(bound);
+			position = bound + chunkSize;
+		}
+
+		bounds.add(end);
+		return bounds.stream().mapToLong(Long::longValue).toArray();
+	}
+
+	private static long countLines(ByteBuffer buffer) {
+		int limit = buffer.limit();
+		long count = 0;
+		for (int i = 0; i < limit; i++) {
+			if (buffer.get(i) == '\n') {
+				count++;
+			}
+		}
+		if (limit > 0 && buffer.get(limit - 1) != '\n') {
+			count++;
+		}
+		return count;
+	}
+
+	private static void scanChunk(ByteBuffer buffer, long lines, TupleConsumer consumer, String fileName,
+			long firstLine) {
+		LineScanner scanner = new LineScanner(buffer);
+		int limit = buffer.limit();
+		int start = 0;
+		for (long line = 0; line < lines; line++) {
+			int end = start;
+			while (end < limit && buffer.get(end) != '\n') {
+				end++;
+			}
+			try {
+				scanner.scan(start, end, consumer);
+			} catch (RuntimeException e) {
+				throw new UncheckedIOException(new IOException("Malformed fact at " + fileName + ":"
+						+ (firstLine + line) + ": " + e.getMessage(), e));
+			}
+			start = end + 1;
+		}
+	}
+
+	/**
+	 * Splits the lines of one buffer into columns. Each thread uses its own
+	 * scanner.
+	 */
+	private static class LineScanner {
+		private ByteBuffer buffer;
+		private byte[] bytes = new byte[256];
+		private String[] columns = new String[8];
+		private int count;
+
+		private LineScanner(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		private void scan(int start, int end, TupleConsumer consumer) {
+			int previous = count;
+			count = 0;
+
+			// The whole line is trimmed first
+			while (start < end && isSpace(buffer.get(start))) {
+				start++;
+			}
+			while (end > start && isSpace(buffer.get(end - 1))) {
+				end--;
+			}
+
+			// A column starts at the beginning of the line and right after the
+			// '[' of every [n] marker
+			int column = start;
+			for (int i = start; i < end; i++) {
+				if (buffer.get(i) == '[' && isMarker(i + 1, end)) {
+					if (i > column) {
+						column(column, i);
+					}
+					column = i + 1;
+				}
+			}
+			if (end > column) {
+				column(column, end);
+			}
+
+			// Never hand out the columns of the previous line
+			if (count < previous) {
+				Arrays.fill(columns, count, previous, null);
+			}
+			consumer.tuple(columns, count);
+		}
+
+		/**
+		 * Check if a marker (digits followed by ']') starts at the given
+		 * index.
+		 */
+		private boolean isMarker(int i, int end) {
+			int digits = i;
+			while (digits < end && isDigit(buffer.get(digits))) {
+				digits++;
+			}
+			return digits > i && digits < end && buffer.get(digits) == ']';
+		}
+
+		/**
+		 * Add the column in the given range: trim it, drop everything up to
+		 * the first ']' and one trailing ','.
+		 */
+		private void column(int start, int end) {
+			while (start < end && isSpace(buffer.get(start))) {
+				start++;
+			}
+			while (end > start && isSpace(buffer.get(end - 1))) {
+				end--;
+			}
+			for (int i = start; i < end; i++) {
+				if (buffer.get(i) == ']') {
+					start = i + 1;
+					break;
+				}
+			}
+			if (end > start && buffer.get(end - 1) == ',') {
+				end--;
+			}
+
+			if (count == columns.length) {
+				columns = Arrays.copyOf(columns, count * 2);
+			}
+			columns[count++] = string(start, end);
+		}
+
+		private String string(int start, int end) {
+			int len = end - start;
+			if (len > bytes.length) {
+				bytes = new byte[java.lang.Math.max(len, bytes.length * 2)];
+			}
+			for (int i = 0; i < len; i++) {
+				bytes[i] = buffer.get(start + i);
+			}
+			return new String(bytes, 0, len, StandardCharsets.UTF_8);
+		}
+
+		private static boolean isDigit(byte b) {
+			return b >= '0' && b <= '9';
+		}
+
+		// Same as String.trim()
+		private static boolean isSpace(byte b) {
+			return b >= 0 && b <= ' ';
+		}
+	}
+}
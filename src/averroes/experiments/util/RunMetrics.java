@@ -0,0 +1,145 @@
+package averroes.experiments.util;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The resource usage of the external steps of a run (e.g., Doop, or the
+ * instrumented benchmark of the dynamic call graph), as measured by
+ * {@link ProcessSupervisor}.
+ *
+ */
+public class RunMetrics {
+
+	private static RunMetrics instance = new RunMetrics();
+
+	private List<Step> steps = new ArrayList<Step>();
+
+	public static RunMetrics v() {
+		return instance;
+	}
+
+	/**
+	 * The measurements of one supervised process. CPU time and peak RSS cover
+	 * the whole process tree, and are -1 if they could not be sampled (e.g.,
+	 * there is no /proc).
+	 */
+	public static class Step {
+		private String name;
+		private int exitCode;
+		private boolean timedOut;
+		private long wallMillis;
+		private long cpuMillis;
+		private long peakRss;
+		private int samples;
+
+		public Step(String name, int exitCode, boolean timedOut, long wallMillis, long cpuMillis, long peakRss,
+				int samples) {
+			this.name = name;
+			this.exitCode = exitCode;
+			this.timedOut = timedOut;
+			this.wallMillis = wallMillis;
+			this.cpuMillis = cpuMillis;
+			this.peakRss = peakRss;
+			this.samples = samples;
+		}
+
+		public String name() {
+			return name;
+		}
+
+		/**
+		 * The exit code of the process, or -1 if it was killed after a
+		 * timeout.
+		 *
+		 * @return
+		 */
+		public int exitCode() {
+			return exitCode;
+		}
+
+		public boolean timedOut() {
+			return timedOut;
+		}
+
+		public boolean isSuccess() {
+			return !timedOut && exitCode == 0;
+		}
+
+		public long wallMillis() {
+			return wallMillis;
+		}
+
+		/**
+		 * The user and system CPU time, in milliseconds.
+		 *
+		 * @return
+		 */
+		public long cpuMillis() {
+			return cpuMillis;
+		}
+
+		/**
+		 * The peak resident set size, in bytes.
+		 *
+		 * @return
+		 */
+		public long peakRss() {
+			return peakRss;
+		}
+
+		public int samples() {
+			return samples;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: %s, %.1f seconds wall, %s cpu, %s peak rss", name,
+					timedOut ? "timed out" : "exit " + exitCode, wallMillis / 1000.0, cpuMillis < 0 ? "unknown"
+							: String.format("%.1f seconds", cpuMillis / 1000.0), peakRss < 0 ? "unknown"
+							: (peakRss >> 20) + " MB");
+		}
+	}
+
+	/**
+	 * Record the measurements of an external step.
+	 *
+	 * @param step
+	 */
+	public synchronized void add(Step step) {
+		steps.add(step);
+		System.out.println("[Metrics] " + step);
+	}
+
+	public synchronized List<Step> steps() {
+		return new ArrayList<Step>(steps);
+	}
+
+	/**
+	 * Forget the steps of the previous run.
+	 */
+	public synchronized void reset() {
+		steps.clear();
+	}
+
+	/**
+	 * Write the steps as a tab-separated table, one row per step.
+	 *
+	 * @param file
+	 * @throws FileNotFoundException
+	 */
+	public synchronized void write(File file) throws FileNotFoundException {
+		String sep = "\t";
+		try (PrintStream out = new PrintStream(file)) {
+			out.println("step" + sep + "exit" + sep + "timeout" + sep + "wall(ms)" + sep + "cpu(ms)" + sep
+					+ "peak rss(KB)" + sep + "samples");
+			for (Step step : steps) {
+				out.println(step.name + sep + step.exitCode + sep + step.timedOut + sep + step.wallMillis + sep
+						+ step.cpuMillis + sep + (step.peakRss < 0 ? -1 : step.peakRss >> 10) + sep + step.samples);
+			}
+		}
+	}
+}
@@ -1,12 +1,17 @@
 package averroes.experiments.util;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
- * A utility class for set-related operations.
+ * A utility class for set-related operations. Besides generic sets, the
+ * operations accept sets of ids (e.g., {@link MethodTable} ids or
+ * {@link CompactCallGraph#key(int, int)} edge keys) as sorted int[] and long[]
+ * arrays without duplicates, and compute them in one merge pass. The *Count
+ * variants only compute the size of the result, without allocating it.
  * 
  * @author karim
  * 
@@ -40,9 +45,12 @@ public class SetUtils {
 	 * @return
 	 */
 	public static <T> Set<T> minus(Set<T> a, Set<T> b) {
-		Set<T> result = new HashSet<T>(a);
-		result.addAll(a);
-		result.removeAll(b);
+		Set<T> result = new HashSet<T>();
+		for (T t : a) {
+			if (!b.contains(t)) {
+				result.add(t);
+			}
+		}
 		return result;
 	}
 
@@ -54,8 +62,15 @@ public class SetUtils {
 	 * @return
 	 */
 	public static <T> Set<T> intersect(Set<T> a, Set<T> b) {
-		Set<T> result = new HashSet<T>(a);
-		result.retainAll(b);
+		// Look up the elements of the smaller set in the larger one
+		Set<T> small = a.size() <= b.size() ? a : b;
+		Set<T> large = small == a ? b : a;
+		Set<T> result = new HashSet<T>();
+		for (T t : small) {
+			if (large.contains(t)) {
+				result.add(t);
+			}
+		}
 		return result;
 	}
 
@@ -80,11 +95,367 @@ public class SetUtils {
 	 * @return
 	 */
 	public static <T> Set<T> diff(Set<T> a, Set<T> b) {
-		Set<T> intersection = intersect(a, b);
-		Set<T> union = union(a, b);
-		Set<T> result = new HashSet<T>(union);
-		result.removeAll(intersection);
+		Set<T> result = minus(a, b);
+		for (T t : b) {
+			if (!a.contains(t)) {
+				result.add(t);
+			}
+		}
 		return result;
 	}
 
+	/**
+	 * Calculate the value of A - B, where A and B are sorted int[] sets (e.g.,
+	 * method ids).
+	 * 
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public static int[] minus(int[] a, int[] b) {
+		int[] result = new int[a.length];
+		int i = 0, j = 0, n = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				result[n++] = a[i++];
+			} else if (a[i] > b[j]) {
+				j++;
+			} else {
+				i++;
+				j++;
+			}
+		}
+		while (i < a.length) {
+			result[n++] = a[i++];
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	/**
+	 * Calculate the value of A intersect B, where A and B are sorted int[] sets.
+	 * 
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public static int[] intersect(int[] a, int[] b) {
+		int[] result = new int[java.lang.Math.min(a.length, b.length)];
+		int i = 0, j = 0, n = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				i++;
+			} else if (a[i] > b[j]) {
+				j++;
+			} else {
+				result[n++] = a[i++];
+				j++;
+			}
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	/**
+	 * Calculate the value of A union B, where A and B are sorted int[] sets.
+	 * 
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public static int[] union(int[] a, int[] b) {
+		int[] result = new int[a.length + b.length];
+		int i = 0, j = 0, n = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				result[n++] = a[i++];
+			} else if (a[i] > b[j]) {
+				result[n++] = b[j++];
+			} else {
+				result[n++] = a[i++];
+				j++;
+			}
+		}
+		while (i < a.length) {
+			result[n++] = a[i++];
+		}
+		while (j < b.length) {
+			result[n++] = b[j++];
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	/**
+	 * Calculate the value of (A union B) - (A intersect B), where A and B are
+	 * sorted int[] sets.
+	 * 
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public static int[] diff(int[] a, int[] b) {
+		int[] result = new int[a.length + b.length];
+		int i = 0, j = 0, n = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				result[n++] = a[i++];
+			} else if (a[i] > b[j]) {
+				result[n++] = b[j++];
+			} else {
+				i++;
+				j++;
+			}
+		}
+		while (i < a.length) {
+			result[n++] = a[i++];
+		}
+		while (j < b.length) {
+			result[n++] = b[j++];
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	/**
+	 * Calculate both A - B and B - A, where A and B are sorted int[] sets, in
+	 * one merge pass (e.g., the missing and extra edges of a call graph).
+	 * 
+	 * @param a
+	 * @param b
+	 * @return the array { A - B, B - A }
+	 */
+	public static int[][] split(int[] a, int[] b) {
+		int[] onlyA = new int[a.length];
+		int[] onlyB = new int[b.length];
+		int i = 0, j = 0, m = 0, n = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				onlyA[m++] = a[i++];
+			} else if (a[i] > b[j]) {
+				onlyB[n++] = b[j++];
+			} else {
+				i++;
+				j++;
+			}
+		}
+		while (i < a.length) {
+			onlyA[m++] = a[i++];
+		}
+		while (j < b.length) {
+			onlyB[n++] = b[j++];
+		}
+		return new int[][] { Arrays.copyOf(onlyA, m), Arrays.copyOf(onlyB, n) };
+	}
+
+	/**
+	 * The size of A intersect B, where A and B are sorted int[] sets. The sizes
+	 * of the other operations follow from it (e.g., |A - B| = |A| - |A
+	 * intersect B|), see {@link #minusCount(int[], int[])}.
+	 * 
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public static int intersectCount(int[] a, int[] b) {
+		int i = 0, j = 0, n = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				i++;
+			} else if (a[i] > b[j]) {
+				j++;
+			} else {
+				n++;
+				i++;
+				j++;
+			}
+		}
+		return n;
+	}
+
+	public static int minusCount(int[] a, int[] b) {
+		return a.length - intersectCount(a, b);
+	}
+
+	public static int unionCount(int[] a, int[] b) {
+		return a.length + b.length - intersectCount(a, b);
+	}
+
+	public static int diffCount(int[] a, int[] b) {
+		return a.length + b.length - 2 * intersectCount(a, b);
+	}
+
+	/**
+	 * Calculate the value of A - B, where A and B are sorted long[] sets (e.g.,
+	 * edge keys).
+	 * 
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public static long[] minus(long[] a, long[] b) {
+		long[] result = new long[a.length];
+		int i = 0, j = 0, n = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				result[n++] = a[i++];
+			} else if (a[i] > b[j]) {
+				j++;
+			} else {
+				i++;
+				j++;
+			}
+		}
+		while (i < a.length) {
+			result[n++] = a[i++];
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	/**
+	 * Calculate the value of A intersect B, where A and B are sorted long[] sets.
+	 * 
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public static long[] intersect(long[] a, long[] b) {
+		long[] result = new long[java.lang.Math.min(a.length, b.length)];
+		int i = 0, j = 0, n = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				i++;
+			} else if (a[i] > b[j]) {
+				j++;
+			} else {
+				result[n++] = a[i++];
+				j++;
+			}
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	/**
+	 * Calculate the value of A union B, where A and B are sorted long[] sets.
+	 * 
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public static long[] union(long[] a, long[] b) {
+		long[] result = new long[a.length + b.length];
+		int i = 0, j = 0, n = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				result[n++] = a[i++];
+			} else if (a[i] > b[j]) {
+				result[n++] = b[j++];
+			} else {
+				result[n++] = a[i++];
+				j++;
+			}
+		}
+		while (i < a.length) {
+			result[n++] = a[i++];
+		}
+		while (j < b.length) {
+			result[n++] = b[j++];
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	/**
+	 * Calculate the value of (A union B) - (A intersect B), where A and B are
+	 * sorted long[] sets.
+	 * 
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public static long[] diff(long[] a, long[] b) {
+		long[] result = new long[a.length + b.length];
+		int i = 0, j = 0, n = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				result[n++] = a[i++];
+			} else if (a[i] > b[j]) {
+				result[n++] = b[j++];
+			} else {
+				i++;
+				j++;
+			}
+		}
+		while (i < a.length) {
+			result[n++] = a[i++];
+		}
+		while (j < b.length) {
+			result[n++] = b[j++];
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	/**
+	 * Calculate both A - B and B - A, where A and B are sorted long[] sets, in
+	 * one merge pass.
+	 * 
+	 * @param a
+	 * @param b
+	 * @return the array { A - B, B - A }
+	 */
+	public static long[][] split(long[] a, long[] b) {
+		long[] onlyA = new long[a.length];
+		long[] onlyB = new long[b.length];
+		int i = 0, j = 0, m = 0, n = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				onlyA[m++] = a[i++];
+			} else if (a[i] > b[j]) {
+				onlyB[n++] = b[j++];
+			} else {
+				i++;
+				j++;
+			}
+		}
+		while (i < a.length) {
+			onlyA[m++] = a[i++];
+		}
+		while (j < b.length) {
+			onlyB[n++] = b[j++];
+		}
+		return new long[][] { Arrays.copyOf(onlyA, m), Arrays.copyOf(onlyB, n) };
+	}
+
+	/**
+	 * The size of A intersect B, where A and B are sorted long[] sets. The sizes
+	 * of the other operations follow from it (e.g., |A - B| = |A| - |A
+	 * intersect B|), see {@link #minusCount(long[], long[])}.
+	 * 
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public static int intersectCount(long[] a, long[] b) {
+		int i = 0, j = 0, n = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				i++;
+			} else if (a[i] > b[j]) {
+				j++;
+			} else {
+				n++;
+				i++;
+				j++;
+			}
+		}
+		return n;
+	}
+
+	public static int minusCount(long[] a, long[] b) {
+		return a.length - intersectCount(a, b);
+	}
+
+	public static int unionCount(long[] a, long[] b) {
+		return a.length + b.length - intersectCount(a, b);
+	}
+
+	public static int diffCount(long[] a, long[] b) {
+		return a.length + b.length - 2 * intersectCount(a, b);
+	}
+
 }
@@ -0,0 +1,151 @@
+package averroes.experiments.util;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.bcel.classfile.Utility;
+
+import probe.ObjectManager;
+import probe.ProbeClass;
+import probe.ProbeMethod;
+
+/**
+ * A bounded cache of parsed Soot method signatures and the probe methods they
+ * stand for. Doop results repeat the same signatures many times, so every
+ * signature is parsed (and its types converted to bytecode format) once for as
+ * long as it stays in the cache. The least recently used signatures are
+ * evicted first.
+ *
+ * All methods are synchronized, which also serializes the calls to
+ * {@link ObjectManager} made on a cache miss.
+ *
+ */
+public class SignatureInterner {
+
+	private static final int DEFAULT_CAPACITY = 1 << 19;
+
+	private static SignatureInterner instance = new SignatureInterner(Integer.getInteger(
+			"averroes.signatureCacheSize", DEFAULT_CAPACITY));
+
+	private int capacity;
+	private LinkedHashMap<String, SootSignature> signatures;
+	private Map<SootSignature, ProbeMethod> methods = new HashMap<SootSignature, ProbeMethod>();
+	private Map<String, String> types = new HashMap<String, String>();
+
+	private long hits = 0;
+	private long misses = 0;
+
+	/**
+	 * Construct a new interner that keeps at most the given number of
+	 * signatures.
+	 *
+	 * @param capacity
+	 */
+	public SignatureInterner(int capacity) {
+		this.capacity = capacity;
+		this.signatures = new LinkedHashMap<String, SootSignature>(1024, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, SootSignature> eldest) {
+				if (size() > SignatureInterner.this.capacity) {
+					methods.remove(eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public static SignatureInterner v() {
+		return instance;
+	}
+
+	/**
+	 * Get the parsed form of a Soot method signature.
+	 *
+	 * @param signature
+	 * @return
+	 */
+	public synchronized SootSignature signature(String signature) {
+		SootSignature result = signatures.get(signature);
+		if (result == null) {
+			misses++;
+			result = SootSignature.parse(signature);
+			signatures.put(signature, result);
+		} else {
+			hits++;
+		}
+		return result;
+	}
+
+	/**
+	 * Get the probe method for a Soot method signature.
+	 *
+	 * @param signature
+	 * @return
+	 */
+	public synchronized ProbeMethod probeMethod(String signature) {
+		SootSignature sig = signature(signature);
+		ProbeMethod method = methods.get(sig);
+		if (method == null) {
+			ProbeClass cls = ObjectManager.v().getClass(sig.declaringClass());
+			method = ObjectManager.v().getMethod(cls, sig.name(), sig.bytecodeArguments());
+			methods.put(sig, method);
+		}
+		return method;
+	}
+
+	/**
+	 * Convert a type in Soot format to bytecode format (e.g., int[] to [I).
+	 *
+	 * @param type
+	 * @return
+	 */
+	public synchronized String bytecodeType(String type) {
+		String result = types.get(type);
+		if (result == null) {
+			if (types.size() >= capacity) {
+				types.clear();
+			}
+			result = Utility.getSignature(type);
+			types.put(type, result);
+		}
+		return result;
+	}
+
+	public synchronized long hits() {
+		return hits;
+	}
+
+	public synchronized long misses() {
+		return misses;
+	}
+
+	/**
+	 * The fraction of signature lookups that were served from the cache.
+	 *
+	 * @return
+	 */
+	public synchronized double hitRate() {
+		return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+	}
+
+	/**
+	 * Forget all the cached signatures and reset the counters.
+	 */
+	public synchronized void reset() {
+		signatures.clear();
+		methods.clear();
+		types.clear();
+		hits = 0;
+		misses = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("signature cache: %d entries, %d hits, %d misses, hit rate %.1f%%", signatures.size(),
+				hits, misses, hitRate() * 100);
+	}
+}
@@ -0,0 +1,149 @@
+package averroes.experiments.util;
+
+/**
+ * A Soot method signature (e.g., &lt;java.lang.Object: boolean
+ * equals(java.lang.Object)&gt;) split into its parts in one pass. The
+ * bytecode forms of the argument and return types are computed on demand
+ * through the type cache of {@link SignatureInterner}.
+ *
+ */
+public class SootSignature {
+
+	private String signature;
+	private String declaringClass;
+	private String returnType;
+	private String name;
+	private String arguments;
+
+	private String bytecodeArguments = null;
+	private String bytecodeReturnType = null;
+
+	private SootSignature(String signature, String declaringClass, String returnType, String name, String arguments) {
+		this.signature = signature;
+		this.declaringClass = declaringClass;
+		this.returnType = returnType;
+		this.name = name;
+		this.arguments = arguments;
+	}
+
+	/**
+	 * Parse a Soot method signature. The checks are the same as in
+	 * soot.Scene.signatureToSubsignature.
+	 *
+	 * @param signature
+	 * @return
+	 */
+	public static SootSignature parse(String signature) {
+		int length = signature.length();
+		if (length == 0 || signature.charAt(0) != '<' || signature.charAt(length - 1) != '>') {
+			throw new RuntimeException("oops " + signature);
+		}
+
+		int colon = signature.indexOf(':');
+		if (colon < 0) {
+			throw new RuntimeException("oops " + signature);
+		}
+
+		// The subsignature starts after ": " and ends before the closing '>'
+		int sub = colon + 2;
+		int space = signature.indexOf(' ', sub);
+		int leftBracket = signature.indexOf('(', space + 1);
+		int rightBracket = signature.indexOf(')', leftBracket + 1);
+		if (space < 0 || leftBracket < 0 || rightBracket < 0 || rightBracket >= length) {
+			throw new RuntimeException("oops " + signature);
+		}
+
+		return new SootSignature(signature, signature.substring(1, colon), signature.substring(sub, space),
+				signature.substring(space + 1, leftBracket), signature.substring(leftBracket + 1, rightBracket));
+	}
+
+	public String signature() {
+		return signature;
+	}
+
+	public String declaringClass() {
+		return declaringClass;
+	}
+
+	public String name() {
+		return name;
+	}
+
+	/**
+	 * The return type in Soot format (e.g., java.lang.String[]).
+	 *
+	 * @return
+	 */
+	public String returnType() {
+		return returnType;
+	}
+
+	/**
+	 * The comma-separated argument types in Soot format.
+	 *
+	 * @return
+	 */
+	public String arguments() {
+		return arguments;
+	}
+
+	/**
+	 * The subsignature (e.g., boolean equals(java.lang.Object)).
+	 *
+	 * @return
+	 */
+	public String subsignature() {
+		return signature.substring(declaringClass.length() + 3, signature.length() - 1);
+	}
+
+	/**
+	 * The argument types in bytecode format, without brackets (e.g.,
+	 * Ljava/lang/Object;).
+	 *
+	 * @return
+	 */
+	public String bytecodeArguments() {
+		if (bytecodeArguments == null) {
+			StringBuilder buffer = new StringBuilder();
+			int start = 0;
+			while (start <= arguments.length()) {
+				int comma = arguments.indexOf(',', start);
+				int end = comma < 0 ? arguments.length() : comma;
+				String type = arguments.substring(start, end).trim();
+				if (!type.isEmpty()) {
+					buffer.append(SignatureInterner.v().bytecodeType(type));
+				}
+				start = end + 1;
+			}
+			bytecodeArguments = buffer.toString();
+		}
+		return bytecodeArguments;
+	}
+
+	/**
+	 * The return type in bytecode format (e.g., Z).
+	 *
+	 * @return
+	 */
+	public String bytecodeReturnType() {
+		if (bytecodeReturnType == null) {
+			bytecodeReturnType = SignatureInterner.v().bytecodeType(returnType);
+		}
+		return bytecodeReturnType;
+	}
+
+	/**
+	 * The bytecode signature (e.g., &lt;java.lang.Object:
+	 * equals(Ljava/lang/Object;)Z&gt;).
+	 *
+	 * @return
+	 */
+	public String bytecodeSignature() {
+		return "<" + declaringClass + ": " + name + "(" + bytecodeArguments() + ")" + bytecodeReturnType() + ">";
+	}
+
+	@Override
+	public String toString() {
+		return signature;
+	}
+}
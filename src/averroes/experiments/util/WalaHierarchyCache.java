@@ -0,0 +1,136 @@
+package averroes.experiments.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+
+/**
+ * A cache of WALA class hierarchies, together with the analysis scopes they
+ * were built from. The key is made of the content hashes of the JARs in the
+ * scope and of the exclusions file (see {@link Hashes#key(java.io.File...)}),
+ * so a hierarchy is reused by every later job of the same JVM with the same
+ * inputs (i.e., the same benchmark and variant) as long as they do not change.
+ *
+ * Only the daemon (see {@link averroes.experiments.CallGraphDaemon}) runs more
+ * than one job per JVM, so the cache is disabled unless it enables it: hashing
+ * the scope of a job that is the only one in its JVM is wasted work. The batch
+ * driver forks a JVM per job, and the two variants of a benchmark have
+ * different scopes, so neither of them gets a hit.
+ *
+ * WALA hierarchies reference the modules and class loaders they were loaded
+ * from, so they cannot be written to disk. They are kept in memory instead,
+ * and only the most recently used ones are kept (-Daverroes.walaHierarchyCacheSize,
+ * 2 by default) because a full JRE hierarchy is large.
+ *
+ */
+public class WalaHierarchyCache {
+
+	private static final int DEFAULT_CAPACITY = 2;
+
+	private static WalaHierarchyCache instance = new WalaHierarchyCache(Integer.getInteger(
+			"averroes.walaHierarchyCacheSize", DEFAULT_CAPACITY));
+
+	private LinkedHashMap<String, Hierarchy> hierarchies;
+	private volatile boolean enabled = false;
+
+	private long hits = 0;
+	private long misses = 0;
+
+	/**
+	 * A class hierarchy and the scope it was built from.
+	 */
+	public static class Hierarchy {
+		private AnalysisScope scope;
+		private ClassHierarchy cha;
+
+		public Hierarchy(AnalysisScope scope, ClassHierarchy cha) {
+			this.scope = scope;
+			this.cha = cha;
+		}
+
+		public AnalysisScope scope() {
+			return scope;
+		}
+
+		public ClassHierarchy cha() {
+			return cha;
+		}
+	}
+
+	/**
+	 * Construct a new cache that keeps at most the given number of
+	 * hierarchies.
+	 *
+	 * @param capacity
+	 */
+	public WalaHierarchyCache(final int capacity) {
+		hierarchies = new LinkedHashMap<String, Hierarchy>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Hierarchy> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	public static WalaHierarchyCache v() {
+		return instance;
+	}
+
+	/**
+	 * Should the hierarchies be cached? Only when several jobs run in this
+	 * JVM.
+	 *
+	 * @return
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Get the hierarchy for the given key, or null if it is not cached.
+	 *
+	 * @param key
+	 * @return
+	 */
+	public synchronized Hierarchy get(String key) {
+		Hierarchy result = hierarchies.get(key);
+		if (result == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return result;
+	}
+
+	/**
+	 * Cache a hierarchy.
+	 *
+	 * @param key
+	 * @param hierarchy
+	 */
+	public synchronized void put(String key, Hierarchy hierarchy) {
+		hierarchies.put(key, hierarchy);
+	}
+
+	/**
+	 * Forget all the cached hierarchies and reset the counters.
+	 */
+	public synchronized void reset() {
+		hierarchies.clear();
+		hits = 0;
+		misses = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("class hierarchy cache: %d entries, %d hits, %d misses", hierarchies.size(), hits, misses);
+	}
+}
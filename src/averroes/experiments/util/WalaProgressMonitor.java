@@ -0,0 +1,148 @@
+package averroes.experiments.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+
+import com.ibm.wala.util.MonitorUtil.IProgressMonitor;
+
+/**
+ * A progress monitor for the WALA call graph builders. It writes a progress
+ * record to the log every {@link #PROGRESS_INTERVAL} milliseconds (work units,
+ * call graph nodes so far, and heap used), and cancels the builder once it
+ * goes over its wall-clock or heap budget. The heap is only over budget if it
+ * still is after the last garbage collection.
+ *
+ * A budget of 0 means no limit.
+ *
+ */
+public class WalaProgressMonitor implements IProgressMonitor {
+
+	public static final long PROGRESS_INTERVAL = 30 * 1000;
+
+	private static List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+			.filter(pool -> pool.getType() == MemoryType.HEAP).collect(Collectors.toList());
+
+	private String level;
+	private IntSupplier nodes;
+	private long timeBudget;
+	private long heapBudget;
+
+	private long start = System.currentTimeMillis();
+	private long lastReport = start;
+	private long work = 0;
+	private String task = "";
+	private volatile String cancelMessage = null;
+
+	/**
+	 * Construct a new monitor.
+	 *
+	 * @param level
+	 *            the name of the configuration being built (e.g., 0-1-CFA)
+	 * @param nodes
+	 *            the number of call graph nodes so far
+	 * @param timeBudget
+	 *            in milliseconds
+	 * @param heapBudget
+	 *            in bytes
+	 */
+	public WalaProgressMonitor(String level, IntSupplier nodes, long timeBudget, long heapBudget) {
+		this.level = level;
+		this.nodes = nodes;
+		this.timeBudget = timeBudget;
+		this.heapBudget = heapBudget;
+	}
+
+	@Override
+	public void beginTask(String task, int totalWork) {
+		this.task = task == null ? "" : task;
+	}
+
+	public void subTask(String subTask) {
+		// nothing to do
+	}
+
+	public void cancel() {
+		cancelMessage = "cancelled";
+	}
+
+	@Override
+	public boolean isCanceled() {
+		if (cancelMessage != null) {
+			return true;
+		}
+
+		long now = System.currentTimeMillis();
+		if (now - lastReport >= PROGRESS_INTERVAL) {
+			lastReport = now;
+			report(now);
+		}
+
+		if (timeBudget > 0 && now - start > timeBudget) {
+			cancelMessage = "time budget of " + timeBudget / 1000 + " seconds exceeded";
+		} else if (heapBudget > 0 && usedHeap() > heapBudget && retainedHeap() > heapBudget) {
+			// Only give up if the heap was still over budget after the last
+			// collection, without forcing one: this is called very often
+			cancelMessage = "heap budget of " + (heapBudget >> 20) + " MB exceeded";
+		}
+
+		if (cancelMessage != null) {
+			report(now);
+		}
+		return cancelMessage != null;
+	}
+
+	@Override
+	public void done() {
+		report(System.currentTimeMillis());
+	}
+
+	@Override
+	public void worked(int units) {
+		work += units;
+	}
+
+	@Override
+	public String getCancelMessage() {
+		return cancelMessage;
+	}
+
+	/**
+	 * The wall-clock time since this monitor was created, in milliseconds.
+	 *
+	 * @return
+	 */
+	public long elapsedMillis() {
+		return System.currentTimeMillis() - start;
+	}
+
+	private void report(long now) {
+		System.out.println(String.format("[Wala] progress: %s %s%.0f seconds, %d work units, %d nodes, %d MB heap",
+				level, task.isEmpty() ? "" : "(" + task + ") ", (now - start) / 1000.0, work, nodes.getAsInt(),
+				usedHeap() >> 20));
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * The heap in use right after the last collection of each heap pool, as
+	 * reported by the JVM.
+	 */
+	private static long retainedHeap() {
+		long retained = 0;
+		for (MemoryPoolMXBean pool : heapPools) {
+			MemoryUsage usage = pool.getCollectionUsage();
+			if (usage != null) {
+				retained += usage.getUsed();
+			}
+		}
+		return retained;
+	}
+}
@@ -0,0 +1,400 @@
+package averroes.experiments.util;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A streaming parser for the call graph trace (cg.txt) that the WALA dynamic
+ * call graph generator writes. The parser works on raw bytes: it splits lines
+ * and tab-separated tokens in its own buffer, and interns every distinct
+ * token, and every distinct (class, subsignature) pair, to an int id. A String
+ * is only created the first time a token is seen, so the cost of a line in a
+ * trace that keeps repeating the same methods is a few hash lookups.
+ *
+ * The parser reports methods by their pair id, use {@link #className(int)}
+ * and {@link #subsignature(int)} to get their names.
+ *
+ */
+public class WalaTraceParser {
+
+	/**
+	 * Receives the events of a trace. Every method is a pair id.
+	 */
+	public interface Listener {
+		/**
+		 * A "root" or "clinit" line.
+		 */
+		public void entryPoint(int method);
+
+		/**
+		 * A "callbacks" line, i.e., a call from the library to the method.
+		 */
+		public void callback(int method);
+
+		/**
+		 * A "call to" line that is directly followed by the matching
+		 * "return from" line, i.e., the method calls into the library.
+		 */
+		public void libraryCall(int method);
+
+		/**
+		 * A call edge between two methods.
+		 */
+		public void edge(int src, int dst);
+	}
+
+	private static final byte TAB = '\t';
+	private static final byte[] ROOT = bytes("root");
+	private static final byte[] CLINIT = bytes("clinit");
+	private static final byte[] CALLBACKS = bytes("callbacks");
+	private static final byte[] CALL_TO = bytes("call to ");
+	private static final byte[] RETURN_FROM = bytes("return from ");
+
+	private InputStream in;
+	private byte[] buf = new byte[1 << 16];
+	private int lineNumber = 0;
+
+	// The token table (open addressing over the token bytes)
+	private byte[][] tokenBytes = new byte[1 << 12][];
+	private int[] tokenHashes = new int[1 << 12];
+	private int[] tokenSlots = new int[1 << 13];
+	private String[] tokens = new String[1 << 12];
+	private String[] classNames = new String[1 << 12];
+	private int tokenCount = 0;
+
+	// The (class, subsignature) pair table
+	private long[] pairKeys = new long[1 << 13];
+	private int[] pairSlots = new int[1 << 13];
+	private int[] pairClasses = new int[1 << 12];
+	private int[] pairSubsignatures = new int[1 << 12];
+	private int pairCount = 0;
+
+	// Scratch space for the token boundaries of the current line
+	private int[] starts = new int[4];
+	private int[] ends = new int[4];
+
+	/**
+	 * Construct a new parser that reads the given (already decompressed)
+	 * stream.
+	 *
+	 * @param in
+	 */
+	public WalaTraceParser(InputStream in) {
+		this.in = in;
+		Arrays.fill(tokenSlots, -1);
+		Arrays.fill(pairSlots, -1);
+	}
+
+	/**
+	 * Open a gzipped trace file.
+	 *
+	 * @param dynamicCGFile
+	 * @return
+	 * @throws IOException
+	 */
+	public static WalaTraceParser open(String dynamicCGFile) throws IOException {
+		return new WalaTraceParser(new GZIPInputStream(new FileInputStream(dynamicCGFile), 1 << 16));
+	}
+
+	/**
+	 * The number of distinct methods seen so far.
+	 *
+	 * @return
+	 */
+	public int methodCount() {
+		return pairCount;
+	}
+
+	/**
+	 * The declaring class of a method, with '/' replaced by '.'.
+	 *
+	 * @param method
+	 * @return
+	 */
+	public String className(int method) {
+		int token = pairClasses[method];
+		if (classNames[token] == null) {
+			classNames[token] = tokens[token].replace('/', '.');
+		}
+		return classNames[token];
+	}
+
+	/**
+	 * The subsignature of a method (e.g., main([Ljava/lang/String;)V).
+	 *
+	 * @param method
+	 * @return
+	 */
+	public String subsignature(int method) {
+		return tokens[pairSubsignatures[method]];
+	}
+
+	/**
+	 * Parse the whole trace and close the underlying stream.
+	 *
+	 * @param listener
+	 * @throws IOException
+	 */
+	public void parse(Listener listener) throws IOException {
+		int pending = -1; // the method of a "call to" line waiting for its "return from"
+		int start = 0;
+		int limit = 0;
+		boolean eof = false;
+
+		try {
+			while (true) {
+				// Find the end of the current line
+				int nl = indexOf(buf, start, limit, (byte) '\n');
+				if (nl < 0 && !eof) {
+					// Move the partial line to the front and read some more
+					int len = limit - start;
+					if (len == buf.length) {
+						buf = Arrays.copyOf(buf, buf.length * 2);
+					} else if (start > 0) {
+						System.arraycopy(buf, start, buf, 0, len);
+					}
+					start = 0;
+					limit = len;
+					int n = in.read(buf, limit, buf.length - limit);
+					if (n < 0) {
+						eof = true;
+					} else {
+						limit += n;
+					}
+					continue;
+				}
+
+				int end = nl < 0 ? limit : nl;
+				if (nl < 0 && start == end) {
+					break;
+				}
+				lineNumber++;
+				if (end > start && buf[end - 1] == '\r') {
+					end--;
+				}
+				pending = line(start, end, pending, listener);
+				start = nl < 0 ? limit : nl + 1;
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Process one line and return the method of the "call to" line that is
+	 * still waiting for its "return from", or -1.
+	 */
+	private int line(int start, int end, int pending, Listener listener) throws IOException {
+		if (start == end) {
+			return -1;
+		}
+
+		/*
+		 * If the previous line was "call to" and this one is "return from",
+		 * that means we are calling into the standard library and should
+		 * generate an edge to the library blob. Otherwise, process this line
+		 * as usual.
+		 */
+		if (startsWith(start, end, RETURN_FROM)) {
+			if (pending >= 0) {
+				require(tokenize(start + RETURN_FROM.length, end, 2), 2, start, end);
+				// we should check that the caller/callee pair in "return from"
+				// matches that of "call to"
+				if (method(0) == pending) {
+					listener.libraryCall(pending);
+				}
+			}
+			return -1;
+		} else if (startsWith(start, end, CALL_TO)) {
+			require(tokenize(start + CALL_TO.length, end, 2), 2, start, end);
+			return method(0);
+		}
+
+		int count = require(tokenize(start, end, 4), 1, start, end);
+		int first = ends[0] - starts[0];
+		if (tokenEquals(0, ROOT, first) || tokenEquals(0, CLINIT, first)) {
+			require(count, 3, start, end);
+			listener.entryPoint(method(1));
+		} else if (tokenEquals(0, CALLBACKS, first)) {
+			require(count, 3, start, end);
+			listener.callback(method(1));
+		} else {
+			require(count, 4, start, end);
+			listener.edge(method(0), method(2));
+		}
+		return -1;
+	}
+
+	/**
+	 * Split the given range on tabs, up to the given number of tokens, and
+	 * return the number of tokens found. Like StringTokenizer, empty tokens are
+	 * skipped.
+	 */
+	private int tokenize(int start, int end, int max) {
+		int count = 0;
+		int i = start;
+		while (count < max && i < end) {
+			while (i < end && buf[i] == TAB) {
+				i++;
+			}
+			if (i == end) {
+				break;
+			}
+			starts[count] = i;
+			while (i < end && buf[i] != TAB) {
+				i++;
+			}
+			ends[count++] = i;
+		}
+		return count;
+	}
+
+	private int require(int count, int expected, int start, int end) throws IOException {
+		if (count < expected) {
+			throw new IOException("Malformed line " + lineNumber + ": "
+					+ new String(buf, start, end - start, StandardCharsets.UTF_8));
+		}
+		return count;
+	}
+
+	/**
+	 * Intern the (class, subsignature) pair that starts at the given token.
+	 */
+	private int method(int token) {
+		int cls = token(starts[token], ends[token]);
+		int sub = token(starts[token + 1], ends[token + 1]);
+		long key = ((long) cls << 32) | (sub & 0xFFFFFFFFL);
+
+		int mask = pairSlots.length - 1;
+		int slot = mix(cls * 31 + sub) & mask;
+		while (pairSlots[slot] >= 0) {
+			if (pairKeys[slot] == key) {
+				return pairSlots[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		int id = pairCount++;
+		if (id == pairClasses.length) {
+			pairClasses = Arrays.copyOf(pairClasses, id * 2);
+			pairSubsignatures = Arrays.copyOf(pairSubsignatures, id * 2);
+		}
+		pairClasses[id] = cls;
+		pairSubsignatures[id] = sub;
+		pairKeys[slot] = key;
+		pairSlots[slot] = id;
+
+		if (pairCount * 2 > pairSlots.length) {
+			rehashPairs();
+		}
+		return id;
+	}
+
+	/**
+	 * Intern the token in the given range of the buffer.
+	 */
+	private int token(int start, int end) {
+		int hash = 0x811C9DC5;
+		for (int i = start; i < end; i++) {
+			hash = (hash ^ buf[i]) * 0x01000193;
+		}
+
+		int mask = tokenSlots.length - 1;
+		int slot = mix(hash) & mask;
+		int len = end - start;
+		while (tokenSlots[slot] >= 0) {
+			int id = tokenSlots[slot];
+			if (tokenHashes[id] == hash && rangeEquals(tokenBytes[id], start, len)) {
+				return id;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		int id = tokenCount++;
+		if (id == tokens.length) {
+			tokenBytes = Arrays.copyOf(tokenBytes, id * 2);
+			tokenHashes = Arrays.copyOf(tokenHashes, id * 2);
+			tokens = Arrays.copyOf(tokens, id * 2);
+			classNames = Arrays.copyOf(classNames, id * 2);
+		}
+		tokenBytes[id] = Arrays.copyOfRange(buf, start, end);
+		tokenHashes[id] = hash;
+		tokens[id] = new String(buf, start, len, StandardCharsets.UTF_8);
+		tokenSlots[slot] = id;
+
+		if (tokenCount * 2 > tokenSlots.length) {
+			rehashTokens();
+		}
+		return id;
+	}
+
+	private void rehashTokens() {
+		tokenSlots = new int[tokenSlots.length * 2];
+		Arrays.fill(tokenSlots, -1);
+		int mask = tokenSlots.length - 1;
+		for (int id = 0; id < tokenCount; id++) {
+			int slot = mix(tokenHashes[id]) & mask;
+			while (tokenSlots[slot] >= 0) {
+				slot = (slot + 1) & mask;
+			}
+			tokenSlots[slot] = id;
+		}
+	}
+
+	private void rehashPairs() {
+		pairKeys = new long[pairKeys.length * 2];
+		pairSlots = new int[pairSlots.length * 2];
+		Arrays.fill(pairSlots, -1);
+		int mask = pairSlots.length - 1;
+		for (int id = 0; id < pairCount; id++) {
+			int slot = mix(pairClasses[id] * 31 + pairSubsignatures[id]) & mask;
+			while (pairSlots[slot] >= 0) {
+				slot = (slot + 1) & mask;
+			}
+			pairKeys[slot] = ((long) pairClasses[id] << 32) | (pairSubsignatures[id] & 0xFFFFFFFFL);
+			pairSlots[slot] = id;
+		}
+	}
+
+	private boolean rangeEquals(byte[] token, int start, int len) {
+		if (token.length != len) {
+			return false;
+		}
+		for (int i = 0; i < len; i++) {
+			if (token[i] != buf[start + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean tokenEquals(int token, byte[] expected, int len) {
+		return len == expected.length && rangeEquals(expected, starts[token], len);
+	}
+
+	private boolean startsWith(int start, int end, byte[] prefix) {
+		return end - start >= prefix.length && rangeEquals(prefix, start, prefix.length);
+	}
+
+	private static int indexOf(byte[] buf, int from, int to, byte b) {
+		for (int i = from; i < to; i++) {
+			if (buf[i] == b) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int mix(int h) {
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private static byte[] bytes(String s) {
+		return s.getBytes(StandardCharsets.UTF_8);
+	}
+}
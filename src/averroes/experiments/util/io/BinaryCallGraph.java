@@ -0,0 +1,233 @@
+package averroes.experiments.util.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import probe.CallGraph;
+import probe.ObjectManager;
+import probe.ProbeMethod;
+import averroes.experiments.util.CompactCallGraph;
+import averroes.experiments.util.MethodTable;
+
+/**
+ * A call graph file in the binary format (see {@link BinaryCallGraphWriter}).
+ * The file is memory-mapped: strings, methods, and adjacency lists are only
+ * decoded when they are asked for, so a query does not need the whole graph on
+ * the heap.
+ *
+ * The method ids of this class are those of the file, not those of
+ * {@link MethodTable}. Use {@link #toCompactCallGraph()} to get a graph over
+ * the shared ids.
+ *
+ */
+public class BinaryCallGraph {
+
+	private ByteBuffer buffer;
+	private int stringCount;
+	private int methodCount;
+	private int entryCount;
+	private int edgeCount;
+	private int stringIndexOffset;
+	private int stringDataOffset;
+	private int methodsOffset;
+	private int entriesOffset;
+	private int adjacencyIndexOffset;
+	private int adjacencyOffset;
+
+	private BinaryCallGraph(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+
+		if (buffer.getInt(0) != BinaryCallGraphWriter.MAGIC) {
+			throw new IOException("Not a binary call graph file");
+		} else if (buffer.getInt(4) != BinaryCallGraphWriter.VERSION) {
+			throw new IOException("Unsupported binary call graph version " + buffer.getInt(4));
+		}
+
+		stringCount = buffer.getInt(8);
+		methodCount = buffer.getInt(12);
+		entryCount = buffer.getInt(16);
+		edgeCount = buffer.getInt(20);
+		stringIndexOffset = (int) buffer.getLong(24);
+		stringDataOffset = (int) buffer.getLong(32);
+		methodsOffset = (int) buffer.getLong(40);
+		entriesOffset = (int) buffer.getLong(48);
+		adjacencyIndexOffset = (int) buffer.getLong(56);
+		adjacencyOffset = (int) buffer.getLong(64);
+	}
+
+	/**
+	 * Memory-map a binary call graph file.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static BinaryCallGraph open(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(file + " is too large to be mapped");
+			} else if (channel.size() < BinaryCallGraphWriter.HEADER_SIZE) {
+				throw new IOException("Not a binary call graph file: " + file);
+			}
+			return new BinaryCallGraph(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	public int stringCount() {
+		return stringCount;
+	}
+
+	public int methodCount() {
+		return methodCount;
+	}
+
+	public int edgeCount() {
+		return edgeCount;
+	}
+
+	/**
+	 * The sorted ids of the entry points.
+	 *
+	 * @return
+	 */
+	public int[] entryPoints() {
+		int[] entries = new int[entryCount];
+		for (int i = 0; i < entryCount; i++) {
+			entries[i] = buffer.getInt(entriesOffset + i * 4);
+		}
+		return entries;
+	}
+
+	/**
+	 * The number of successors of a method.
+	 *
+	 * @param method
+	 * @return
+	 */
+	public int successorCount(int method) {
+		int[] position = { adjacencyStart(method) };
+		return readVarint(position);
+	}
+
+	/**
+	 * The sorted successors of a method.
+	 *
+	 * @param method
+	 * @return
+	 */
+	public int[] successors(int method) {
+		int[] position = { adjacencyStart(method) };
+		int[] successors = new int[readVarint(position)];
+		int target = 0;
+		for (int i = 0; i < successors.length; i++) {
+			target += readVarint(position);
+			successors[i] = target;
+		}
+		return successors;
+	}
+
+	/**
+	 * Check if there is an edge between the given methods.
+	 *
+	 * @param src
+	 * @param dst
+	 * @return
+	 */
+	public boolean hasEdge(int src, int dst) {
+		int[] position = { adjacencyStart(src) };
+		int count = readVarint(position);
+		int target = 0;
+		for (int i = 0; i < count && target <= dst; i++) {
+			target += readVarint(position);
+			if (target == dst) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Get the string with the given id.
+	 *
+	 * @param id
+	 * @return
+	 */
+	public String string(int id) {
+		int start = buffer.getInt(stringIndexOffset + id * 4);
+		int end = buffer.getInt(stringIndexOffset + (id + 1) * 4);
+		byte[] bytes = new byte[end - start];
+		ByteBuffer data = buffer.duplicate();
+		data.position(stringDataOffset + start);
+		data.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Get the probe method with the given id.
+	 *
+	 * @param method
+	 * @return
+	 */
+	public ProbeMethod method(int method) {
+		int offset = methodsOffset + method * 16;
+		String pkg = string(buffer.getInt(offset));
+		String cls = string(buffer.getInt(offset + 4));
+		String name = string(buffer.getInt(offset + 8));
+		String signature = string(buffer.getInt(offset + 12));
+		return ObjectManager.v().getMethod(ObjectManager.v().getClass(pkg, cls), name, signature);
+	}
+
+	/**
+	 * Load the whole graph as a compact call graph over the
+	 * {@link MethodTable} ids.
+	 *
+	 * @return
+	 */
+	public CompactCallGraph toCompactCallGraph() {
+		MethodTable table = MethodTable.v();
+		int[] ids = new int[methodCount];
+		for (int m = 0; m < methodCount; m++) {
+			ids[m] = table.id(method(m));
+		}
+
+		CompactCallGraph.Builder builder = new CompactCallGraph.Builder();
+		for (int entry : entryPoints()) {
+			builder.addEntryPoint(ids[entry]);
+		}
+		for (int src = 0; src < methodCount; src++) {
+			for (int dst : successors(src)) {
+				builder.addEdge(ids[src], ids[dst]);
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Load the whole graph as a probe call graph.
+	 *
+	 * @return
+	 */
+	public CallGraph toProbeCallGraph() {
+		return toCompactCallGraph().toProbeCallGraph();
+	}
+
+	private int adjacencyStart(int method) {
+		return adjacencyOffset + buffer.getInt(adjacencyIndexOffset + method * 4);
+	}
+
+	private int readVarint(int[] position) {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get(position[0]++);
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return value;
+	}
+}
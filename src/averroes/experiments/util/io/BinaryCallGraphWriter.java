@@ -0,0 +1,178 @@
+package averroes.experiments.util.io;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import probe.ProbeMethod;
+import averroes.experiments.util.CompactCallGraph;
+import averroes.experiments.util.MethodTable;
+
+/**
+ * Writes a {@link CompactCallGraph} in the binary call graph format that
+ * {@link BinaryCallGraph} reads. All values are big-endian. The file has the
+ * following sections:
+ *
+ * 1. A fixed-size header: the magic number, the version, the number of
+ * strings, methods, entry points, and edges, then the offset of each of the
+ * following sections.
+ *
+ * 2. The string table: the offset of every string in the string data (one
+ * more than the number of strings), then the UTF-8 bytes of the strings. Every
+ * distinct string is stored once.
+ *
+ * 3. The methods: 4 string ids per method (package, class name, method name,
+ * and signature). The methods of a file are numbered from 0, in the order of
+ * their {@link MethodTable} ids.
+ *
+ * 4. The entry points: the sorted method ids.
+ *
+ * 5. The adjacency lists: the offset of the list of every method in the
+ * adjacency data (one more than the number of methods), then the lists. A
+ * list is the number of successors followed by the sorted successors, all as
+ * unsigned varints. The first successor is stored as is, every other one as
+ * the difference to the previous one.
+ *
+ */
+public class BinaryCallGraphWriter {
+
+	public static final int MAGIC = 0x41434731; // "ACG1"
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 6 * 4 + 6 * 8;
+
+	private Map<String, Integer> stringIds = new HashMap<String, Integer>();
+	private ByteArrayOutputStream stringData = new ByteArrayOutputStream();
+	private ByteArrayOutputStream stringIndex = new ByteArrayOutputStream();
+
+	/**
+	 * Write the given call graph to a file.
+	 *
+	 * @param cg
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void write(CompactCallGraph cg, File file) throws IOException {
+		new BinaryCallGraphWriter().writeGraph(cg, file);
+	}
+
+	private void writeGraph(CompactCallGraph cg, File file) throws IOException {
+		MethodTable table = MethodTable.v();
+
+		// Number the methods of this graph densely, keeping their order
+		int bound = cg.methodBound();
+		boolean[] used = new boolean[bound];
+		for (int entry : cg.entryPoints()) {
+			used[entry] = true;
+		}
+		for (int src = 0; src < bound; src++) {
+			int first = cg.firstEdge(src);
+			int end = cg.endEdge(src);
+			if (first < end) {
+				used[src] = true;
+			}
+			for (int e = first; e < end; e++) {
+				used[cg.target(e)] = true;
+			}
+		}
+
+		int[] local = new int[bound];
+		int methodCount = 0;
+		ByteArrayOutputStream methods = new ByteArrayOutputStream();
+		DataOutputStream methodsOut = new DataOutputStream(methods);
+		for (int m = 0; m < bound; m++) {
+			if (used[m]) {
+				local[m] = methodCount++;
+				ProbeMethod method = table.method(m);
+				methodsOut.writeInt(string(method.cls().pkg()));
+				methodsOut.writeInt(string(method.cls().name()));
+				methodsOut.writeInt(string(method.name()));
+				methodsOut.writeInt(string(method.signature()));
+			}
+		}
+		new DataOutputStream(stringIndex).writeInt(stringData.size());
+
+		ByteArrayOutputStream entries = new ByteArrayOutputStream();
+		DataOutputStream entriesOut = new DataOutputStream(entries);
+		for (int entry : cg.entryPoints()) {
+			entriesOut.writeInt(local[entry]);
+		}
+
+		ByteArrayOutputStream adjacencyIndex = new ByteArrayOutputStream();
+		DataOutputStream adjacencyIndexOut = new DataOutputStream(adjacencyIndex);
+		ByteArrayOutputStream adjacency = new ByteArrayOutputStream();
+		for (int m = 0; m < bound; m++) {
+			if (used[m]) {
+				adjacencyIndexOut.writeInt(adjacency.size());
+				int first = cg.firstEdge(m);
+				int end = cg.endEdge(m);
+				writeVarint(adjacency, end - first);
+				int previous = 0;
+				for (int e = first; e < end; e++) {
+					int target = local[cg.target(e)];
+					writeVarint(adjacency, target - previous);
+					previous = target;
+				}
+			}
+		}
+		adjacencyIndexOut.writeInt(adjacency.size());
+
+		// Write the header and the sections
+		long stringIndexOffset = HEADER_SIZE;
+		long stringDataOffset = stringIndexOffset + stringIndex.size();
+		long methodsOffset = stringDataOffset + stringData.size();
+		long entriesOffset = methodsOffset + methods.size();
+		long adjacencyIndexOffset = entriesOffset + entries.size();
+		long adjacencyOffset = adjacencyIndexOffset + adjacencyIndex.size();
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(stringIds.size());
+			out.writeInt(methodCount);
+			out.writeInt(cg.entryPoints().length);
+			out.writeInt(cg.edgeCount());
+			out.writeLong(stringIndexOffset);
+			out.writeLong(stringDataOffset);
+			out.writeLong(methodsOffset);
+			out.writeLong(entriesOffset);
+			out.writeLong(adjacencyIndexOffset);
+			out.writeLong(adjacencyOffset);
+
+			stringIndex.writeTo(out);
+			stringData.writeTo(out);
+			methods.writeTo(out);
+			entries.writeTo(out);
+			adjacencyIndex.writeTo(out);
+			adjacency.writeTo(out);
+		}
+	}
+
+	/**
+	 * Get the id of a string, adding it to the string table if necessary.
+	 */
+	private int string(String s) throws IOException {
+		Integer id = stringIds.get(s);
+		if (id == null) {
+			id = stringIds.size();
+			stringIds.put(s, id);
+			new DataOutputStream(stringIndex).writeInt(stringData.size());
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			stringData.write(bytes, 0, bytes.length);
+		}
+		return id;
+	}
+
+	private static void writeVarint(ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+}
@@ -0,0 +1,55 @@
+package averroes.experiments.util.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A ZIP archive entry whose inflated bytes are kept in the shared
+ * {@link ClassBytesCache}, so opening the same entry again does not inflate it
+ * again.
+ * 
+ */
+public class CachedZipEntryResource implements Resource {
+
+	private ZipFile archive;
+	private ZipEntry entry;
+
+	/**
+	 * Construct a new cached ZIP entry resource.
+	 * 
+	 * @param archive
+	 * @param entry
+	 */
+	public CachedZipEntryResource(ZipFile archive, ZipEntry entry) {
+		this.archive = archive;
+		this.entry = entry;
+	}
+
+	@Override
+	public InputStream open() throws IOException {
+		return new ByteArrayInputStream(ClassBytesCache.v().bytes(archive, entry));
+	}
+
+	/**
+	 * A read-only view of the inflated bytes of the entry, to parse them
+	 * without copying.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public ByteBuffer buffer() throws IOException {
+		return ClassBytesCache.v().buffer(archive, entry);
+	}
+
+	public ZipFile archive() {
+		return archive;
+	}
+
+	public ZipEntry entry() {
+		return entry;
+	}
+}
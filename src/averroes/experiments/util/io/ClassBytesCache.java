@@ -0,0 +1,168 @@
+package averroes.experiments.util.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A bounded cache of inflated archive entries (e.g., class files), shared by
+ * all the archives of a run. Entries are keyed by archive and entry name, and
+ * the least recently used ones are evicted once the total size goes over the
+ * capacity (in bytes). Entries larger than the capacity are never cached.
+ *
+ * The capacity can be set with -Daverroes.classBytesCacheSize (64 MB by
+ * default).
+ *
+ */
+public class ClassBytesCache {
+
+	private static final long DEFAULT_CAPACITY = 64L << 20;
+
+	private static ClassBytesCache instance = new ClassBytesCache(Long.getLong("averroes.classBytesCacheSize",
+			DEFAULT_CAPACITY));
+
+	private long capacity;
+	private long size = 0;
+	private LinkedHashMap<String, byte[]> entries = new LinkedHashMap<String, byte[]>(1024, 0.75f, true);
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	/**
+	 * Construct a new cache that holds at most the given number of bytes.
+	 *
+	 * @param capacity
+	 */
+	public ClassBytesCache(long capacity) {
+		this.capacity = capacity;
+	}
+
+	public static ClassBytesCache v() {
+		return instance;
+	}
+
+	/**
+	 * Get a read-only view of the inflated bytes of an archive entry.
+	 *
+	 * @param archive
+	 * @param entry
+	 * @return
+	 * @throws IOException
+	 */
+	public ByteBuffer buffer(ZipFile archive, ZipEntry entry) throws IOException {
+		return ByteBuffer.wrap(bytes(archive, entry)).asReadOnlyBuffer();
+	}
+
+	/**
+	 * Get the inflated bytes of an archive entry. The array is shared, it must
+	 * not be modified.
+	 */
+	byte[] bytes(ZipFile archive, ZipEntry entry) throws IOException {
+		String key = archive.getName() + '!' + entry.getName();
+		synchronized (this) {
+			byte[] bytes = entries.get(key);
+			if (bytes != null) {
+				hits++;
+				return bytes;
+			}
+			misses++;
+		}
+
+		// Inflate outside of the lock, other threads can keep reading the
+		// cache in the meantime
+		byte[] bytes = inflate(archive, entry);
+
+		synchronized (this) {
+			if (bytes.length <= capacity && !entries.containsKey(key)) {
+				entries.put(key, bytes);
+				size += bytes.length;
+				evict();
+			}
+		}
+		return bytes;
+	}
+
+	private void evict() {
+		Iterator<byte[]> it = entries.values().iterator();
+		while (size > capacity && it.hasNext()) {
+			size -= it.next().length;
+			it.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Read the whole entry into an array of the exact size.
+	 */
+	private static byte[] inflate(ZipFile archive, ZipEntry entry) throws IOException {
+		try (InputStream in = archive.getInputStream(entry)) {
+			long declared = entry.getSize();
+			byte[] bytes = new byte[declared >= 0 ? (int) declared : 8192];
+			int count = 0;
+			int n;
+			while ((n = in.read(bytes, count, bytes.length - count)) > 0) {
+				count += n;
+				if (count == bytes.length) {
+					if (declared >= 0) {
+						break;
+					}
+					bytes = Arrays.copyOf(bytes, bytes.length * 2);
+				}
+			}
+			return count == bytes.length ? bytes : Arrays.copyOf(bytes, count);
+		}
+	}
+
+	public synchronized long hits() {
+		return hits;
+	}
+
+	public synchronized long misses() {
+		return misses;
+	}
+
+	public synchronized long evictions() {
+		return evictions;
+	}
+
+	/**
+	 * The number of bytes currently cached.
+	 *
+	 * @return
+	 */
+	public synchronized long size() {
+		return size;
+	}
+
+	/**
+	 * The fraction of lookups that were served from the cache.
+	 *
+	 * @return
+	 */
+	public synchronized double hitRate() {
+		return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+	}
+
+	/**
+	 * Forget all the cached entries and reset the counters.
+	 */
+	public synchronized void reset() {
+		entries.clear();
+		size = 0;
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("class bytes cache: %d entries (%d KB), %d hits, %d misses, %d evictions, hit rate %.1f%%",
+				entries.size(), size >> 10, hits, misses, evictions, hitRate() * 100);
+	}
+}
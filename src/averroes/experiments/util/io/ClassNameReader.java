@@ -0,0 +1,104 @@
+package averroes.experiments.util.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the name of the class declared by a class file (i.e., its this_class
+ * entry) by walking the constant pool, without parsing the rest of the class.
+ *
+ */
+public class ClassNameReader {
+
+	/**
+	 * Get the name of the class in the given class file (e.g., java.lang.Object),
+	 * or null if the bytes are not a valid class file.
+	 *
+	 * @param bytes
+	 * @return
+	 */
+	public static String thisClass(byte[] bytes) {
+		return thisClass(ByteBuffer.wrap(bytes));
+	}
+
+	/**
+	 * Get the name of the class in the class file that starts at the position
+	 * of the given buffer, or null if it is not a valid class file. The
+	 * position of the buffer is not changed.
+	 *
+	 * @param classFile
+	 * @return
+	 */
+	public static String thisClass(ByteBuffer classFile) {
+		try {
+			ByteBuffer buffer = classFile.slice();
+			if (buffer.getInt() != 0xCAFEBABE) {
+				return null;
+			}
+			buffer.getShort(); // minor version
+			buffer.getShort(); // major version
+
+			// Record where each constant pool entry starts
+			int count = buffer.getShort() & 0xFFFF;
+			int[] offsets = new int[count];
+			for (int i = 1; i < count; i++) {
+				offsets[i] = buffer.position();
+				byte tag = buffer.get();
+				switch (tag) {
+				case 1: // Utf8
+					skip(buffer, buffer.getShort() & 0xFFFF);
+					break;
+				case 5: // Long
+				case 6: // Double
+					skip(buffer, 8);
+					i++; // takes two entries
+					break;
+				case 3: // Integer
+				case 4: // Float
+				case 9: // Fieldref
+				case 10: // Methodref
+				case 11: // InterfaceMethodref
+				case 12: // NameAndType
+				case 17: // Dynamic
+				case 18: // InvokeDynamic
+					skip(buffer, 4);
+					break;
+				case 15: // MethodHandle
+					skip(buffer, 3);
+					break;
+				case 7: // Class
+				case 8: // String
+				case 16: // MethodType
+				case 19: // Module
+				case 20: // Package
+					skip(buffer, 2);
+					break;
+				default:
+					return null;
+				}
+			}
+
+			buffer.getShort(); // access flags
+			int thisClass = buffer.getShort() & 0xFFFF;
+			int nameIndex = buffer.getShort(offsets[thisClass] + 1) & 0xFFFF;
+			int utf8 = offsets[nameIndex] + 1;
+			int length = buffer.getShort(utf8) & 0xFFFF;
+
+			// The class name is in modified UTF-8, which readUTF decodes
+			byte[] utf = new byte[length + 2];
+			buffer.position(utf8);
+			buffer.get(utf);
+			String name = new DataInputStream(new ByteArrayInputStream(utf)).readUTF();
+			return name.replace('/', '.');
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | IOException e) {
+			return null;
+		}
+	}
+
+	private static void skip(ByteBuffer buffer, int n) {
+		buffer.position(buffer.position() + n);
+	}
+}
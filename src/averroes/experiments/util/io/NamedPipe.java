@@ -0,0 +1,95 @@
+package averroes.experiments.util.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A named pipe (FIFO) that a child process writes to and this JVM reads from,
+ * so that the data never touches the disk and is processed as it arrives.
+ *
+ * Opening a FIFO blocks until the other end is opened too. If the writer dies
+ * before opening its end, {@link #release()} opens it instead so that the
+ * reader sees an empty stream rather than waiting forever.
+ *
+ */
+public class NamedPipe {
+
+	private File path;
+	private boolean opened = false;
+	private boolean released = false;
+
+	private NamedPipe(File path) {
+		this.path = path;
+	}
+
+	/**
+	 * Create a named pipe at the given path, or return null if named pipes are
+	 * not supported (i.e., there is no mkfifo).
+	 *
+	 * @param path
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public static NamedPipe make(File path) throws InterruptedException {
+		try {
+			Process p = new ProcessBuilder("mkfifo", path.getPath()).redirectErrorStream(true).start();
+			return p.waitFor() == 0 ? new NamedPipe(path) : null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Open the reading end of the pipe. This blocks until a writer opens the
+	 * pipe (or until {@link #release()} is called).
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	public InputStream open() throws IOException {
+		InputStream in = new FileInputStream(path);
+		synchronized (this) {
+			opened = true;
+		}
+		return in;
+	}
+
+	/**
+	 * Unblock a reader that is still waiting in {@link #open()}, once the
+	 * writer is known to be gone. The reader then sees the end of the stream.
+	 */
+	public void release() {
+		synchronized (this) {
+			if (opened || released) {
+				return;
+			}
+			released = true;
+		}
+
+		// Opening the writing end blocks until the reader is there, do it on
+		// the side so that the caller never waits on it
+		Thread t = new Thread(() -> {
+			try {
+				new FileOutputStream(path).close();
+			} catch (IOException e) {
+				// The reader is gone too
+			}
+		}, "release-" + path.getName());
+		t.setDaemon(true);
+		t.start();
+	}
+
+	/**
+	 * Remove the pipe from the file system.
+	 */
+	public void delete() {
+		path.delete();
+	}
+
+	public File path() {
+		return path;
+	}
+}